@@ -56,6 +56,11 @@ public class ArchetypeCreationRequest {
 
     private File settingsFile;
 
+    /**
+     * @since 3.4.2
+     */
+    private int parallelism = 1;
+
     public String getPostPhase() {
         return postPhase;
     }
@@ -172,4 +177,18 @@ public class ArchetypeCreationRequest {
         this.settingsFile = settingsFile;
         return this;
     }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism the number of threads processing the files and sibling modules of the project,
+     *            <code>1</code> to process them on the calling thread
+     * @since 3.4.2
+     */
+    public ArchetypeCreationRequest setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
 }
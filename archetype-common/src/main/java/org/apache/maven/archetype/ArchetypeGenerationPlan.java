@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What a generation would do, computed by a {@link ArchetypeGenerationRequest#setPlanOnly(boolean) plan-only}
+ * request without rendering nor writing anything: the files it would write, the filesets it would process or skip, the
+ * modules it would create, and all the conflicts with existing files which would make it fail.
+ * <p>
+ * Post-generation scripts are not run while planning.
+ *
+ * @since 3.4.2
+ */
+public class ArchetypeGenerationPlan {
+    /**
+     * What the generation would do with a file.
+     */
+    public enum Action {
+        /**
+         * The file doesn't exist and would be written.
+         */
+        WRITE,
+
+        /**
+         * The file is an existing POM, into which the archetype POM would be merged.
+         */
+        MERGE,
+
+        /**
+         * The file exists and would be kept as is.
+         */
+        KEEP,
+
+        /**
+         * The file exists and would make the generation fail.
+         */
+        CONFLICT
+    }
+
+    private final List<PlannedFile> files = new ArrayList<>();
+
+    private final Set<File> written = new HashSet<>();
+
+    private final List<PlannedFileset> filesets = new ArrayList<>();
+
+    private final List<PlannedModule> modules = new ArrayList<>();
+
+    private final List<String> conflicts = new ArrayList<>();
+
+    /**
+     * @param file the output file
+     * @param template the archetype entry the file would be generated from
+     * @param module the module offset, empty for the root project
+     * @param directory the fileset directory, or <code>null</code> for a POM
+     * @param filtered whether the file would be rendered, or copied
+     * @param action what the generation would do with the file
+     */
+    public void addFile(File file, String template, String module, String directory, boolean filtered, Action action) {
+        files.add(new PlannedFile(file, template, module, directory, filtered, action));
+
+        if (action == Action.WRITE) {
+            written.add(file.getAbsoluteFile());
+        } else if (action == Action.CONFLICT) {
+            conflicts.add("Don't override file " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * @param file a file
+     * @return <code>true</code> if a planned file would write it
+     */
+    public boolean isWritten(File file) {
+        return written.contains(file.getAbsoluteFile());
+    }
+
+    /**
+     * @return the planned files, POMs included, in generation order
+     */
+    public List<PlannedFile> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    /**
+     * @param module the module offset, empty for the root project
+     * @param directory the fileset directory
+     * @param filtered whether the fileset files would be rendered, or copied
+     * @param includeCondition the fileset include condition, or <code>null</code>
+     * @param included whether the fileset would be processed, according to its include condition
+     */
+    public void addFileset(
+            String module, String directory, boolean filtered, String includeCondition, boolean included) {
+        filesets.add(new PlannedFileset(module, directory, filtered, includeCondition, included));
+    }
+
+    /**
+     * @return the filesets of the descriptors, included or not, in generation order
+     */
+    public List<PlannedFileset> getFilesets() {
+        return Collections.unmodifiableList(filesets);
+    }
+
+    /**
+     * @param artifactId the module artifactId
+     * @param directory the module directory
+     * @param parentPom the POM the module would be added to, or <code>null</code> if it would have no parent
+     */
+    public void addModule(String artifactId, File directory, File parentPom) {
+        modules.add(new PlannedModule(artifactId, directory, parentPom));
+    }
+
+    /**
+     * @return the generated projects, the root project first
+     */
+    public List<PlannedModule> getModules() {
+        return Collections.unmodifiableList(modules);
+    }
+
+    /**
+     * @param conflict a conflict which isn't an existing file, like a parent POM which cannot have modules
+     */
+    public void addConflict(String conflict) {
+        conflicts.add(conflict);
+    }
+
+    /**
+     * @return the reasons why the generation would fail, all of them
+     */
+    public List<String> getConflicts() {
+        return Collections.unmodifiableList(conflicts);
+    }
+
+    public boolean hasConflicts() {
+        return !conflicts.isEmpty();
+    }
+
+    /**
+     * A file the generation would write, keep or fail on.
+     */
+    public static class PlannedFile {
+        private final File file;
+
+        private final String template;
+
+        private final String module;
+
+        private final String directory;
+
+        private final boolean filtered;
+
+        private final Action action;
+
+        PlannedFile(File file, String template, String module, String directory, boolean filtered, Action action) {
+            this.file = file;
+            this.template = template;
+            this.module = module;
+            this.directory = directory;
+            this.filtered = filtered;
+            this.action = action;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        public String getModule() {
+            return module;
+        }
+
+        /**
+         * @return the fileset directory, or <code>null</code> for a POM
+         */
+        public String getDirectory() {
+            return directory;
+        }
+
+        public boolean isFiltered() {
+            return filtered;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        @Override
+        public String toString() {
+            return action + " " + file;
+        }
+    }
+
+    /**
+     * A fileset of a module descriptor.
+     */
+    public static class PlannedFileset {
+        private final String module;
+
+        private final String directory;
+
+        private final boolean filtered;
+
+        private final String includeCondition;
+
+        private final boolean included;
+
+        PlannedFileset(String module, String directory, boolean filtered, String includeCondition, boolean included) {
+            this.module = module;
+            this.directory = directory;
+            this.filtered = filtered;
+            this.includeCondition = includeCondition;
+            this.included = included;
+        }
+
+        public String getModule() {
+            return module;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public boolean isFiltered() {
+            return filtered;
+        }
+
+        public String getIncludeCondition() {
+            return includeCondition;
+        }
+
+        public boolean isIncluded() {
+            return included;
+        }
+    }
+
+    /**
+     * A generated project.
+     */
+    public static class PlannedModule {
+        private final String artifactId;
+
+        private final File directory;
+
+        private final File parentPom;
+
+        PlannedModule(String artifactId, File directory, File parentPom) {
+            this.artifactId = artifactId;
+            this.directory = directory;
+            this.parentPom = parentPom;
+        }
+
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        public File getDirectory() {
+            return directory;
+        }
+
+        /**
+         * @return the POM the module would be added to, or <code>null</code> if it would have no parent
+         */
+        public File getParentPom() {
+            return parentPom;
+        }
+    }
+}
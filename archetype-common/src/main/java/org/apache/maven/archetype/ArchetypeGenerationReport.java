@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where the time of a project generation went, and what it wrote. Times are in milliseconds.
+ * <p>
+ * Files may be generated by several threads: the report can be updated concurrently.
+ *
+ * @since 3.4.2
+ */
+public class ArchetypeGenerationReport {
+    /**
+     * The measured phases of a generation. {@link #RESOLVE}, {@link #DESCRIPTOR} and {@link #GENERATION} follow each
+     * other, the other phases being part of {@link #GENERATION}.
+     */
+    public enum Phase {
+        /**
+         * Resolution of the archetype, including its download.
+         */
+        RESOLVE,
+
+        /**
+         * Opening of the archetype and loading of its descriptor.
+         */
+        DESCRIPTOR,
+
+        /**
+         * Generation of the project from the opened archetype.
+         */
+        GENERATION,
+
+        /**
+         * Preparation of the Velocity context, part of {@link #GENERATION}.
+         */
+        CONTEXT,
+
+        /**
+         * Rendering and copying of fileset files, part of {@link #GENERATION}. When files are generated in parallel,
+         * this is the time summed over the threads.
+         */
+        FILESETS,
+
+        /**
+         * Rendering and merging of POMs, part of {@link #GENERATION}.
+         */
+        POM,
+
+        /**
+         * Execution of the post-generation script, part of {@link #GENERATION}.
+         */
+        POST_GENERATION_SCRIPT
+    }
+
+    private final Map<Phase, AtomicLong> times = new EnumMap<>(Phase.class);
+
+    private final List<Fileset> filesets = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicLong filesWritten = new AtomicLong();
+
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    public ArchetypeGenerationReport() {
+        for (Phase phase : Phase.values()) {
+            times.put(phase, new AtomicLong());
+        }
+    }
+
+    /**
+     * @param phase the phase
+     * @param nanos the time spent in the phase, in nanoseconds
+     */
+    public void addTime(Phase phase, long nanos) {
+        times.get(phase).addAndGet(nanos);
+    }
+
+    /**
+     * @return the time spent in the phase
+     */
+    public long getTime(Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(times.get(phase).get());
+    }
+
+    /**
+     * @return the time spent resolving the archetype, loading its descriptor and generating the project
+     */
+    public long getTotalTime() {
+        return TimeUnit.NANOSECONDS.toMillis(times.get(Phase.RESOLVE).get()
+                + times.get(Phase.DESCRIPTOR).get()
+                + times.get(Phase.GENERATION).get());
+    }
+
+    /**
+     * Records a written file which is not part of a fileset, like a POM.
+     *
+     * @param bytes the file size
+     */
+    public void addFile(long bytes) {
+        filesWritten.incrementAndGet();
+        bytesWritten.addAndGet(bytes);
+    }
+
+    /**
+     * @return the number of files written, in filesets or not
+     */
+    public long getFilesWritten() {
+        return filesWritten.get();
+    }
+
+    /**
+     * @return the size of the files written, in filesets or not
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * @param module the module offset, empty for the root project
+     * @param directory the fileset directory
+     * @param filtered whether the fileset files are rendered, or copied
+     * @return the report of the processed fileset, to update as its files are written
+     */
+    public Fileset addFileset(String module, String directory, boolean filtered) {
+        Fileset fileset = new Fileset(module, directory, filtered);
+
+        filesets.add(fileset);
+
+        return fileset;
+    }
+
+    /**
+     * @return the processed filesets, in processing order
+     */
+    public List<Fileset> getFilesets() {
+        synchronized (filesets) {
+            return new ArrayList<>(filesets);
+        }
+    }
+
+    /**
+     * The files written for a fileset of a module.
+     */
+    public class Fileset {
+        private final String module;
+
+        private final String directory;
+
+        private final boolean filtered;
+
+        private final AtomicLong files = new AtomicLong();
+
+        private final AtomicLong bytes = new AtomicLong();
+
+        private final AtomicLong time = new AtomicLong();
+
+        Fileset(String module, String directory, boolean filtered) {
+            this.module = module;
+            this.directory = directory;
+            this.filtered = filtered;
+        }
+
+        /**
+         * @param fileBytes the size of the written file, or a negative value if no file was written
+         * @param nanos the time spent processing the file, in nanoseconds
+         */
+        public void addFile(long fileBytes, long nanos) {
+            if (fileBytes >= 0) {
+                files.incrementAndGet();
+                bytes.addAndGet(fileBytes);
+                ArchetypeGenerationReport.this.addFile(fileBytes);
+            }
+
+            time.addAndGet(nanos);
+            addTime(Phase.FILESETS, nanos);
+        }
+
+        public String getModule() {
+            return module;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public boolean isFiltered() {
+            return filtered;
+        }
+
+        public long getFilesWritten() {
+            return files.get();
+        }
+
+        public long getBytesWritten() {
+            return bytes.get();
+        }
+
+        /**
+         * @return the time spent processing the fileset files, summed over the threads
+         */
+        public long getTime() {
+            return TimeUnit.NANOSECONDS.toMillis(time.get());
+        }
+    }
+}
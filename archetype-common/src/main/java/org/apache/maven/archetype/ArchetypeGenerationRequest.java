@@ -18,11 +18,13 @@
  */
 package org.apache.maven.archetype;
 
+import java.io.File;
 import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 
 import org.apache.maven.archetype.catalog.Archetype;
+import org.apache.maven.archetype.output.OutputSink;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.project.ProjectBuildingRequest;
@@ -94,6 +96,36 @@ public class ArchetypeGenerationRequest {
      */
     private String filter;
 
+    /**
+     * @since 3.4.2
+     */
+    private File contentCacheDirectory;
+
+    /**
+     * @since 3.4.2
+     */
+    private boolean linkCachedContent;
+
+    /**
+     * @since 3.4.2
+     */
+    private int parallelism = 1;
+
+    /**
+     * @since 3.4.2
+     */
+    private boolean planOnly;
+
+    /**
+     * @since 3.4.2
+     */
+    private boolean incremental;
+
+    /**
+     * @since 3.4.2
+     */
+    private OutputSink outputSink;
+
     public ArchetypeGenerationRequest() {
         // no op
     }
@@ -344,4 +376,91 @@ public class ArchetypeGenerationRequest {
         this.filter = filter;
         return this;
     }
+
+    public File getContentCacheDirectory() {
+        return contentCacheDirectory;
+    }
+
+    /**
+     * @param contentCacheDirectory the directory where archetype resources are exploded, so that unfiltered files are
+     *            not inflated from the archetype jar on each generation, or <code>null</code> to disable the cache
+     * @since 3.4.2
+     */
+    public ArchetypeGenerationRequest setContentCacheDirectory(File contentCacheDirectory) {
+        this.contentCacheDirectory = contentCacheDirectory;
+        return this;
+    }
+
+    public boolean isLinkCachedContent() {
+        return linkCachedContent;
+    }
+
+    /**
+     * @param linkCachedContent <code>true</code> to hard link unfiltered files to the content cache instead of copying
+     *            them, when the file system supports it: linked files share their content with the cache, and must
+     *            not be modified in place
+     * @since 3.4.2
+     */
+    public ArchetypeGenerationRequest setLinkCachedContent(boolean linkCachedContent) {
+        this.linkCachedContent = linkCachedContent;
+        return this;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism the number of threads generating the files of a fileset archetype, <code>1</code> to generate
+     *            them on the calling thread
+     * @since 3.4.2
+     */
+    public ArchetypeGenerationRequest setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public boolean isPlanOnly() {
+        return planOnly;
+    }
+
+    /**
+     * @param planOnly <code>true</code> to only compute the {@link ArchetypeGenerationResult#getPlan() plan} of the
+     *            generation, without writing anything
+     * @since 3.4.2
+     */
+    public ArchetypeGenerationRequest setPlanOnly(boolean planOnly) {
+        this.planOnly = planOnly;
+        return this;
+    }
+
+    public OutputSink getOutputSink() {
+        return outputSink;
+    }
+
+    /**
+     * @param outputSink where the files of a fileset archetype are written, or <code>null</code> to write them in the
+     *            output directory. Paths in the sink are relative to the output directory, which is still used to
+     *            locate the generated files.
+     * @since 3.4.2
+     */
+    public ArchetypeGenerationRequest setOutputSink(OutputSink outputSink) {
+        this.outputSink = outputSink;
+        return this;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * @param incremental <code>true</code> to record the generated files in a manifest written in the project, so that
+     *            generating again into the project only renders the files whose template or properties changed, and
+     *            keeps the files modified since they were generated
+     * @since 3.4.2
+     */
+    public ArchetypeGenerationRequest setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
 }
@@ -24,6 +24,10 @@ package org.apache.maven.archetype;
 public class ArchetypeGenerationResult {
     private Exception cause;
 
+    private final ArchetypeGenerationReport report = new ArchetypeGenerationReport();
+
+    private final ArchetypeGenerationPlan plan = new ArchetypeGenerationPlan();
+
     public Exception getCause() {
         return cause;
     }
@@ -31,4 +35,20 @@ public class ArchetypeGenerationResult {
     public void setCause(Exception cause) {
         this.cause = cause;
     }
+
+    /**
+     * @return the timings and counters of the generation
+     * @since 3.4.2
+     */
+    public ArchetypeGenerationReport getReport() {
+        return report;
+    }
+
+    /**
+     * @return the plan of the generation, empty unless the request was plan-only
+     * @since 3.4.2
+     */
+    public ArchetypeGenerationPlan getPlan() {
+        return plan;
+    }
 }
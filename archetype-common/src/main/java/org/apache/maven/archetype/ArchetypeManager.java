@@ -52,6 +52,31 @@ public interface ArchetypeManager {
      */
     ArchetypeGenerationResult generateProjectFromArchetype(ArchetypeGenerationRequest request);
 
+    /**
+     * A command to generate Maven projects from archetypes given the supplied generation requests, with as many
+     * projects generated at the same time as there are available processors.
+     *
+     * @param requests
+     * @return the results of creating the projects, in the order of the requests
+     * @see #generateProjectsFromArchetype(List, int)
+     * @since 3.4.2
+     */
+    List<ArchetypeGenerationResult> generateProjectsFromArchetype(List<ArchetypeGenerationRequest> requests);
+
+    /**
+     * A command to generate Maven projects from archetypes given the supplied generation requests. Requests for the
+     * same archetype share its resolution, opened jar, descriptor, parsed templates and compiled post-generation
+     * script.
+     *
+     * @param requests
+     * @param concurrency the maximum number of projects generated at the same time
+     * @return the results of creating the projects, in the order of the requests. Each contains any error that
+     *         might have occurred for its project.
+     * @since 3.4.2
+     */
+    List<ArchetypeGenerationResult> generateProjectsFromArchetype(
+            List<ArchetypeGenerationRequest> requests, int concurrency);
+
     /**
      * Gives the catalog of archetypes internal to the plugin.
      *
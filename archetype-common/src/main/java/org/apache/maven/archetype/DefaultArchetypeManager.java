@@ -26,6 +26,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.zip.ZipEntry;
@@ -79,6 +80,24 @@ public class DefaultArchetypeManager implements ArchetypeManager {
         return result;
     }
 
+    @Override
+    public List<ArchetypeGenerationResult> generateProjectsFromArchetype(List<ArchetypeGenerationRequest> requests) {
+        return generateProjectsFromArchetype(requests, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public List<ArchetypeGenerationResult> generateProjectsFromArchetype(
+            List<ArchetypeGenerationRequest> requests, int concurrency) {
+        List<ArchetypeGenerationResult> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            results.add(new ArchetypeGenerationResult());
+        }
+
+        generator.generateArchetypes(requests, concurrency, results);
+
+        return results;
+    }
+
     @Override
     public File archiveArchetype(File archetypeDirectory, File outputDirectory, String finalName) throws IOException {
         File jarFile = new File(outputDirectory, finalName + ".jar");
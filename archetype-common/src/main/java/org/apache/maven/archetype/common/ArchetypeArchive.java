@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.common;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.archetype.common.util.PathIndex;
+import org.apache.maven.archetype.metadata.ArchetypeDescriptor;
+import org.apache.maven.archetype.metadata.io.xpp3.ArchetypeDescriptorXpp3Reader;
+import org.apache.maven.archetype.old.descriptor.ArchetypeDescriptorBuilder;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * An opened archetype jar. The jar is read once: every entry is indexed by name and the content of
+ * <code>archetype-resources/</code> is listed up front, so that descriptor, resource and script lookups don't need
+ * to scan the zip again.
+ * <p>
+ * When the archetype metadata is known from the {@link ArchetypeMetadataIndex}, the jar is only opened once an
+ * entry content is actually requested.
+ *
+ * @since 3.4.2
+ */
+public class ArchetypeArchive implements Closeable {
+    private final File file;
+
+    private ArchetypeMetadataIndex.Metadata metadata;
+
+    private ZipFile zipFile;
+
+    private Map<String, ZipEntry> entries;
+
+    private List<String> archetypeResources;
+
+    private ArchetypeContentCache contentCache;
+
+    private PathIndex archetypeResourcesIndex;
+
+    public ArchetypeArchive(File file) throws IOException {
+        this.file = file;
+        this.metadata = null;
+
+        open();
+    }
+
+    ArchetypeArchive(File file, ArchetypeMetadataIndex.Metadata metadata) {
+        this.file = file;
+        this.metadata = metadata;
+        this.archetypeResources = metadata.getArchetypeResources();
+    }
+
+    void setMetadata(ArchetypeMetadataIndex.Metadata metadata) {
+        this.metadata = metadata;
+    }
+
+    /**
+     * @param contentCache the cache used by {@link #copyEntry(String, Path)}, or <code>null</code> to always read
+     *            entries from the jar
+     */
+    public void setContentCache(ArchetypeContentCache contentCache) {
+        this.contentCache = contentCache;
+    }
+
+    private synchronized void open() throws IOException {
+        if (zipFile != null) {
+            return;
+        }
+
+        ZipFile zip = new ZipFile(file);
+
+        Map<String, ZipEntry> index = new LinkedHashMap<>();
+        List<String> resources = new ArrayList<>();
+
+        Enumeration<? extends ZipEntry> enumeration = zip.entries();
+        while (enumeration.hasMoreElements()) {
+            ZipEntry entry = enumeration.nextElement();
+
+            index.put(entry.getName(), entry);
+
+            if (entry.getName().startsWith(Constants.ARCHETYPE_RESOURCES)) {
+                // not supposed to be file.separator
+                resources.add(entry.getName().substring(Constants.ARCHETYPE_RESOURCES.length() + 1));
+            }
+        }
+
+        this.zipFile = zip;
+        this.entries = index;
+        if (archetypeResources == null) {
+            this.archetypeResources = Collections.unmodifiableList(resources);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public ZipFile getZipFile() throws IOException {
+        open();
+
+        return zipFile;
+    }
+
+    /**
+     * @return the names of all entries of the archive, in the order of the zip central directory
+     * @throws IOException if the archive cannot be opened
+     */
+    public Set<String> getEntryNames() throws IOException {
+        open();
+
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    public ZipEntry getEntry(String name) throws IOException {
+        open();
+
+        return entries.get(name);
+    }
+
+    /**
+     * @param name the entry name
+     * @return the entry content or <code>null</code> if the archive has no such entry
+     * @throws IOException if the entry cannot be read
+     */
+    public InputStream getInputStream(String name) throws IOException {
+        ZipEntry entry = getEntry(name);
+
+        if (entry == null) {
+            return null;
+        }
+
+        InputStream is = zipFile.getInputStream(entry);
+
+        if (is == null) {
+            throw new IOException("The " + name + " entry cannot be read in " + zipFile.getName() + ".");
+        }
+
+        return is;
+    }
+
+    /**
+     * Copies the content of an entry to a file, through the content cache if one is set.
+     *
+     * @param name the entry name
+     * @param target the file to write, replaced if it exists
+     * @throws IOException if the entry cannot be read or the file cannot be written
+     */
+    public void copyEntry(String name, Path target) throws IOException {
+        if (contentCache != null && contentCache.materialize(this, name, target)) {
+            return;
+        }
+
+        try (InputStream is = getInputStream(name)) {
+            if (is == null) {
+                throw new IOException("The " + name + " entry does not exist in " + file + ".");
+            }
+
+            Files.copy(is, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @return the resources found in <code>archetype-resources/</code>, relative to that directory
+     */
+    public List<String> getArchetypeResources() {
+        return archetypeResources;
+    }
+
+    /**
+     * @return the resources found in <code>archetype-resources/</code>, indexed for fileset matching
+     * @since 3.4.2
+     */
+    public synchronized PathIndex getArchetypeResourcesIndex() {
+        if (archetypeResourcesIndex == null) {
+            archetypeResourcesIndex = new PathIndex(getArchetypeResources());
+        }
+
+        return archetypeResourcesIndex;
+    }
+
+    public boolean isFileSetArchetype() {
+        if (metadata != null) {
+            return metadata.isFileSetArchetype();
+        }
+
+        return entries.containsKey(Constants.ARCHETYPE_DESCRIPTOR);
+    }
+
+    public boolean isOldArchetype() {
+        if (metadata != null) {
+            return metadata.isOldArchetype();
+        }
+
+        return entries.containsKey(Constants.OLD_ARCHETYPE_DESCRIPTOR)
+                || entries.containsKey(Constants.OLDER_ARCHETYPE_DESCRIPTOR);
+    }
+
+    public ArchetypeDescriptor getFileSetArchetypeDescriptor() throws IOException, XmlPullParserException {
+        if (metadata != null) {
+            return metadata.getArchetypeDescriptor();
+        }
+
+        try (Reader reader = getReader(Constants.ARCHETYPE_DESCRIPTOR)) {
+            if (reader == null) {
+                return null;
+            }
+
+            ArchetypeDescriptorXpp3Reader archetypeReader = new ArchetypeDescriptorXpp3Reader();
+            return archetypeReader.read(reader, false);
+        }
+    }
+
+    public org.apache.maven.archetype.old.descriptor.ArchetypeDescriptor getOldArchetypeDescriptor()
+            throws IOException, XmlPullParserException {
+        open();
+
+        String descriptor = entries.containsKey(Constants.OLD_ARCHETYPE_DESCRIPTOR)
+                ? Constants.OLD_ARCHETYPE_DESCRIPTOR
+                : Constants.OLDER_ARCHETYPE_DESCRIPTOR;
+
+        try (Reader reader = getReader(descriptor)) {
+            if (reader == null) {
+                return null;
+            }
+
+            ArchetypeDescriptorBuilder builder = new ArchetypeDescriptorBuilder();
+            return builder.build(reader);
+        }
+    }
+
+    /**
+     * @return the post-generation script content, read as UTF-8, or <code>null</code> if there is no script
+     * @throws IOException if the script cannot be read
+     */
+    public String getPostGenerationScript() throws IOException {
+        if (metadata != null) {
+            return metadata.getPostGenerationScript();
+        }
+
+        try (Reader reader = getReader(Constants.ARCHETYPE_POST_GENERATION_SCRIPT)) {
+            return reader == null ? null : IOUtils.toString(reader);
+        }
+    }
+
+    private Reader getReader(String name) throws IOException {
+        InputStream is = getInputStream(name);
+
+        return is == null ? null : new InputStreamReader(is, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (zipFile != null) {
+            zipFile.close();
+        }
+    }
+}
@@ -42,10 +42,27 @@ public interface ArchetypeArtifactManager {
             RepositorySystemSession repositorySystemSession)
             throws UnknownArchetype;
 
+    /**
+     * @param archetypeFile the archetype jar
+     * @return a new class loader of the archetype jar, which keeps the jar open until it is closed
+     * @deprecated archetypes are read through an {@link ArchetypeArchive}, and fileset archetype templates through
+     *             an archive resource loader: a class loader returned by this method must be closed by the caller
+     */
+    @Deprecated
     ClassLoader getArchetypeJarLoader(File archetypeFile) throws UnknownArchetype;
 
     ZipFile getArchetypeZipFile(File archetypeFile) throws UnknownArchetype;
 
+    /**
+     * Open the archetype file as an indexed archive, to be closed by the caller.
+     *
+     * @param archetypeFile the archetype file
+     * @return the opened archive
+     * @throws UnknownArchetype if the file cannot be opened as a zip
+     * @since 3.4.2
+     */
+    ArchetypeArchive getArchetypeArchive(File archetypeFile) throws UnknownArchetype;
+
     boolean isFileSetArchetype(File archetypeFile);
 
     boolean isOldArchetype(File archetypeFile);
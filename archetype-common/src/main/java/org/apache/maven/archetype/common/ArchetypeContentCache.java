@@ -0,0 +1,358 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Content-addressed cache of exploded archetype resources, used to materialize unfiltered files without inflating
+ * them from the archetype jar on each generation.
+ * <p>
+ * The cache directory contains:
+ * <ul>
+ * <li><code>objects/</code>: the content of each resource, stored once by SHA-256 whatever the archetype shipping it,
+ * </li>
+ * <li><code>archives/</code>: for each archetype jar, the content hash of its resources, valid as long as the jar
+ * keeps the same size and modification time.</li>
+ * </ul>
+ * Files are materialized by copy or, if enabled, by hard link. A hard linked file shares its content with the cache
+ * and with the other projects linked to it: it must be replaced rather than modified in place. An object whose size
+ * or modification time changed since it was stored is hashed again before being used, and stored again if damaged.
+ *
+ * @since 3.4.2
+ */
+public class ArchetypeContentCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArchetypeContentCache.class);
+
+    private static final String LENGTH = "archetype.length";
+
+    private static final String LAST_MODIFIED = "archetype.lastModified";
+
+    private final Path objects;
+
+    private final Path archives;
+
+    private final boolean link;
+
+    private final Map<File, Map<String, CachedEntry>> explodedArchives = new HashMap<>();
+
+    /**
+     * @param directory the cache directory
+     * @param link <code>true</code> to materialize files by hard link when the file system supports it, linked files
+     *            sharing their content with the cache
+     */
+    public ArchetypeContentCache(File directory, boolean link) {
+        this.objects = directory.toPath().resolve("objects");
+        this.archives = directory.toPath().resolve("archives");
+        this.link = link;
+    }
+
+    /**
+     * Materializes an archive entry from the cache, exploding the archive into the cache first if needed.
+     *
+     * @return <code>false</code> if the entry is not cached: it has to be read from the archive
+     */
+    boolean materialize(ArchetypeArchive archive, String name, Path target) throws IOException {
+        CachedEntry entry = getEntries(archive).get(name);
+
+        if (entry == null) {
+            return false;
+        }
+
+        Path object = getObject(entry.hash);
+
+        if (!isIntact(object, entry)) {
+            // removed or damaged since the archive was exploded
+            LOGGER.debug("Cached content of " + name + " is missing or damaged, exploding it again");
+            entry.lastModified = storeObject(archive, archive.getEntry(name), true).lastModified;
+        }
+
+        if (link && link(object, target)) {
+            return true;
+        }
+
+        Files.copy(object, target, StandardCopyOption.REPLACE_EXISTING);
+        // the copy gets the mode of the object, which may be read-only
+        target.toFile().setWritable(true);
+        return true;
+    }
+
+    /**
+     * @return <code>false</code> if the object was removed or modified since it was stored, its content being only
+     *         hashed again if its modification time changed
+     */
+    private static boolean isIntact(Path object, CachedEntry entry) throws IOException {
+        if (!Files.isRegularFile(object) || Files.size(object) != entry.size) {
+            return false;
+        }
+
+        long lastModified = Files.getLastModifiedTime(object).toMillis();
+        if (lastModified == entry.lastModified) {
+            return true;
+        }
+
+        MessageDigest digest = newDigest();
+        try (InputStream in = Files.newInputStream(object)) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        }
+
+        if (!entry.hash.equals(toHex(digest.digest()))) {
+            return false;
+        }
+
+        entry.lastModified = lastModified;
+        return true;
+    }
+
+    /**
+     * Links a file to a cached object, replacing the file if it exists, like the outdated file of an incremental
+     * generation.
+     *
+     * @return <code>false</code> if the file system cannot link them: the object has to be copied
+     */
+    private static boolean link(Path object, Path target) throws IOException {
+        Path tmp = null;
+        try {
+            if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+                // linked next to the file then moved over it, the file never being missing
+                tmp = Files.createTempFile(
+                        target.getParent(), target.getFileName().toString(), Constants.TMP);
+                Files.delete(tmp);
+                Files.createLink(tmp, object);
+                move(tmp, target);
+            } else {
+                Files.createLink(target, object);
+            }
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            // other file system, or no hard link support
+            LOGGER.debug("Unable to link " + target + " to " + object + ", copying it", e);
+            return false;
+        } finally {
+            if (tmp != null) {
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+
+    private synchronized Map<String, CachedEntry> getEntries(ArchetypeArchive archive) throws IOException {
+        File file = archive.getFile();
+
+        Map<String, CachedEntry> entries = explodedArchives.get(file);
+
+        if (entries == null) {
+            Path manifest =
+                    archives.resolve(hash(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8)) + ".properties");
+
+            entries = readManifest(manifest, file);
+
+            if (entries == null) {
+                entries = explode(archive, manifest);
+            }
+
+            explodedArchives.put(file, entries);
+        }
+
+        return entries;
+    }
+
+    private Map<String, CachedEntry> readManifest(Path manifest, File file) throws IOException {
+        if (!Files.isRegularFile(manifest)) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(manifest)) {
+            properties.load(in);
+        }
+
+        if (!String.valueOf(file.length()).equals(properties.getProperty(LENGTH))
+                || !String.valueOf(file.lastModified()).equals(properties.getProperty(LAST_MODIFIED))) {
+            LOGGER.debug("Exploded content of " + file + " is out of date");
+            return null;
+        }
+
+        properties.remove(LENGTH);
+        properties.remove(LAST_MODIFIED);
+
+        Map<String, CachedEntry> entries = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            String[] value = properties.getProperty(name).split(" ");
+
+            // the modification time of objects is not recorded by older caches: they are hashed again
+            entries.put(
+                    name,
+                    new CachedEntry(
+                            value[0], Long.parseLong(value[1]), value.length > 2 ? Long.parseLong(value[2]) : -1));
+        }
+
+        return entries;
+    }
+
+    private Map<String, CachedEntry> explode(ArchetypeArchive archive, Path manifest) throws IOException {
+        LOGGER.debug("Exploding " + archive.getFile() + " into the content cache");
+
+        Map<String, CachedEntry> entries = new HashMap<>();
+        Properties properties = new Properties();
+
+        for (String resource : archive.getArchetypeResources()) {
+            ZipEntry zipEntry = archive.getEntry(Constants.ARCHETYPE_RESOURCES + "/" + resource);
+
+            if (zipEntry == null || zipEntry.isDirectory()) {
+                continue;
+            }
+
+            CachedEntry entry = storeObject(archive, zipEntry, false);
+
+            entries.put(zipEntry.getName(), entry);
+            properties.setProperty(zipEntry.getName(), entry.hash + ' ' + entry.size + ' ' + entry.lastModified);
+        }
+
+        properties.setProperty(LENGTH, String.valueOf(archive.getFile().length()));
+        properties.setProperty(LAST_MODIFIED, String.valueOf(archive.getFile().lastModified()));
+
+        Files.createDirectories(archives);
+        Path tmp = Files.createTempFile(archives, manifest.getFileName().toString(), Constants.TMP);
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                properties.store(out, archive.getFile().getAbsolutePath());
+            }
+            move(tmp, manifest);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        return entries;
+    }
+
+    /**
+     * @param replace <code>true</code> to replace an existing object of the same size, which may be damaged
+     */
+    private CachedEntry storeObject(ArchetypeArchive archive, ZipEntry zipEntry, boolean replace) throws IOException {
+        Files.createDirectories(objects);
+
+        Path tmp = Files.createTempFile(objects, "object", Constants.TMP);
+        try {
+            MessageDigest digest = newDigest();
+            long size;
+
+            try (InputStream in = archive.getInputStream(zipEntry.getName());
+                    OutputStream out = new DigestOutputStream(Files.newOutputStream(tmp), digest)) {
+                size = copy(in, out);
+            }
+
+            String hash = toHex(digest.digest());
+            Path object = getObject(hash);
+
+            if (replace || !Files.isRegularFile(object) || Files.size(object) != size) {
+                Files.createDirectories(object.getParent());
+                move(tmp, object);
+            }
+
+            return new CachedEntry(hash, size, Files.getLastModifiedTime(object).toMillis());
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Path getObject(String hash) {
+        return objects.resolve(hash.substring(0, 2)).resolve(hash.substring(2));
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        // other builds may use the cache concurrently: never expose a partially written file
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        long count = 0;
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+            count += n;
+        }
+        return count;
+    }
+
+    private static String hash(byte[] bytes) {
+        return toHex(newDigest().digest(bytes));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static class CachedEntry {
+        private final String hash;
+
+        private final long size;
+
+        /**
+         * The modification time of the object when its content was last known to be intact.
+         */
+        private volatile long lastModified;
+
+        CachedEntry(String hash, long size, long lastModified) {
+            this.hash = hash;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
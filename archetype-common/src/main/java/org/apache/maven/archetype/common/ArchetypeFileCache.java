@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.common;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.archetype.downloader.DownloadException;
+
+/**
+ * Thread-safe cache of resolved archetype files, keyed by archetype GAV.
+ * <ul>
+ * <li>concurrent callers asking for the same GAV share a single resolution,</li>
+ * <li>resolved files are kept for a limited time, and the least recently used entries are evicted once the cache is
+ * full,</li>
+ * <li>resolution failures are kept for a short time, so that a missing archetype is not resolved again on each
+ * call from the same repositories.</li>
+ * </ul>
+ *
+ * @since 3.4.2
+ */
+class ArchetypeFileCache {
+    static final int DEFAULT_MAX_SIZE = 256;
+
+    static final long DEFAULT_TTL = TimeUnit.MINUTES.toNanos(30);
+
+    static final long DEFAULT_NEGATIVE_TTL = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * Resolves the archetype file of a cache miss.
+     */
+    interface Resolver {
+        File resolve() throws DownloadException;
+    }
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final int maxSize;
+
+    private final long ttl;
+
+    private final long negativeTtl;
+
+    ArchetypeFileCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL);
+    }
+
+    ArchetypeFileCache(int maxSize, long ttl, long negativeTtl) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+    }
+
+    /**
+     * @param key the archetype GAV
+     * @param repositories identifies the repositories the archetype is resolved from: a recent failure is only
+     *            reported again for the same repositories
+     * @param resolver resolves the archetype on a cache miss
+     * @return the cached archetype file, or the file resolved by the resolver on a cache miss
+     * @throws DownloadException if the resolution failed, now or recently
+     */
+    File get(String key, String repositories, Resolver resolver) throws DownloadException {
+        Entry entry;
+        boolean owner = false;
+
+        while (true) {
+            entry = entries.get(key);
+
+            if (entry != null && (entry.isStale(System.nanoTime()) || entry.isFailedFrom(repositories))) {
+                entries.remove(key, entry);
+                continue;
+            }
+
+            if (entry == null) {
+                Entry created = new Entry(repositories, resolver);
+                entry = entries.putIfAbsent(key, created);
+
+                if (entry == null) {
+                    entry = created;
+                    owner = true;
+                }
+            }
+            break;
+        }
+
+        if (owner) {
+            entry.resolve();
+            evictIfFull();
+        }
+
+        return entry.get();
+    }
+
+    /**
+     * @return the cached archetype file or <code>null</code> if none is resolved for this key
+     */
+    File getIfPresent(String key) {
+        Entry entry = entries.get(key);
+
+        if (entry == null || !entry.isDone() || entry.isStale(System.nanoTime())) {
+            return null;
+        }
+
+        try {
+            return entry.get();
+        } catch (DownloadException e) {
+            return null;
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evictIfFull() {
+        while (entries.size() > maxSize) {
+            Map.Entry<String, Entry> eldest = null;
+
+            for (Map.Entry<String, Entry> candidate : entries.entrySet()) {
+                if (candidate.getValue().isDone()
+                        && (eldest == null || candidate.getValue().lastAccess < eldest.getValue().lastAccess)) {
+                    eldest = candidate;
+                }
+            }
+
+            if (eldest == null) {
+                // only pending resolutions, they will be evicted later
+                return;
+            }
+
+            entries.remove(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private class Entry {
+        private final String repositories;
+
+        private final FutureTask<File> task;
+
+        private volatile boolean done;
+
+        private volatile long expiresAt;
+
+        private volatile long lastAccess = System.nanoTime();
+
+        Entry(String repositories, Resolver resolver) {
+            this.repositories = repositories;
+            this.task = new FutureTask<>(resolver::resolve);
+        }
+
+        void resolve() {
+            task.run();
+
+            expiresAt = System.nanoTime() + (isFailed() ? negativeTtl : ttl);
+            done = true;
+        }
+
+        boolean isDone() {
+            return done;
+        }
+
+        boolean isFailedFrom(String otherRepositories) {
+            return isDone() && isFailed() && !repositories.equals(otherRepositories);
+        }
+
+        private boolean isFailed() {
+            try {
+                task.get();
+                return false;
+            } catch (ExecutionException | InterruptedException e) {
+                return true;
+            }
+        }
+
+        boolean isStale(long now) {
+            if (!isDone()) {
+                return false;
+            }
+
+            if (now - expiresAt >= 0) {
+                return true;
+            }
+
+            if (isFailed()) {
+                return false;
+            }
+
+            // the file may have been removed from the local repository in the meantime
+            File file = getQuietly();
+            return file == null || !file.exists();
+        }
+
+        private File getQuietly() {
+            try {
+                return task.get();
+            } catch (ExecutionException | InterruptedException e) {
+                return null;
+            }
+        }
+
+        File get() throws DownloadException {
+            lastAccess = System.nanoTime();
+
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DownloadException("Interrupted while resolving archetype", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+
+                if (cause instanceof DownloadException) {
+                    throw (DownloadException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new DownloadException(cause.getMessage(), cause);
+            }
+        }
+    }
+}
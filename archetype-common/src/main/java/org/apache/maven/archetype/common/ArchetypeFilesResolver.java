@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
+import org.apache.maven.archetype.common.util.PathIndex;
 import org.apache.maven.archetype.metadata.FileSet;
 
 /**
@@ -35,6 +36,13 @@ public interface ArchetypeFilesResolver {
 
     List<String> filterFiles(String moduleOffset, FileSet fileSet, List<String> archetypeResources);
 
+    /**
+     * Same as {@link #filterFiles(String, FileSet, List)}, on indexed resources.
+     *
+     * @since 3.4.2
+     */
+    List<String> filterFiles(String moduleOffset, FileSet fileSet, PathIndex archetypeResources);
+
     List<String> findOtherResources(int level, List<String> files, String languages);
 
     List<String> findOtherResources(int level, List<String> files, List<String> sourcesFiles, String languages);
@@ -0,0 +1,350 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.archetype.metadata.AbstractArchetypeDescriptor;
+import org.apache.maven.archetype.metadata.ArchetypeDescriptor;
+import org.apache.maven.archetype.metadata.FileSet;
+import org.apache.maven.archetype.metadata.ModuleDescriptor;
+import org.apache.maven.archetype.metadata.RequiredProperty;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk index of archetype metadata, stored in the local repository under <code>.archetype-index/</code>.
+ * For each archetype GAV, it keeps the parsed <code>archetype-metadata.xml</code>, the list of
+ * <code>archetype-resources/</code> and the post-generation script in a compact binary form, so that a released
+ * archetype jar doesn't need to be parsed again on each generation.
+ * <p>
+ * An entry is only used if the archetype jar still has the size and modification time recorded in it.
+ *
+ * @since 3.4.2
+ */
+class ArchetypeMetadataIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArchetypeMetadataIndex.class);
+
+    static final String INDEX_DIRECTORY = ".archetype-index";
+
+    private static final int MAGIC = 0x41524958; // "ARIX"
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final File directory;
+
+    ArchetypeMetadataIndex(File localRepository) {
+        this.directory = new File(localRepository, INDEX_DIRECTORY);
+    }
+
+    File getIndexFile(String groupId, String artifactId, String version) {
+        return new File(
+                directory, groupId.replace('.', '/') + '/' + artifactId + '/' + artifactId + '-' + version + ".idx");
+    }
+
+    /**
+     * @return the indexed metadata, or <code>null</code> if there is no up-to-date index entry for the jar
+     */
+    Metadata read(String groupId, String artifactId, String version, File archetypeFile) {
+        File indexFile = getIndexFile(groupId, artifactId, version);
+
+        if (!indexFile.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+
+            if (in.readLong() != archetypeFile.length() || in.readLong() != archetypeFile.lastModified()) {
+                LOGGER.debug("Index entry " + indexFile + " is out of date");
+                return null;
+            }
+
+            Metadata metadata = new Metadata();
+            metadata.fileSetArchetype = in.readBoolean();
+            metadata.oldArchetype = in.readBoolean();
+
+            int resourceCount = in.readInt();
+            List<String> resources = new ArrayList<>(resourceCount);
+            for (int i = 0; i < resourceCount; i++) {
+                resources.add(in.readUTF());
+            }
+            metadata.archetypeResources = Collections.unmodifiableList(resources);
+
+            if (in.readBoolean()) {
+                metadata.archetypeDescriptor = readArchetypeDescriptor(in);
+            }
+
+            metadata.postGenerationScript = readLongString(in);
+
+            LOGGER.debug("Using index entry " + indexFile + " for " + archetypeFile);
+
+            return metadata;
+        } catch (IOException e) {
+            LOGGER.debug("Unable to read index entry " + indexFile, e);
+            return null;
+        }
+    }
+
+    void write(String groupId, String artifactId, String version, File archetypeFile, Metadata metadata) {
+        File indexFile = getIndexFile(groupId, artifactId, version);
+
+        try {
+            Path parent = indexFile.getParentFile().toPath();
+            Files.createDirectories(parent);
+
+            // write to a temporary file first, other builds may read the index concurrently
+            Path tmp = Files.createTempFile(parent, indexFile.getName(), Constants.TMP);
+            try {
+                try (DataOutputStream out =
+                        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeLong(archetypeFile.length());
+                    out.writeLong(archetypeFile.lastModified());
+
+                    out.writeBoolean(metadata.fileSetArchetype);
+                    out.writeBoolean(metadata.oldArchetype);
+
+                    out.writeInt(metadata.archetypeResources.size());
+                    for (String resource : metadata.archetypeResources) {
+                        out.writeUTF(resource);
+                    }
+
+                    out.writeBoolean(metadata.archetypeDescriptor != null);
+                    if (metadata.archetypeDescriptor != null) {
+                        writeArchetypeDescriptor(out, metadata.archetypeDescriptor);
+                    }
+
+                    writeLongString(out, metadata.postGenerationScript);
+                }
+
+                try {
+                    Files.move(tmp, indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+
+            LOGGER.debug("Wrote index entry " + indexFile + " for " + archetypeFile);
+        } catch (IOException e) {
+            LOGGER.debug("Unable to write index entry " + indexFile, e);
+        }
+    }
+
+    private static void writeArchetypeDescriptor(DataOutputStream out, ArchetypeDescriptor descriptor)
+            throws IOException {
+        writeString(out, descriptor.getName());
+        out.writeBoolean(descriptor.isPartial());
+
+        out.writeInt(descriptor.getRequiredProperties().size());
+        for (RequiredProperty requiredProperty : descriptor.getRequiredProperties()) {
+            writeString(out, requiredProperty.getKey());
+            writeString(out, requiredProperty.getDefaultValue());
+            writeString(out, requiredProperty.getValidationRegex());
+        }
+
+        writeFileSetsAndModules(out, descriptor);
+    }
+
+    private static void writeFileSetsAndModules(DataOutputStream out, AbstractArchetypeDescriptor descriptor)
+            throws IOException {
+        out.writeInt(descriptor.getFileSets().size());
+        for (FileSet fileSet : descriptor.getFileSets()) {
+            out.writeBoolean(fileSet.isFiltered());
+            out.writeBoolean(fileSet.isPackaged());
+            writeString(out, fileSet.getEncoding());
+            writeString(out, fileSet.getDirectory());
+            writeString(out, fileSet.getIncludeCondition());
+            writeStrings(out, fileSet.getIncludes());
+            writeStrings(out, fileSet.getExcludes());
+        }
+
+        out.writeInt(descriptor.getModules().size());
+        for (ModuleDescriptor module : descriptor.getModules()) {
+            writeString(out, module.getId());
+            writeString(out, module.getDir());
+            writeString(out, module.getName());
+            writeFileSetsAndModules(out, module);
+        }
+    }
+
+    private static ArchetypeDescriptor readArchetypeDescriptor(DataInputStream in) throws IOException {
+        ArchetypeDescriptor descriptor = new ArchetypeDescriptor();
+        descriptor.setName(readString(in));
+        descriptor.setPartial(in.readBoolean());
+
+        int requiredPropertyCount = in.readInt();
+        for (int i = 0; i < requiredPropertyCount; i++) {
+            RequiredProperty requiredProperty = new RequiredProperty();
+            requiredProperty.setKey(readString(in));
+            requiredProperty.setDefaultValue(readString(in));
+            requiredProperty.setValidationRegex(readString(in));
+            descriptor.addRequiredProperty(requiredProperty);
+        }
+
+        readFileSetsAndModules(in, descriptor);
+
+        return descriptor;
+    }
+
+    private static void readFileSetsAndModules(DataInputStream in, AbstractArchetypeDescriptor descriptor)
+            throws IOException {
+        int fileSetCount = in.readInt();
+        for (int i = 0; i < fileSetCount; i++) {
+            FileSet fileSet = new FileSet();
+            fileSet.setFiltered(in.readBoolean());
+            fileSet.setPackaged(in.readBoolean());
+            fileSet.setEncoding(readString(in));
+            fileSet.setDirectory(readString(in));
+            fileSet.setIncludeCondition(readString(in));
+            fileSet.setIncludes(readStrings(in));
+            fileSet.setExcludes(readStrings(in));
+            descriptor.addFileSet(fileSet);
+        }
+
+        int moduleCount = in.readInt();
+        for (int i = 0; i < moduleCount; i++) {
+            ModuleDescriptor module = new ModuleDescriptor();
+            module.setId(readString(in));
+            module.setDir(readString(in));
+            module.setName(readString(in));
+            readFileSetsAndModules(in, module);
+            descriptor.addModule(module);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+
+    /**
+     * Unlike {@link DataOutputStream#writeUTF(String)}, not limited to 64k: scripts can be larger.
+     */
+    private static void writeLongString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readLongString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The archetype metadata kept in the index.
+     */
+    static class Metadata {
+        private boolean fileSetArchetype;
+
+        private boolean oldArchetype;
+
+        private List<String> archetypeResources;
+
+        private ArchetypeDescriptor archetypeDescriptor;
+
+        private String postGenerationScript;
+
+        /**
+         * Reads the metadata to be indexed from an opened archive.
+         */
+        static Metadata of(ArchetypeArchive archive) throws IOException, XmlPullParserException {
+            Metadata metadata = new Metadata();
+            metadata.fileSetArchetype = archive.isFileSetArchetype();
+            metadata.oldArchetype = archive.isOldArchetype();
+            metadata.archetypeResources = archive.getArchetypeResources();
+            metadata.archetypeDescriptor = archive.getFileSetArchetypeDescriptor();
+            metadata.postGenerationScript = archive.getPostGenerationScript();
+            return metadata;
+        }
+
+        boolean isFileSetArchetype() {
+            return fileSetArchetype;
+        }
+
+        boolean isOldArchetype() {
+            return oldArchetype;
+        }
+
+        List<String> getArchetypeResources() {
+            return archetypeResources;
+        }
+
+        ArchetypeDescriptor getArchetypeDescriptor() {
+            return archetypeDescriptor;
+        }
+
+        String getPostGenerationScript() {
+            return postGenerationScript;
+        }
+    }
+}
@@ -25,27 +25,20 @@ import javax.inject.Singleton;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.maven.archetype.downloader.DownloadException;
 import org.apache.maven.archetype.downloader.Downloader;
 import org.apache.maven.archetype.exception.UnknownArchetype;
 import org.apache.maven.archetype.metadata.ArchetypeDescriptor;
-import org.apache.maven.archetype.metadata.io.xpp3.ArchetypeDescriptorXpp3Reader;
-import org.apache.maven.archetype.old.descriptor.ArchetypeDescriptorBuilder;
 import org.apache.maven.model.Model;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.eclipse.aether.RepositorySystemSession;
@@ -64,7 +57,12 @@ public class DefaultArchetypeArtifactManager implements ArchetypeArtifactManager
     @Inject
     private PomManager pomManager;
 
-    private Map<String, File> archetypeCache = new TreeMap<>();
+    private final ArchetypeFileCache archetypeCache = new ArchetypeFileCache();
+
+    /**
+     * Archetypes resolved from a repository, least recently used first, bounded as the resolved archetype files.
+     */
+    private final Map<File, IndexedArchetype> indexedArchetypes = new LinkedHashMap<>(16, 0.75f, true);
 
     @Override
     public File getArchetypeFile(
@@ -75,20 +73,14 @@ public class DefaultArchetypeArtifactManager implements ArchetypeArtifactManager
             RepositorySystemSession repositorySystemSession)
             throws UnknownArchetype {
         try {
-            File archetype = getArchetype(groupId, artifactId, version);
-
-            if (archetype == null) {
-                archetype = downloader.download(groupId, artifactId, version, repositories, repositorySystemSession);
-
-                setArchetype(groupId, artifactId, version, archetype);
-            }
-            return archetype;
+            return getArchetype(groupId, artifactId, version, repositories, repositorySystemSession);
         } catch (DownloadException ex) {
             throw new UnknownArchetype(ex);
         }
     }
 
     @Override
+    @Deprecated
     public ClassLoader getArchetypeJarLoader(File archetypeFile) throws UnknownArchetype {
         try {
             URL[] urls = new URL[1];
@@ -104,14 +96,10 @@ public class DefaultArchetypeArtifactManager implements ArchetypeArtifactManager
     @Override
     public Model getArchetypePom(File jar) throws XmlPullParserException, UnknownArchetype, IOException {
 
-        try (ZipFile zipFile = getArchetypeZipFile(jar)) {
+        try (ArchetypeArchive archive = getArchetypeArchive(jar)) {
             String pomFileName = null;
 
-            Enumeration<? extends ZipEntry> enumeration = zipFile.entries();
-            while (enumeration.hasMoreElements()) {
-                ZipEntry el = enumeration.nextElement();
-
-                String entry = el.getName();
+            for (String entry : archive.getEntryNames()) {
                 if (entry.startsWith("META-INF") && entry.endsWith("pom.xml")) {
                     pomFileName = entry;
                 }
@@ -121,12 +109,12 @@ public class DefaultArchetypeArtifactManager implements ArchetypeArtifactManager
                 return null;
             }
 
-            ZipEntry pom = zipFile.getEntry(pomFileName);
+            InputStream pom = archive.getInputStream(pomFileName);
 
             if (pom == null) {
                 return null;
             }
-            return pomManager.readPom(zipFile.getInputStream(pom));
+            return pomManager.readPom(pom);
         }
     }
 
@@ -139,12 +127,49 @@ public class DefaultArchetypeArtifactManager implements ArchetypeArtifactManager
         }
     }
 
+    @Override
+    public ArchetypeArchive getArchetypeArchive(File archetypeFile) throws UnknownArchetype {
+        IndexedArchetype indexed;
+        synchronized (indexedArchetypes) {
+            indexed = indexedArchetypes.get(archetypeFile);
+        }
+
+        if (indexed != null) {
+            ArchetypeMetadataIndex.Metadata metadata = indexed.read(archetypeFile);
+
+            if (metadata != null) {
+                return new ArchetypeArchive(archetypeFile, metadata);
+            }
+        }
+
+        try {
+            ArchetypeArchive archive = new ArchetypeArchive(archetypeFile);
+
+            if (indexed != null) {
+                try {
+                    ArchetypeMetadataIndex.Metadata metadata = ArchetypeMetadataIndex.Metadata.of(archive);
+
+                    indexed.write(archetypeFile, metadata);
+
+                    archive.setMetadata(metadata);
+                } catch (XmlPullParserException e) {
+                    // not indexed: the error is reported when the descriptor is actually used
+                    LOGGER.debug("Not indexing " + archetypeFile + ": " + e.getMessage());
+                }
+            }
+
+            return archive;
+        } catch (IOException e) {
+            throw new UnknownArchetype(e);
+        }
+    }
+
     @Override
     public boolean isFileSetArchetype(File archetypeFile) {
         LOGGER.debug("checking fileset archetype status on " + archetypeFile);
 
-        try (ZipFile zipFile = getArchetypeZipFile(archetypeFile)) {
-            return isFileSetArchetype(zipFile);
+        try (ArchetypeArchive archive = getArchetypeArchive(archetypeFile)) {
+            return archive.isFileSetArchetype();
         } catch (IOException | UnknownArchetype e) {
             LOGGER.debug(e.toString());
             return false;
@@ -155,8 +180,8 @@ public class DefaultArchetypeArtifactManager implements ArchetypeArtifactManager
     public boolean isOldArchetype(File archetypeFile) {
         LOGGER.debug("checking old archetype status on " + archetypeFile);
 
-        try (ZipFile zipFile = getArchetypeZipFile(archetypeFile)) {
-            return isOldArchetype(zipFile);
+        try (ArchetypeArchive archive = getArchetypeArchive(archetypeFile)) {
+            return archive.isOldArchetype();
         } catch (IOException | UnknownArchetype e) {
             LOGGER.debug(e.toString());
             return false;
@@ -171,16 +196,12 @@ public class DefaultArchetypeArtifactManager implements ArchetypeArtifactManager
             List<RemoteRepository> remoteRepositories,
             RepositorySystemSession repositorySystemSession) {
         try {
-            File archetype = getArchetype(archetypeGroupId, archetypeArtifactId, archetypeVersion);
-            if (archetype == null) {
-                archetype = downloader.download(
-                        archetypeGroupId,
-                        archetypeArtifactId,
-                        archetypeVersion,
-                        remoteRepositories,
-                        repositorySystemSession);
-                setArchetype(archetypeGroupId, archetypeArtifactId, archetypeVersion, archetype);
-            }
+            File archetype = getArchetype(
+                    archetypeGroupId,
+                    archetypeArtifactId,
+                    archetypeVersion,
+                    remoteRepositories,
+                    repositorySystemSession);
 
             return archetype.exists();
         } catch (DownloadException e) {
@@ -194,9 +215,8 @@ public class DefaultArchetypeArtifactManager implements ArchetypeArtifactManager
 
     @Override
     public String getPostGenerationScript(File archetypeFile) throws UnknownArchetype {
-        try (ZipFile zipFile = getArchetypeZipFile(archetypeFile)) {
-            Reader reader = getDescriptorReader(zipFile, Constants.ARCHETYPE_POST_GENERATION_SCRIPT);
-            return reader == null ? null : IOUtils.toString(reader);
+        try (ArchetypeArchive archive = getArchetypeArchive(archetypeFile)) {
+            return archive.getPostGenerationScript();
         } catch (IOException e) {
             throw new UnknownArchetype(e);
         }
@@ -204,8 +224,8 @@ public class DefaultArchetypeArtifactManager implements ArchetypeArtifactManager
 
     @Override
     public ArchetypeDescriptor getFileSetArchetypeDescriptor(File archetypeFile) throws UnknownArchetype {
-        try (ZipFile zipFile = getArchetypeZipFile(archetypeFile)) {
-            return loadFileSetArchetypeDescriptor(zipFile);
+        try (ArchetypeArchive archive = getArchetypeArchive(archetypeFile)) {
+            return archive.getFileSetArchetypeDescriptor();
         } catch (XmlPullParserException | IOException e) {
             throw new UnknownArchetype(e);
         }
@@ -214,24 +234,9 @@ public class DefaultArchetypeArtifactManager implements ArchetypeArtifactManager
     @Override
     public List<String> getFilesetArchetypeResources(File archetypeFile) throws UnknownArchetype {
         LOGGER.debug("getFilesetArchetypeResources( \"" + archetypeFile.getAbsolutePath() + "\" )");
-        List<String> archetypeResources = new ArrayList<>();
-
-        try (ZipFile zipFile = getArchetypeZipFile(archetypeFile)) {
-            Enumeration<? extends ZipEntry> enumeration = zipFile.entries();
-            while (enumeration.hasMoreElements()) {
-                ZipEntry entry = enumeration.nextElement();
-
-                if (entry.getName().startsWith(Constants.ARCHETYPE_RESOURCES)) {
-                    // not supposed to be file.separator
-                    String resource = entry.getName().substring(Constants.ARCHETYPE_RESOURCES.length() + 1);
-                    LOGGER.debug("  - found resource (" + Constants.ARCHETYPE_RESOURCES + "/)" + resource);
-                    // TODO:FIXME
-                    archetypeResources.add(resource);
-                } else {
-                    LOGGER.debug("  - ignored resource " + entry.getName());
-                }
-            }
-            return archetypeResources;
+
+        try (ArchetypeArchive archive = getArchetypeArchive(archetypeFile)) {
+            return new ArrayList<>(archive.getArchetypeResources());
         } catch (IOException e) {
             throw new UnknownArchetype(e);
         }
@@ -240,115 +245,87 @@ public class DefaultArchetypeArtifactManager implements ArchetypeArtifactManager
     @Override
     public org.apache.maven.archetype.old.descriptor.ArchetypeDescriptor getOldArchetypeDescriptor(File archetypeFile)
             throws UnknownArchetype {
-        try (ZipFile zipFile = getArchetypeZipFile(archetypeFile)) {
-            return loadOldArchetypeDescriptor(zipFile);
+        try (ArchetypeArchive archive = getArchetypeArchive(archetypeFile)) {
+            return archive.getOldArchetypeDescriptor();
         } catch (XmlPullParserException | IOException e) {
             throw new UnknownArchetype(e);
         }
     }
 
-    private File getArchetype(String archetypeGroupId, String archetypeArtifactId, String archetypeVersion) {
-        String key = archetypeGroupId + ":" + archetypeArtifactId + ":" + archetypeVersion;
-
-        if (archetypeCache.containsKey(key)) {
-            LOGGER.debug("Found archetype " + key + " in cache: " + archetypeCache.get(key));
-
-            return archetypeCache.get(key);
-        }
-
-        LOGGER.debug("Not found archetype " + key + " in cache");
-        return null;
-    }
-
-    private void setArchetype(
-            String archetypeGroupId, String archetypeArtifactId, String archetypeVersion, File archetype) {
+    private File getArchetype(
+            String archetypeGroupId,
+            String archetypeArtifactId,
+            String archetypeVersion,
+            List<RemoteRepository> remoteRepositories,
+            RepositorySystemSession repositorySystemSession)
+            throws DownloadException {
         String key = archetypeGroupId + ":" + archetypeArtifactId + ":" + archetypeVersion;
 
-        archetypeCache.put(key, archetype);
-    }
-
-    private boolean isFileSetArchetype(ZipFile zipFile) throws IOException {
-        try (Reader reader = getArchetypeDescriptorReader(zipFile)) {
-            return (reader != null);
-        }
-    }
-
-    private boolean isOldArchetype(ZipFile zipFile) throws IOException {
-        try (Reader reader = getOldArchetypeDescriptorReader(zipFile)) {
-            return (reader != null);
-        }
-    }
+        return archetypeCache.get(key, String.valueOf(remoteRepositories), () -> {
+            LOGGER.debug("Not found archetype " + key + " in cache");
 
-    private org.apache.maven.archetype.metadata.ArchetypeDescriptor loadFileSetArchetypeDescriptor(ZipFile zipFile)
-            throws IOException, XmlPullParserException {
+            File archetype = downloader.download(
+                    archetypeGroupId,
+                    archetypeArtifactId,
+                    archetypeVersion,
+                    remoteRepositories,
+                    repositorySystemSession);
 
-        try (Reader reader = getArchetypeDescriptorReader(zipFile)) {
-            if (reader == null) {
-                return null;
-            }
+            setArchetype(archetypeGroupId, archetypeArtifactId, archetypeVersion, archetype, repositorySystemSession);
 
-            ArchetypeDescriptorXpp3Reader archetypeReader = new ArchetypeDescriptorXpp3Reader();
-            return archetypeReader.read(reader, false);
-        } catch (IOException | XmlPullParserException e) {
-            throw e;
-        }
+            return archetype;
+        });
     }
 
-    private org.apache.maven.archetype.old.descriptor.ArchetypeDescriptor loadOldArchetypeDescriptor(ZipFile zipFile)
-            throws IOException, XmlPullParserException {
-        try (Reader reader = getOldArchetypeDescriptorReader(zipFile)) {
-            if (reader == null) {
-                return null;
+    private void setArchetype(
+            String archetypeGroupId,
+            String archetypeArtifactId,
+            String archetypeVersion,
+            File archetype,
+            RepositorySystemSession repositorySystemSession) {
+        if (repositorySystemSession != null && repositorySystemSession.getLocalRepository() != null) {
+            ArchetypeMetadataIndex index = new ArchetypeMetadataIndex(
+                    repositorySystemSession.getLocalRepository().getBasedir());
+
+            synchronized (indexedArchetypes) {
+                indexedArchetypes.put(
+                        archetype,
+                        new IndexedArchetype(index, archetypeGroupId, archetypeArtifactId, archetypeVersion));
+
+                Iterator<IndexedArchetype> eldest = indexedArchetypes.values().iterator();
+                while (indexedArchetypes.size() > ArchetypeFileCache.DEFAULT_MAX_SIZE && eldest.hasNext()) {
+                    eldest.next();
+                    eldest.remove();
+                }
             }
-
-            ArchetypeDescriptorBuilder builder = new ArchetypeDescriptorBuilder();
-            return builder.build(reader);
         }
     }
 
-    private Reader getArchetypeDescriptorReader(ZipFile zipFile) throws IOException {
-        return getDescriptorReader(zipFile, Constants.ARCHETYPE_DESCRIPTOR);
-    }
+    /**
+     * An archetype resolved from a repository, whose metadata can be kept in the local repository index.
+     */
+    private static class IndexedArchetype {
+        private final ArchetypeMetadataIndex index;
 
-    private Reader getOldArchetypeDescriptorReader(ZipFile zipFile) throws IOException {
-        Reader reader = getDescriptorReader(zipFile, Constants.OLD_ARCHETYPE_DESCRIPTOR);
+        private final String groupId;
 
-        if (reader == null) {
-            reader = getDescriptorReader(zipFile, Constants.OLDER_ARCHETYPE_DESCRIPTOR);
-        }
+        private final String artifactId;
 
-        return reader;
-    }
-
-    private Reader getDescriptorReader(ZipFile zipFile, String descriptor) throws IOException {
-        ZipEntry entry = searchEntry(zipFile, descriptor);
+        private final String version;
 
-        if (entry == null) {
-            return null;
+        IndexedArchetype(ArchetypeMetadataIndex index, String groupId, String artifactId, String version) {
+            this.index = index;
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
         }
 
-        InputStream is = zipFile.getInputStream(entry);
-
-        if (is == null) {
-            throw new IOException("The " + descriptor + " descriptor cannot be read in " + zipFile.getName() + ".");
+        ArchetypeMetadataIndex.Metadata read(File archetypeFile) {
+            return index.read(groupId, artifactId, version, archetypeFile);
         }
 
-        return new InputStreamReader(is, StandardCharsets.UTF_8);
-    }
-
-    private ZipEntry searchEntry(ZipFile zipFile, String searchString) {
-        LOGGER.debug("Searching for " + searchString + " inside " + zipFile.getName());
-
-        Enumeration<? extends ZipEntry> enu = zipFile.entries();
-        while (enu.hasMoreElements()) {
-            ZipEntry entryfound = enu.nextElement();
-            LOGGER.debug("  - " + entryfound.getName());
-
-            if (searchString.equals(entryfound.getName())) {
-                LOGGER.debug("Entry found");
-                return entryfound;
-            }
+        void write(File archetypeFile, ArchetypeMetadataIndex.Metadata metadata) {
+            index.write(groupId, artifactId, version, archetypeFile, metadata);
         }
-        return null;
     }
 }
@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Set;
 
 import org.apache.maven.archetype.common.util.ListScanner;
+import org.apache.maven.archetype.common.util.PathIndex;
 import org.apache.maven.archetype.common.util.PathUtils;
 import org.apache.maven.archetype.metadata.FileSet;
 import org.codehaus.plexus.util.FileUtils;
@@ -68,6 +69,15 @@ public class DefaultArchetypeFilesResolver implements ArchetypeFilesResolver {
 
     @Override
     public List<String> filterFiles(String moduleOffset, FileSet fileSet, List<String> archetypeResources) {
+        return getFileSetScanner(moduleOffset, fileSet).scan(archetypeResources);
+    }
+
+    @Override
+    public List<String> filterFiles(String moduleOffset, FileSet fileSet, PathIndex archetypeResources) {
+        return getFileSetScanner(moduleOffset, fileSet).scan(archetypeResources);
+    }
+
+    private ListScanner getFileSetScanner(String moduleOffset, FileSet fileSet) {
         ListScanner scanner = new ListScanner();
         scanner.setBasedir(((moduleOffset == null || moduleOffset.isEmpty()) ? "" : (moduleOffset + File.separatorChar))
                 + fileSet.getDirectory());
@@ -75,7 +85,7 @@ public class DefaultArchetypeFilesResolver implements ArchetypeFilesResolver {
         scanner.setExcludes(fileSet.getExcludes());
         scanner.setCaseSensitive(true);
 
-        return scanner.scan(archetypeResources);
+        return scanner;
     }
 
     @Override
@@ -23,6 +23,8 @@ import javax.inject.Singleton;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -34,6 +36,7 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -75,13 +78,40 @@ public class DefaultPomManager implements PomManager {
     public void addModule(File pom, String artifactId)
             throws IOException, ParserConfigurationException, TransformerException, SAXException, InvalidPackaging,
                     ArchetypeTemplateProcessingException {
+        addModules(pom, Collections.singletonList(artifactId));
+    }
+
+    @Override
+    public void addModules(File pom, List<String> artifactIds)
+            throws IOException, ParserConfigurationException, TransformerException, SAXException, InvalidPackaging,
+                    ArchetypeTemplateProcessingException {
         StringWriter out = new StringWriter();
-        boolean found = PomUtils.addNewModule(artifactId, new XmlStreamReader(pom), out);
+        boolean found;
+        try (Reader reader = new XmlStreamReader(pom)) {
+            found = PomUtils.addNewModules(artifactIds, reader, out);
+        }
         if (found) {
             FileUtils.fileWrite(pom.getAbsolutePath(), out.toString());
         }
     }
 
+    @Override
+    public byte[] addModules(byte[] pom, List<String> artifactIds)
+            throws IOException, ParserConfigurationException, TransformerException, SAXException, InvalidPackaging,
+                    ArchetypeTemplateProcessingException {
+        StringWriter out = new StringWriter();
+        String encoding;
+        try (XmlStreamReader reader = new XmlStreamReader(new ByteArrayInputStream(pom))) {
+            encoding = reader.getEncoding();
+
+            if (!PomUtils.addNewModules(artifactIds, reader, out)) {
+                return null;
+            }
+        }
+
+        return out.toString().getBytes(encoding);
+    }
+
     @Override
     public void addParent(File pom, File parentPom) throws IOException, XmlPullParserException {
         Model generatedModel = readPom(pom);
@@ -90,8 +120,25 @@ public class DefaultPomManager implements PomManager {
             return;
         }
 
-        Model parentModel = readPom(parentPom);
+        generatedModel.setParent(createParent(readPom(parentPom)));
+
+        writePom(generatedModel, pom, pom);
+    }
+
+    @Override
+    public byte[] addParent(byte[] pom, byte[] parentPom) throws IOException, XmlPullParserException {
+        Model generatedModel = readPom(new ByteArrayInputStream(pom));
+        if (null != generatedModel.getParent()) {
+            LOGGER.info("Parent element not overwritten in " + generatedModel.getArtifactId());
+            return null;
+        }
+
+        generatedModel.setParent(createParent(readPom(new ByteArrayInputStream(parentPom))));
+
+        return toBytes(generatedModel, readDocument(new ByteArrayInputStream(pom), generatedModel.getArtifactId()));
+    }
 
+    private static Parent createParent(Model parentModel) {
         Parent parent = new Parent();
         parent.setGroupId(parentModel.getGroupId());
         if (parent.getGroupId() == null) {
@@ -102,15 +149,31 @@ public class DefaultPomManager implements PomManager {
         if (parent.getVersion() == null) {
             parent.setVersion(parentModel.getParent().getVersion());
         }
-        generatedModel.setParent(parent);
-
-        writePom(generatedModel, pom, pom);
+        return parent;
     }
 
     @Override
     public void mergePoms(File pom, File temporaryPom) throws IOException, XmlPullParserException {
-        Model model = readPom(pom);
-        Model generatedModel = readPom(temporaryPom);
+        mergePoms(pom, readPom(temporaryPom));
+    }
+
+    @Override
+    public void mergePoms(File pom, Model generatedModel) throws IOException, XmlPullParserException {
+        // the POM is read once, both for its model and for its document preserving the original formatting
+        byte[] content = Files.readAllBytes(pom.toPath());
+
+        writePom(merge(content, generatedModel), pom, readDocument(new ByteArrayInputStream(content), pom.getPath()));
+    }
+
+    @Override
+    public byte[] mergePoms(byte[] pom, Model generatedModel) throws IOException, XmlPullParserException {
+        return toBytes(
+                merge(pom, generatedModel),
+                readDocument(new ByteArrayInputStream(pom), generatedModel.getArtifactId()));
+    }
+
+    private Model merge(byte[] content, Model generatedModel) throws IOException, XmlPullParserException {
+        Model model = readPom(new ByteArrayInputStream(content));
 
         model.getProperties().putAll(generatedModel.getProperties());
 
@@ -180,7 +243,7 @@ public class DefaultPomManager implements PomManager {
         ////        model.getReporting ().getReportPluginsAsMap (); // done
         //
 
-        writePom(model, pom, pom);
+        return model;
     }
 
     @Override
@@ -203,16 +266,38 @@ public class DefaultPomManager implements PomManager {
 
     @Override
     public void writePom(final Model model, final File pomFile, final File initialPomFile) throws IOException {
-        String fileEncoding = StringUtils.isEmpty(model.getModelEncoding()) ? "UTF-8" : model.getModelEncoding();
-
         org.jdom2.Document doc;
         try (InputStream inputStream = Files.newInputStream(initialPomFile.toPath())) {
+            doc = readDocument(inputStream, initialPomFile.getPath());
+        }
+
+        writePom(model, pomFile, doc);
+    }
+
+    private static org.jdom2.Document readDocument(InputStream inputStream, String initialPom) throws IOException {
+        try {
             SAXBuilder builder = new SAXBuilder();
-            doc = builder.build(inputStream);
+            return builder.build(inputStream);
         } catch (JDOMException exc) {
             throw new IOException(
-                    "Cannot parse the POM by JDOM while reading " + initialPomFile + ": " + exc.getMessage(), exc);
+                    "Cannot parse the POM by JDOM while reading " + initialPom + ": " + exc.getMessage(), exc);
         }
+    }
+
+    private static byte[] toBytes(Model model, org.jdom2.Document doc) throws IOException {
+        String fileEncoding = StringUtils.isEmpty(model.getModelEncoding()) ? "UTF-8" : model.getModelEncoding();
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(content, fileEncoding)) {
+            Format form = Format.getRawFormat().setEncoding(fileEncoding).setLineSeparator(System.lineSeparator());
+            new MavenJDOMWriter().write(model, doc, writer, form);
+        }
+
+        return content.toByteArray();
+    }
+
+    private void writePom(final Model model, final File pomFile, final org.jdom2.Document doc) throws IOException {
+        String fileEncoding = StringUtils.isEmpty(model.getModelEncoding()) ? "UTF-8" : model.getModelEncoding();
 
         if (!pomFile.exists() && !pomFile.createNewFile()) {
             LOGGER.warn("Could not create new file \"" + pomFile.getPath() + "\" or the file already exists.");
@@ -24,10 +24,15 @@ import javax.xml.transform.TransformerException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.maven.archetype.exception.InvalidPackaging;
 import org.apache.maven.archetype.old.ArchetypeTemplateProcessingException;
 import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.xml.sax.SAXException;
 
@@ -38,13 +43,123 @@ public interface PomManager {
             throws IOException, ParserConfigurationException, TransformerException, SAXException, InvalidPackaging,
                     ArchetypeTemplateProcessingException;
 
+    /**
+     * Adds modules to a POM, which is rewritten once for all of them. The default implementation adds them one by
+     * one, with {@link #addModule(File, String)}.
+     *
+     * @param basedirPom the POM to update
+     * @param artifactIds the modules to add, in order
+     * @since 3.4.2
+     */
+    default void addModules(File basedirPom, List<String> artifactIds)
+            throws IOException, ParserConfigurationException, TransformerException, SAXException, InvalidPackaging,
+                    ArchetypeTemplateProcessingException {
+        for (String artifactId : artifactIds) {
+            addModule(basedirPom, artifactId);
+        }
+    }
+
     void addParent(File pom, File basedirPom) throws IOException, XmlPullParserException;
 
     void mergePoms(File pom, File temporaryPom) throws IOException, XmlPullParserException;
 
+    /**
+     * Merges a generated model into an existing POM, which is read once. The default implementation writes the model
+     * to a temporary POM, merged with {@link #mergePoms(File, File)}.
+     *
+     * @param pom the POM to update
+     * @param generatedModel the model to merge into the POM
+     * @since 3.4.2
+     */
+    default void mergePoms(File pom, Model generatedModel) throws IOException, XmlPullParserException {
+        File temporaryPom = File.createTempFile("pom", ".xml");
+        try {
+            try (OutputStream out = Files.newOutputStream(temporaryPom.toPath())) {
+                new MavenXpp3Writer().write(out, generatedModel);
+            }
+
+            mergePoms(pom, temporaryPom);
+        } finally {
+            Files.deleteIfExists(temporaryPom.toPath());
+        }
+    }
+
     Model readPom(File pomFile) throws IOException, XmlPullParserException;
 
     Model readPom(InputStream pomStream) throws IOException, XmlPullParserException;
 
     void writePom(Model model, File pomFile, File initialPomFile) throws IOException;
+
+    /**
+     * Adds modules to the content of a POM, for POMs which are not files. The default implementation updates a
+     * temporary POM with {@link #addModules(File, List)}.
+     *
+     * @param pom the POM content
+     * @param artifactIds the modules to add, in order
+     * @return the updated POM content, or <code>null</code> if the POM already declares all the modules
+     * @since 3.4.2
+     */
+    default byte[] addModules(byte[] pom, List<String> artifactIds)
+            throws IOException, ParserConfigurationException, TransformerException, SAXException, InvalidPackaging,
+                    ArchetypeTemplateProcessingException {
+        File temporaryPom = File.createTempFile("pom", ".xml");
+        try {
+            Files.write(temporaryPom.toPath(), pom);
+
+            addModules(temporaryPom, artifactIds);
+
+            byte[] updated = Files.readAllBytes(temporaryPom.toPath());
+            return Arrays.equals(pom, updated) ? null : updated;
+        } finally {
+            Files.deleteIfExists(temporaryPom.toPath());
+        }
+    }
+
+    /**
+     * Adds a parent to the content of a POM, for POMs which are not files. The default implementation updates a
+     * temporary POM with {@link #addParent(File, File)}.
+     *
+     * @param pom the POM content
+     * @param parentPom the parent POM content
+     * @return the updated POM content, or <code>null</code> if the POM already has a parent
+     * @since 3.4.2
+     */
+    default byte[] addParent(byte[] pom, byte[] parentPom) throws IOException, XmlPullParserException {
+        File temporaryPom = File.createTempFile("pom", ".xml");
+        File temporaryParentPom = File.createTempFile("pom", ".xml");
+        try {
+            Files.write(temporaryPom.toPath(), pom);
+            Files.write(temporaryParentPom.toPath(), parentPom);
+
+            addParent(temporaryPom, temporaryParentPom);
+
+            byte[] updated = Files.readAllBytes(temporaryPom.toPath());
+            return Arrays.equals(pom, updated) ? null : updated;
+        } finally {
+            Files.deleteIfExists(temporaryPom.toPath());
+            Files.deleteIfExists(temporaryParentPom.toPath());
+        }
+    }
+
+    /**
+     * Merges a generated model into the content of a POM, for POMs which are not files. The default implementation
+     * updates a temporary POM with {@link #mergePoms(File, Model)}.
+     *
+     * @param pom the POM content
+     * @param generatedModel the model to merge into the POM
+     * @return the merged POM content
+     * @since 3.4.2
+     */
+    default byte[] mergePoms(byte[] pom, Model generatedModel) throws IOException, XmlPullParserException {
+        File temporaryPom = File.createTempFile("pom", ".xml");
+        try {
+            Files.write(temporaryPom.toPath(), pom);
+
+            mergePoms(temporaryPom, generatedModel);
+
+            return Files.readAllBytes(temporaryPom.toPath());
+        } finally {
+            Files.deleteIfExists(temporaryPom.toPath());
+        }
+    }
 }
@@ -20,6 +20,7 @@ package org.apache.maven.archetype.common.util;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import org.codehaus.plexus.util.SelectorUtils;
@@ -386,22 +387,48 @@ public class ListScanner {
      *                               <code>null</code>, doesn't exist, or isn't a directory).
      */
     public List<String> scan(List<String> files) throws IllegalStateException {
-        if (basedir == null) {
-            throw new IllegalStateException("No basedir set");
+        prepareScan();
+
+        List<String> result = new ArrayList<>();
+
+        for (String fileName : files) {
+            if (isIncluded(fileName) && !isExcluded(fileName)) {
+                result.add(fileName);
+            }
         }
+        return result;
+    }
 
-        if (includes == null) {
-            // No includes supplied, so set it to 'matches all'
-            includes = new String[1];
-            includes[0] = "**";
+    /**
+     * Same as {@link #scan(List)}, but only matches the indexed files which are below the leading directories of the
+     * include patterns.
+     *
+     * @throws IllegalStateException if the base directory was not set
+     * @since 3.4.2
+     */
+    public List<String> scan(PathIndex files) throws IllegalStateException {
+        prepareScan();
+
+        List<String> paths = files.getPaths();
+
+        if (!isCaseSensitive) {
+            return scan(paths);
         }
-        if (excludes == null) {
-            excludes = new String[0];
+
+        String baseDir = getBasedir();
+        if (!baseDir.isEmpty()) {
+            baseDir = baseDir.concat(File.separator);
+        }
+
+        BitSet candidates = new BitSet(paths.size());
+        for (String include : includes) {
+            candidates.or(files.getCandidates(PathUtils.convertPathForOS(baseDir + include)));
         }
 
         List<String> result = new ArrayList<>();
 
-        for (String fileName : files) {
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            String fileName = paths.get(i);
             if (isIncluded(fileName) && !isExcluded(fileName)) {
                 result.add(fileName);
             }
@@ -409,6 +436,21 @@ public class ListScanner {
         return result;
     }
 
+    private void prepareScan() {
+        if (basedir == null) {
+            throw new IllegalStateException("No basedir set");
+        }
+
+        if (includes == null) {
+            // No includes supplied, so set it to 'matches all'
+            includes = new String[1];
+            includes[0] = "**";
+        }
+        if (excludes == null) {
+            excludes = new String[0];
+        }
+    }
+
     /**
      * Tests whether a name matches at least one exclude pattern.
      *
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.common.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/**
+ * A list of paths, indexed by path segments so that {@link ListScanner#scan(PathIndex)} only matches the paths
+ * below the literal leading directories of its patterns, instead of every path against every pattern.
+ * <p>
+ * The paths are sorted by segments: all paths below a given directory form a contiguous range, found by binary
+ * search.
+ *
+ * @since 3.4.2
+ */
+public class PathIndex {
+    private final List<String> paths;
+
+    /**
+     * Segments of the paths, sorted.
+     */
+    private final String[][] segments;
+
+    /**
+     * Index in {@link #paths} of each element of {@link #segments}.
+     */
+    private final int[] positions;
+
+    public PathIndex(List<String> paths) {
+        this.paths = Collections.unmodifiableList(new ArrayList<>(paths));
+
+        Integer[] order = new Integer[paths.size()];
+        String[][] tokenized = new String[paths.size()][];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            tokenized[i] = tokenize(paths.get(i));
+        }
+
+        Arrays.sort(order, (a, b) -> compare(tokenized[a], tokenized[b], Integer.MAX_VALUE));
+
+        segments = new String[order.length][];
+        positions = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            segments[i] = tokenized[order[i]];
+            positions[i] = order[i];
+        }
+    }
+
+    /**
+     * @return the indexed paths, in their original order
+     */
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    /**
+     * @param pattern a pattern, with separators converted for the OS
+     * @return the positions of the paths which may match the pattern: those starting with the segments of the pattern
+     *         before its first wildcard
+     */
+    BitSet getCandidates(String pattern) {
+        BitSet candidates = new BitSet(paths.size());
+
+        if (pattern.startsWith("%") || pattern.startsWith(File.separator)) {
+            // regular expression or absolute pattern: nothing to index on
+            candidates.set(0, paths.size());
+            return candidates;
+        }
+
+        String[] prefix = getLiteralPrefix(tokenize(pattern));
+
+        int from = search(prefix, false);
+        int to = search(prefix, true);
+
+        for (int i = from; i < to; i++) {
+            candidates.set(positions[i]);
+        }
+
+        return candidates;
+    }
+
+    private static String[] getLiteralPrefix(String[] patternSegments) {
+        int length = 0;
+        while (length < patternSegments.length
+                && patternSegments[length].indexOf('*') < 0
+                && patternSegments[length].indexOf('?') < 0) {
+            length++;
+        }
+
+        return Arrays.copyOf(patternSegments, length);
+    }
+
+    /**
+     * @param after <code>false</code> to find the first path starting with the prefix, <code>true</code> to find the
+     *            first path after those
+     */
+    private int search(String[] prefix, boolean after) {
+        int low = 0;
+        int high = segments.length;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(segments[middle], prefix, prefix.length);
+
+            if (comparison < 0 || (after && comparison == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Compares the first <code>length</code> segments of two paths, a path being before any longer path it starts.
+     */
+    private static int compare(String[] a, String[] b, int length) {
+        int common = Math.min(length, Math.min(a.length, b.length));
+
+        for (int i = 0; i < common; i++) {
+            int comparison = a[i].compareTo(b[i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+
+        return Integer.compare(Math.min(length, a.length), Math.min(length, b.length));
+    }
+
+    /**
+     * Splits a path like {@link org.codehaus.plexus.util.SelectorUtils#matchPath(String, String)} does.
+     */
+    private static String[] tokenize(String path) {
+        StringTokenizer tokenizer = new StringTokenizer(PathUtils.convertPathForOS(path), File.separator);
+
+        String[] tokens = new String[tokenizer.countTokens()];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = tokenizer.nextToken();
+        }
+        return tokens;
+    }
+}
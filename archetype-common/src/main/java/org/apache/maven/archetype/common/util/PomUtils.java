@@ -34,6 +34,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.Collection;
+import java.util.Collections;
 
 import org.apache.maven.archetype.exception.InvalidPackaging;
 import org.apache.maven.archetype.old.ArchetypeTemplateProcessingException;
@@ -71,6 +73,29 @@ public final class PomUtils {
     public static boolean addNewModule(String artifactId, Reader fileReader, Writer fileWriter)
             throws ArchetypeTemplateProcessingException, InvalidPackaging, IOException, ParserConfigurationException,
                     SAXException, TransformerException {
+        return addNewModules(Collections.singletonList(artifactId), fileReader, fileWriter);
+    }
+
+    /**
+     * Adds the modules {@code artifactIds} which are not already present in {@code fileReader}, writing the POM once
+     * for all of them.
+     *
+     * @param artifactIds artifactIds of the modules to add, in order
+     * @param fileReader source POM XML
+     * @param fileWriter target XML
+     * @return {@code true} if at least one module was added, {@code false} if all of them were already present and
+     * nothing was written
+     * @throws ArchetypeTemplateProcessingException if "project" does not exist or "modules" element is duplicated
+     * @throws InvalidPackaging if packaging is not "pom" or not exist in POM
+     * @throws IOException if I/O error
+     * @throws ParserConfigurationException if parser error
+     * @throws SAXException if parser error
+     * @throws TransformerException if an error writing to {@code fileWriter}
+     * @since 3.4.2
+     */
+    public static boolean addNewModules(Collection<String> artifactIds, Reader fileReader, Writer fileWriter)
+            throws ArchetypeTemplateProcessingException, InvalidPackaging, IOException, ParserConfigurationException,
+                    SAXException, TransformerException {
         DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
         dbf.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
         dbf.setFeature("http://xml.org/sax/features/external-general-entities", false);
@@ -101,7 +126,12 @@ public final class PomUtils {
 
         Node modules = getChildNode(project, "modules");
 
-        if (!hasArtifactIdInModules(artifactId, modules)) {
+        boolean added = false;
+        for (String artifactId : artifactIds) {
+            if (hasArtifactIdInModules(artifactId, modules)) {
+                continue;
+            }
+
             Element module = document.createElement("module");
             module.setTextContent(artifactId);
             if (modules == null) {
@@ -117,6 +147,10 @@ public final class PomUtils {
             // shift the end tag </modules>
             modules.appendChild(document.createTextNode("\n  "));
 
+            added = true;
+        }
+
+        if (added) {
             TransformerFactory tf = TransformerFactory.newInstance();
             tf.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
             tf.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
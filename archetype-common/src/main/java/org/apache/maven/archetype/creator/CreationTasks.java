@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.creator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Runs the tasks of one archetype creation: on the calling thread when creation is sequential, or on a dedicated
+ * pool when creation is parallel.
+ * <p>
+ * Tasks may run tasks of their own, as modules process their files and sub-modules: a task waiting for others helps
+ * running them instead of blocking a thread of the pool. Results and failures are reported in task order, so that the
+ * archetype is the same whatever the number of threads.
+ *
+ * @since 3.4.2
+ */
+class CreationTasks implements AutoCloseable {
+    /**
+     * Creates a part of the archetype.
+     */
+    interface Task<T> {
+        T run() throws IOException, XmlPullParserException;
+    }
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param parallelism the number of threads running the tasks
+     */
+    CreationTasks(int parallelism) {
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Runs the tasks and waits for all of them, even when one of them fails.
+     *
+     * @return the results of the tasks, in task order
+     * @throws IOException the failure of the first failed task, in task order
+     */
+    <T> List<T> runAll(List<Task<T>> tasks) throws IOException, XmlPullParserException {
+        List<T> results = new ArrayList<>(tasks.size());
+
+        if (pool == null || tasks.size() < 2) {
+            for (Task<T> task : tasks) {
+                results.add(task.run());
+            }
+            return results;
+        }
+
+        List<Action<T>> actions = new ArrayList<>(tasks.size());
+        for (Task<T> task : tasks) {
+            actions.add(new Action<>(task));
+        }
+
+        if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.invokeAll(actions);
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(actions);
+                }
+            });
+        }
+
+        for (Action<T> action : actions) {
+            if (action.failure instanceof IOException) {
+                throw (IOException) action.failure;
+            } else if (action.failure instanceof XmlPullParserException) {
+                throw (XmlPullParserException) action.failure;
+            } else if (action.failure instanceof RuntimeException) {
+                throw (RuntimeException) action.failure;
+            } else if (action.failure != null) {
+                throw (Error) action.failure;
+            }
+
+            results.add(action.result);
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs a task, keeping its failure instead of cancelling the tasks run with it.
+     */
+    private static class Action<T> extends RecursiveAction {
+        private final Task<T> task;
+
+        private T result;
+
+        private Throwable failure;
+
+        Action(Task<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                result = task.run();
+            } catch (IOException | XmlPullParserException | RuntimeException | Error e) {
+                failure = e;
+            }
+        }
+    }
+}
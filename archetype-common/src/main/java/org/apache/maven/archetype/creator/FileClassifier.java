@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.creator;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.archetype.common.util.PathUtils;
+import org.codehaus.plexus.util.MatchPattern;
+import org.codehaus.plexus.util.MatchPatterns;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Sorts the files of a project into the groups its archetype filesets are made of, in a single pass over the files.
+ * <p>
+ * The groups are those found by the successive scans of
+ * {@link org.apache.maven.archetype.common.DefaultArchetypeFilesResolver}, each scan getting the files left by the
+ * previous ones: main sources, main resources, test sources, test resources, site files, then other sources and
+ * resources by directory level. Each group is split into its filtered and unfiltered files, in this order. The
+ * patterns of the scans are compiled once, and each file path is tokenized once.
+ *
+ * @since 3.4.2
+ */
+class FileClassifier {
+    private static final int THIRD_LEVEL_SOURCES = 5;
+
+    /**
+     * Only scanned when third level sources are found.
+     */
+    private static final int THIRD_LEVEL_RESOURCES = 6;
+
+    private final Category[] categories;
+
+    private final Patterns filteredPatterns;
+
+    /**
+     * @param languages the directories holding the sources
+     * @param filtereds the extensions of the filtered files
+     */
+    FileClassifier(List<String> languages, List<String> filtereds) {
+        StringBuilder languageIncludes = new StringBuilder();
+        for (String language : languages) {
+            languageIncludes
+                    .append((languageIncludes.length() == 0) ? "" : ",")
+                    .append(language)
+                    .append("/**");
+        }
+
+        StringBuilder filteredIncludes = new StringBuilder();
+        for (String filtered : filtereds) {
+            filteredIncludes
+                    .append((filteredIncludes.length() == 0) ? "" : ",")
+                    .append("**/")
+                    .append(filtered.startsWith(".") ? "" : "*.")
+                    .append(filtered);
+        }
+
+        String languagePatterns = languageIncludes.toString();
+
+        categories = new Category[] {
+            new Category(3, true, "src/main", languagePatterns, null),
+            new Category(3, false, "src/main", "**", languagePatterns),
+            new Category(3, true, "src/test", languagePatterns, null),
+            new Category(3, false, "src/test", "**", languagePatterns),
+            new Category(2, false, "src/site", "**", languagePatterns),
+            new Category(3, true, "", getOtherSourcesIncludes(3, languagePatterns), null),
+            new Category(3, false, "", null, languagePatterns),
+            new Category(2, true, "", getOtherSourcesIncludes(2, languagePatterns), null),
+            new Category(2, false, "", "*/*/**", languagePatterns),
+            new Category(0, false, "", "**", languagePatterns)
+        };
+
+        filteredPatterns = Patterns.compile("", filteredIncludes.toString(), true);
+    }
+
+    /**
+     * Same includes as {@link org.apache.maven.archetype.common.DefaultArchetypeFilesResolver#findOtherSources}.
+     */
+    private static String getOtherSourcesIncludes(int level, String languages) {
+        StringBuilder levelDirectory = new StringBuilder();
+        for (int i = 0; i < (level - 1); i++) {
+            levelDirectory.append("*/");
+        }
+
+        StringBuilder includes = new StringBuilder();
+        for (String language : StringUtils.split(languages)) {
+            includes.append(levelDirectory).append(language);
+        }
+        return includes.toString();
+    }
+
+    /**
+     * @param files the paths of the files, relative to the project directory
+     * @param ignored where the files in no group are added
+     * @return the non empty groups, in fileset order
+     */
+    List<Group> classify(List<String> files, List<String> ignored) {
+        String[] names = new String[files.size()];
+        char[][][] tokens = new char[files.size()][][];
+        int[] assigned = new int[files.size()];
+        boolean[] thirdLevelResources = new boolean[files.size()];
+        boolean thirdLevelSources = false;
+
+        for (int i = 0; i < files.size(); i++) {
+            names[i] = PathUtils.convertPathForOS(files.get(i));
+            tokens[i] = tokenize(names[i]);
+
+            assigned[i] = -1;
+            for (int c = 0; c < categories.length; c++) {
+                if (c == THIRD_LEVEL_RESOURCES) {
+                    // decided once all files are classified
+                    thirdLevelResources[i] = categories[c].matches(names[i], tokens[i]);
+                } else if (categories[c].matches(names[i], tokens[i])) {
+                    assigned[i] = c;
+                    break;
+                }
+            }
+
+            thirdLevelSources |= assigned[i] == THIRD_LEVEL_SOURCES;
+        }
+
+        List<List<Integer>> members = new ArrayList<>(categories.length);
+        for (int c = 0; c < categories.length; c++) {
+            members.add(new ArrayList<>());
+        }
+
+        for (int i = 0; i < files.size(); i++) {
+            int category = assigned[i];
+            if (thirdLevelSources && thirdLevelResources[i] && (category < 0 || category > THIRD_LEVEL_RESOURCES)) {
+                category = THIRD_LEVEL_RESOURCES;
+            }
+
+            if (category < 0) {
+                ignored.add(files.get(i));
+            } else {
+                members.get(category).add(i);
+            }
+        }
+
+        List<Group> groups = new ArrayList<>();
+        for (int c = 0; c < categories.length; c++) {
+            Group filtered = new Group(categories[c].level, categories[c].packaged, true);
+            Group unfiltered = new Group(categories[c].level, categories[c].packaged, false);
+
+            for (int i : members.get(c)) {
+                if (filteredPatterns.matches(names[i], tokens[i])) {
+                    filtered.files.add(files.get(i));
+                } else {
+                    unfiltered.files.add(files.get(i));
+                }
+            }
+
+            if (!filtered.files.isEmpty()) {
+                groups.add(filtered);
+            }
+            if (!unfiltered.files.isEmpty()) {
+                groups.add(unfiltered);
+            }
+        }
+        return groups;
+    }
+
+    private static char[][] tokenize(String name) {
+        String[] segments = MatchPattern.tokenizePathToString(name, File.separator);
+
+        char[][] tokens = new char[segments.length][];
+        for (int i = 0; i < segments.length; i++) {
+            tokens[i] = segments[i].toCharArray();
+        }
+        return tokens;
+    }
+
+    /**
+     * Files making the filesets of one level.
+     */
+    static class Group {
+        final int level;
+
+        final boolean packaged;
+
+        final boolean filtered;
+
+        final List<String> files = new ArrayList<>();
+
+        Group(int level, boolean packaged, boolean filtered) {
+            this.level = level;
+            this.packaged = packaged;
+            this.filtered = filtered;
+        }
+    }
+
+    private static class Category {
+        final int level;
+
+        final boolean packaged;
+
+        private final Patterns includes;
+
+        private final Patterns excludes;
+
+        Category(int level, boolean packaged, String basedir, String includes, String excludes) {
+            this.level = level;
+            this.packaged = packaged;
+            this.includes = Patterns.compile(basedir, includes, true);
+            this.excludes = Patterns.compile(basedir, excludes, false);
+        }
+
+        boolean matches(String name, char[][] tokens) {
+            return includes.matches(name, tokens) && !excludes.matches(name, tokens);
+        }
+    }
+
+    /**
+     * Patterns set on a {@link org.apache.maven.archetype.common.util.ListScanner}, which matches them the same way.
+     */
+    private static class Patterns {
+        private final MatchPatterns[] matchers;
+
+        private final boolean[] absolute;
+
+        private Patterns(List<String> patterns) {
+            matchers = new MatchPatterns[patterns.size()];
+            absolute = new boolean[patterns.size()];
+            for (int i = 0; i < matchers.length; i++) {
+                matchers[i] = MatchPatterns.from(patterns.get(i));
+                absolute[i] = patterns.get(i).startsWith(File.separator);
+            }
+        }
+
+        /**
+         * @param include <code>true</code> if no patterns match every file, <code>false</code> if they match none
+         */
+        static Patterns compile(String basedir, String patterns, boolean include) {
+            String[] split = patterns == null ? new String[0] : StringUtils.split(patterns, ",");
+            if (split.length == 0 && include) {
+                split = new String[] {"**"};
+            }
+
+            String prefix = basedir.isEmpty() ? "" : basedir + File.separator;
+
+            List<String> compiled = new ArrayList<>(split.length);
+            for (String pattern : split) {
+                pattern = pattern.trim();
+                if (PathUtils.convertPathForOS(pattern).endsWith(File.separator)) {
+                    pattern += "**";
+                }
+                compiled.add(PathUtils.convertPathForOS(prefix + pattern));
+            }
+            return new Patterns(compiled);
+        }
+
+        boolean matches(String name, char[][] tokens) {
+            boolean absoluteName = name.startsWith(File.separator);
+            for (int i = 0; i < matchers.length; i++) {
+                if (absolute[i] == absoluteName && matchers[i].matches(name, tokens, true)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -22,12 +22,13 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.util.ArrayList;
@@ -36,6 +37,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -90,6 +92,13 @@ import static org.apache.commons.io.IOUtils.write;
 @Singleton
 public class FilesetArchetypeCreator implements ArchetypeCreator {
     private static final Logger LOGGER = LoggerFactory.getLogger(FilesetArchetypeCreator.class);
+    private static final int MAX_REVERSALS = 64;
+
+    /**
+     * Number of bytes ICU reads from a stream to detect its charset.
+     */
+    private static final int DETECTION_SAMPLE = 8000;
+
     private static final String DEFAULT_OUTPUT_DIRECTORY =
             "target" + File.separator + "generated-sources" + File.separator + "archetype";
 
@@ -99,6 +108,12 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
 
     private Invoker invoker;
 
+    /**
+     * Property reversals by property names and values, least recently used first: the reversed properties only
+     * change from one module to the other.
+     */
+    private final Map<List<String>, PropertyReversal> reversals = new LinkedHashMap<>(16, 0.75f, true);
+
     @Inject
     public FilesetArchetypeCreator(
             ArchetypeFilesResolver archetypeFilesResolver, PomManager pomManager, Invoker invoker) {
@@ -137,7 +152,7 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
 
         LOGGER.debug("Creating archetype in " + outputDirectory);
 
-        try {
+        try (CreationTasks tasks = new CreationTasks(request.getParallelism())) {
             File archetypePomFile = createArchetypeProjectPom(project, configurationProperties, outputDirectory);
 
             File archetypeResourcesDirectory = new File(outputDirectory, getTemplateOutputDirectory());
@@ -205,17 +220,12 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
             archetypeDescriptor.setFileSets(filesets);
 
             createArchetypeFiles(
-                    reverseProperties,
-                    filesets,
-                    packageName,
-                    basedir,
-                    archetypeFilesDirectory,
-                    defaultEncoding,
-                    excludePatterns);
+                    tasks, reverseProperties, filesets, packageName, basedir, archetypeFilesDirectory, excludePatterns);
             LOGGER.debug("Created files for " + archetypeDescriptor.getName());
 
             setParentArtifactId(reverseProperties, configurationProperties.getProperty(Constants.ARTIFACT_ID));
 
+            List<CreationTasks.Task<ModuleDescriptor>> moduleTasks = new ArrayList<>();
             for (String moduleId : pom.getModules()) {
                 String rootArtifactId = configurationProperties.getProperty(Constants.ARTIFACT_ID);
                 String moduleIdDirectory = moduleId;
@@ -224,21 +234,29 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
                     moduleIdDirectory = StringUtils.replace(moduleId, rootArtifactId, "__rootArtifactId__");
                 }
 
-                LOGGER.debug("Creating module " + moduleId);
-
-                ModuleDescriptor moduleDescriptor = createModule(
-                        reverseProperties,
-                        rootArtifactId,
-                        moduleId,
-                        packageName,
-                        FileUtils.resolveFile(basedir, moduleId),
-                        new File(archetypeFilesDirectory, moduleIdDirectory),
-                        languages,
-                        filtereds,
-                        defaultEncoding,
-                        preserveCData,
-                        keepParent);
+                File moduleFilesDirectory = new File(archetypeFilesDirectory, moduleIdDirectory);
+                Properties moduleProperties = getModuleProperties(tasks, reverseProperties);
+
+                moduleTasks.add(() -> {
+                    LOGGER.debug("Creating module " + moduleId);
+
+                    return createModule(
+                            tasks,
+                            moduleProperties,
+                            rootArtifactId,
+                            moduleId,
+                            packageName,
+                            FileUtils.resolveFile(basedir, moduleId),
+                            moduleFilesDirectory,
+                            languages,
+                            filtereds,
+                            defaultEncoding,
+                            preserveCData,
+                            keepParent);
+                });
+            }
 
+            for (ModuleDescriptor moduleDescriptor : tasks.runAll(moduleTasks)) {
                 archetypeDescriptor.addModule(moduleDescriptor);
 
                 LOGGER.debug("Added module " + moduleDescriptor.getName() + " in " + archetypeDescriptor.getName());
@@ -743,6 +761,7 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
         return result;
     }
 
+    @SuppressWarnings("checkstyle:ParameterNumber")
     private void copyFiles(
             File basedir,
             File archetypeFilesDirectory,
@@ -750,8 +769,14 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
             List<String> fileSetResources,
             boolean packaged,
             String packageName,
-            Properties reverseProperties)
-            throws IOException {
+            Properties reverseProperties,
+            List<CreationTasks.Task<Void>> fileTasks) {
+        // on the calling thread, in fileset order: filtered filesets processed before still reverse the languages
+        if (!fileSetResources.isEmpty()) {
+            reverseProperties.remove(Constants.ARCHETYPE_LANGUAGES);
+        }
+
+        PropertyReversal reversal = getPropertyReversal(reverseProperties);
         String packageAsDirectory = StringUtils.replace(packageName, ".", File.separator);
 
         LOGGER.debug("Package as Directory: Package:" + packageName + "->" + packageAsDirectory);
@@ -763,31 +788,34 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
             LOGGER.debug("InputFileName:" + inputFileName);
             LOGGER.debug("OutputFileName:" + outputFileName);
 
-            reverseProperties.remove("archetype.languages");
+            fileTasks.add(() -> {
+                String reversedOutputFilename = reversal.reverseFilename(outputFileName);
 
-            String reversedOutputFilename = getReversedFilename(outputFileName, reverseProperties);
+                File outputFile = new File(archetypeFilesDirectory, reversedOutputFilename);
 
-            File outputFile = new File(archetypeFilesDirectory, reversedOutputFilename);
+                File inputFile = new File(basedir, inputFileName);
 
-            File inputFile = new File(basedir, inputFileName);
+                outputFile.getParentFile().mkdirs();
 
-            outputFile.getParentFile().mkdirs();
-
-            FileUtils.copyFile(inputFile, outputFile);
+                FileUtils.copyFile(inputFile, outputFile);
+                return null;
+            });
         }
     }
 
     private void createArchetypeFiles(
+            CreationTasks tasks,
             Properties reverseProperties,
             List<FileSet> fileSets,
             String packageName,
             File basedir,
             File archetypeFilesDirectory,
-            String defaultEncoding,
             List<String> excludePatterns)
-            throws IOException {
+            throws IOException, XmlPullParserException {
         LOGGER.debug("Creating Archetype/Module files from " + basedir + " to " + archetypeFilesDirectory);
 
+        List<CreationTasks.Task<Void>> fileTasks = new ArrayList<>();
+
         for (FileSet fileSet : fileSets) {
             DirectoryScanner scanner = new DirectoryScanner();
             scanner.setBasedir(basedir);
@@ -811,8 +839,8 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
                         fileSet.isPackaged(),
                         packageName,
                         reverseProperties,
-                        defaultEncoding);
-                LOGGER.debug("Processed " + fileSet.getDirectory() + " files");
+                        fileTasks);
+                LOGGER.debug("Processing " + fileSet.getDirectory() + " files");
             } else {
                 copyFiles(
                         basedir,
@@ -821,10 +849,13 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
                         fileSetResources,
                         fileSet.isPackaged(),
                         packageName,
-                        reverseProperties);
-                LOGGER.debug("Copied " + fileSet.getDirectory() + " files");
+                        reverseProperties,
+                        fileTasks);
+                LOGGER.debug("Copying " + fileSet.getDirectory() + " files");
             }
         }
+
+        tasks.runAll(fileTasks);
     }
 
     private void createArchetypePom(
@@ -954,6 +985,7 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
 
     @SuppressWarnings("checkstyle:ParameterNumber")
     private ModuleDescriptor createModule(
+            CreationTasks tasks,
             Properties reverseProperties,
             String rootArtifactId,
             String moduleId,
@@ -1003,39 +1035,42 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
         archetypeDescriptor.setFileSets(filesets);
 
         createArchetypeFiles(
-                reverseProperties,
-                filesets,
-                packageName,
-                basedir,
-                archetypeFilesDirectory,
-                defaultEncoding,
-                excludePatterns);
+                tasks, reverseProperties, filesets, packageName, basedir, archetypeFilesDirectory, excludePatterns);
         LOGGER.debug("Created files for module " + archetypeDescriptor.getName());
 
         String parentArtifactId = reverseProperties.getProperty(Constants.PARENT_ARTIFACT_ID);
         setParentArtifactId(reverseProperties, pom.getArtifactId());
 
+        List<CreationTasks.Task<ModuleDescriptor>> moduleTasks = new ArrayList<>();
         for (String subModuleId : pom.getModules()) {
             String subModuleIdDirectory = subModuleId;
             if (subModuleId.indexOf(rootArtifactId) >= 0) {
                 subModuleIdDirectory = StringUtils.replace(subModuleId, rootArtifactId, "__rootArtifactId__");
             }
 
-            LOGGER.debug("Creating module " + subModuleId);
+            File moduleFilesDirectory = FileUtils.resolveFile(archetypeFilesDirectory, subModuleIdDirectory);
+            Properties moduleProperties = getModuleProperties(tasks, reverseProperties);
 
-            ModuleDescriptor moduleDescriptor = createModule(
-                    reverseProperties,
-                    rootArtifactId,
-                    subModuleId,
-                    packageName,
-                    FileUtils.resolveFile(basedir, subModuleId),
-                    FileUtils.resolveFile(archetypeFilesDirectory, subModuleIdDirectory),
-                    languages,
-                    filtereds,
-                    defaultEncoding,
-                    preserveCData,
-                    keepParent);
+            moduleTasks.add(() -> {
+                LOGGER.debug("Creating module " + subModuleId);
+
+                return createModule(
+                        tasks,
+                        moduleProperties,
+                        rootArtifactId,
+                        subModuleId,
+                        packageName,
+                        FileUtils.resolveFile(basedir, subModuleId),
+                        moduleFilesDirectory,
+                        languages,
+                        filtereds,
+                        defaultEncoding,
+                        preserveCData,
+                        keepParent);
+            });
+        }
 
+        for (ModuleDescriptor moduleDescriptor : tasks.runAll(moduleTasks)) {
             archetypeDescriptor.addModule(moduleDescriptor);
 
             LOGGER.debug("Added module " + moduleDescriptor.getName() + " in " + archetypeDescriptor.getName());
@@ -1251,8 +1286,9 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
             boolean packaged,
             String packageName,
             Properties reverseProperties,
-            String defaultEncoding)
-            throws IOException {
+            List<CreationTasks.Task<Void>> fileTasks) {
+        PropertyReversal reversal = getPropertyReversal(reverseProperties);
+        List<String> propertyKeys = new ArrayList<>(reverseProperties.stringPropertyNames());
         String packageAsDirectory = StringUtils.replace(packageName, ".", File.separator);
 
         LOGGER.debug("Package as Directory: Package:" + packageName + "->" + packageAsDirectory);
@@ -1264,39 +1300,68 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
 
             LOGGER.debug("InputFileName:" + inputFileName);
 
-            File inputFile = new File(basedir, inputFileName);
+            fileTasks.add(() -> {
+                processFile(basedir, archetypeFilesDirectory, inputFileName, initialFilename, propertyKeys, reversal);
+                return null;
+            });
+        }
+    }
 
-            String fileEncoding = getFileCharsetEncoding(inputFile, defaultEncoding);
+    private void processFile(
+            File basedir,
+            File archetypeFilesDirectory,
+            String inputFileName,
+            String initialFilename,
+            List<String> propertyKeys,
+            PropertyReversal reversal)
+            throws IOException {
+        File inputFile = new File(basedir, inputFileName);
 
-            String initialcontent = IOUtil.toString(Files.newInputStream(inputFile.toPath()), fileEncoding);
+        // read once, for both charset detection and decoding
+        byte[] bytes = Files.readAllBytes(inputFile.toPath());
 
-            for (Iterator<?> properties = reverseProperties.keySet().iterator(); properties.hasNext(); ) {
-                String property = (String) properties.next();
+        String fileEncoding = getCharsetEncoding(bytes);
 
-                if (initialcontent.indexOf("${" + property + "}") > 0) {
-                    LOGGER.warn("Archetype uses ${" + property + "} for internal processing, but file " + inputFile
-                            + " contains this property already");
-                }
+        String initialcontent = new String(bytes, fileEncoding);
+
+        for (String property : propertyKeys) {
+            if (initialcontent.indexOf("${" + property + "}") > 0) {
+                LOGGER.warn("Archetype uses ${" + property + "} for internal processing, but file " + inputFile
+                        + " contains this property already");
             }
+        }
 
-            String content = getReversedContent(initialcontent, reverseProperties);
-            String outputFilename = getReversedFilename(initialFilename, reverseProperties);
+        String content = reversal.reverseEscaped(initialcontent);
+        String outputFilename = reversal.reverseFilename(initialFilename);
 
-            LOGGER.debug("OutputFileName:" + outputFilename);
+        LOGGER.debug("OutputFileName:" + outputFilename);
 
-            File outputFile = new File(archetypeFilesDirectory, outputFilename);
-            outputFile.getParentFile().mkdirs();
+        File outputFile = new File(archetypeFilesDirectory, outputFilename);
+        outputFile.getParentFile().mkdirs();
 
-            if (!outputFile.exists() && !outputFile.createNewFile()) {
-                LOGGER.warn("Could not create new file \"" + outputFile.getPath() + "\" or the file already exists.");
-            }
+        if (!outputFile.exists() && !outputFile.createNewFile()) {
+            LOGGER.warn("Could not create new file \"" + outputFile.getPath() + "\" or the file already exists.");
+        }
 
-            try (OutputStream os = Files.newOutputStream(outputFile.toPath())) {
-                write(content, os, fileEncoding);
-            }
+        try (OutputStream os = Files.newOutputStream(outputFile.toPath())) {
+            write(content, os, fileEncoding);
         }
     }
 
+    /**
+     * @return the properties of a module, which sets its own artifactId and parentArtifactId: a copy when sibling
+     *         modules are created concurrently
+     */
+    private Properties getModuleProperties(CreationTasks tasks, Properties reverseProperties) {
+        if (!tasks.isParallel()) {
+            return reverseProperties;
+        }
+
+        Properties moduleProperties = new Properties();
+        moduleProperties.putAll(reverseProperties);
+        return moduleProperties;
+    }
+
     private Properties getReversedProperties(ArchetypeDescriptor archetypeDescriptor, Properties properties) {
         Properties reversedProperties = new Properties();
 
@@ -1311,8 +1376,8 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
             reversedProperties.setProperty(Constants.PACKAGE_IN_PATH_FORMAT, packageInPathFormat);
         }
 
-        // TODO check that reversed properties are all different and no one is a substring of another?
-        // to avoid wrong variable replacements
+        // a property value part of another one is only replaced where the longer value isn't found, see
+        // PropertyReversal
 
         return reversedProperties;
     }
@@ -1344,7 +1409,6 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
         return fileNames;
     }
 
-    @SuppressWarnings("checkstyle:MethodLength")
     private List<FileSet> resolveFileSets(
             String packageName,
             List<String> fileNames,
@@ -1355,214 +1419,15 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
         LOGGER.debug("Resolving filesets with package=" + packageName + ", languages=" + languages + " and extentions="
                 + filtereds);
 
-        List<String> files = new ArrayList<>(fileNames);
-
-        StringBuilder languageIncludes = new StringBuilder();
-
-        for (String language : languages) {
-            languageIncludes.append(((languageIncludes.length() == 0) ? "" : ",") + language + "/**");
-        }
-
-        LOGGER.debug("Using languages includes " + languageIncludes);
-
-        StringBuilder filteredIncludes = new StringBuilder();
-        for (String filtered : filtereds) {
-            filteredIncludes.append(((filteredIncludes.length() == 0) ? "" : ",") + "**/"
-                    + (filtered.startsWith(".") ? "" : "*.") + filtered);
-        }
-
-        LOGGER.debug("Using filtered includes " + filteredIncludes);
-
-        /* sourcesMainFiles */
-        List<String> sourcesMainFiles = archetypeFilesResolver.findSourcesMainFiles(files, languageIncludes.toString());
-        if (!sourcesMainFiles.isEmpty()) {
-            files.removeAll(sourcesMainFiles);
-
-            List<String> filteredFiles =
-                    archetypeFilesResolver.getFilteredFiles(sourcesMainFiles, filteredIncludes.toString());
-            sourcesMainFiles.removeAll(filteredFiles);
+        List<String> ignoredFiles = new ArrayList<>();
 
-            List<String> unfilteredFiles = sourcesMainFiles;
-            if (!filteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(filteredFiles, 3, true, packageName, true, defaultEncoding));
-            }
-
-            if (!unfilteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(unfilteredFiles, 3, true, packageName, false, defaultEncoding));
-            }
+        for (FileClassifier.Group group : new FileClassifier(languages, filtereds).classify(fileNames, ignoredFiles)) {
+            resolvedFileSets.addAll(createFileSets(
+                    group.files, group.level, group.packaged, packageName, group.filtered, defaultEncoding));
         }
 
-        /* resourcesMainFiles */
-        List<String> resourcesMainFiles =
-                archetypeFilesResolver.findResourcesMainFiles(files, languageIncludes.toString());
-        if (!resourcesMainFiles.isEmpty()) {
-            files.removeAll(resourcesMainFiles);
-
-            List<String> filteredFiles =
-                    archetypeFilesResolver.getFilteredFiles(resourcesMainFiles, filteredIncludes.toString());
-            resourcesMainFiles.removeAll(filteredFiles);
-
-            List<String> unfilteredFiles = resourcesMainFiles;
-            if (!filteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(filteredFiles, 3, false, packageName, true, defaultEncoding));
-            }
-            if (!unfilteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(unfilteredFiles, 3, false, packageName, false, defaultEncoding));
-            }
-        }
-
-        /* sourcesTestFiles */
-        List<String> sourcesTestFiles = archetypeFilesResolver.findSourcesTestFiles(files, languageIncludes.toString());
-        if (!sourcesTestFiles.isEmpty()) {
-            files.removeAll(sourcesTestFiles);
-
-            List<String> filteredFiles =
-                    archetypeFilesResolver.getFilteredFiles(sourcesTestFiles, filteredIncludes.toString());
-            sourcesTestFiles.removeAll(filteredFiles);
-
-            List<String> unfilteredFiles = sourcesTestFiles;
-            if (!filteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(filteredFiles, 3, true, packageName, true, defaultEncoding));
-            }
-            if (!unfilteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(unfilteredFiles, 3, true, packageName, false, defaultEncoding));
-            }
-        }
-
-        /* ressourcesTestFiles */
-        List<String> resourcesTestFiles =
-                archetypeFilesResolver.findResourcesTestFiles(files, languageIncludes.toString());
-        if (!resourcesTestFiles.isEmpty()) {
-            files.removeAll(resourcesTestFiles);
-
-            List<String> filteredFiles =
-                    archetypeFilesResolver.getFilteredFiles(resourcesTestFiles, filteredIncludes.toString());
-            resourcesTestFiles.removeAll(filteredFiles);
-
-            List<String> unfilteredFiles = resourcesTestFiles;
-            if (!filteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(filteredFiles, 3, false, packageName, true, defaultEncoding));
-            }
-            if (!unfilteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(unfilteredFiles, 3, false, packageName, false, defaultEncoding));
-            }
-        }
-
-        /* siteFiles */
-        List<String> siteFiles = archetypeFilesResolver.findSiteFiles(files, languageIncludes.toString());
-        if (!siteFiles.isEmpty()) {
-            files.removeAll(siteFiles);
-
-            List<String> filteredFiles =
-                    archetypeFilesResolver.getFilteredFiles(siteFiles, filteredIncludes.toString());
-            siteFiles.removeAll(filteredFiles);
-
-            List<String> unfilteredFiles = siteFiles;
-            if (!filteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(filteredFiles, 2, false, packageName, true, defaultEncoding));
-            }
-            if (!unfilteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(unfilteredFiles, 2, false, packageName, false, defaultEncoding));
-            }
-        }
-
-        /* thirdLevelSourcesfiles */
-        List<String> thirdLevelSourcesfiles =
-                archetypeFilesResolver.findOtherSources(3, files, languageIncludes.toString());
-        if (!thirdLevelSourcesfiles.isEmpty()) {
-            files.removeAll(thirdLevelSourcesfiles);
-
-            List<String> filteredFiles =
-                    archetypeFilesResolver.getFilteredFiles(thirdLevelSourcesfiles, filteredIncludes.toString());
-            thirdLevelSourcesfiles.removeAll(filteredFiles);
-
-            List<String> unfilteredFiles = thirdLevelSourcesfiles;
-            if (!filteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(filteredFiles, 3, true, packageName, true, defaultEncoding));
-            }
-            if (!unfilteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(unfilteredFiles, 3, true, packageName, false, defaultEncoding));
-            }
-
-            /* thirdLevelResourcesfiles */
-            List<String> thirdLevelResourcesfiles = archetypeFilesResolver.findOtherResources(
-                    3, files, thirdLevelSourcesfiles, languageIncludes.toString());
-            if (!thirdLevelResourcesfiles.isEmpty()) {
-                files.removeAll(thirdLevelResourcesfiles);
-                filteredFiles =
-                        archetypeFilesResolver.getFilteredFiles(thirdLevelResourcesfiles, filteredIncludes.toString());
-                thirdLevelResourcesfiles.removeAll(filteredFiles);
-                unfilteredFiles = thirdLevelResourcesfiles;
-                if (!filteredFiles.isEmpty()) {
-                    resolvedFileSets.addAll(
-                            createFileSets(filteredFiles, 3, false, packageName, true, defaultEncoding));
-                }
-                if (!unfilteredFiles.isEmpty()) {
-                    resolvedFileSets.addAll(
-                            createFileSets(unfilteredFiles, 3, false, packageName, false, defaultEncoding));
-                }
-            }
-        } // end if
-
-        /* secondLevelSourcesfiles */
-        List<String> secondLevelSourcesfiles =
-                archetypeFilesResolver.findOtherSources(2, files, languageIncludes.toString());
-        if (!secondLevelSourcesfiles.isEmpty()) {
-            files.removeAll(secondLevelSourcesfiles);
-
-            List<String> filteredFiles =
-                    archetypeFilesResolver.getFilteredFiles(secondLevelSourcesfiles, filteredIncludes.toString());
-            secondLevelSourcesfiles.removeAll(filteredFiles);
-
-            List<String> unfilteredFiles = secondLevelSourcesfiles;
-            if (!filteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(filteredFiles, 2, true, packageName, true, defaultEncoding));
-            }
-            if (!unfilteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(unfilteredFiles, 2, true, packageName, false, defaultEncoding));
-            }
-        }
-
-        /* secondLevelResourcesfiles */
-        List<String> secondLevelResourcesfiles =
-                archetypeFilesResolver.findOtherResources(2, files, languageIncludes.toString());
-        if (!secondLevelResourcesfiles.isEmpty()) {
-            files.removeAll(secondLevelResourcesfiles);
-
-            List<String> filteredFiles =
-                    archetypeFilesResolver.getFilteredFiles(secondLevelResourcesfiles, filteredIncludes.toString());
-            secondLevelResourcesfiles.removeAll(filteredFiles);
-
-            List<String> unfilteredFiles = secondLevelResourcesfiles;
-            if (!filteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(filteredFiles, 2, false, packageName, true, defaultEncoding));
-            }
-            if (!unfilteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(unfilteredFiles, 2, false, packageName, false, defaultEncoding));
-            }
-        }
-
-        /* rootResourcesfiles */
-        List<String> rootResourcesfiles =
-                archetypeFilesResolver.findOtherResources(0, files, languageIncludes.toString());
-        if (!rootResourcesfiles.isEmpty()) {
-            files.removeAll(rootResourcesfiles);
-
-            List<String> filteredFiles =
-                    archetypeFilesResolver.getFilteredFiles(rootResourcesfiles, filteredIncludes.toString());
-            rootResourcesfiles.removeAll(filteredFiles);
-
-            List<String> unfilteredFiles = rootResourcesfiles;
-            if (!filteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(filteredFiles, 0, false, packageName, true, defaultEncoding));
-            }
-            if (!unfilteredFiles.isEmpty()) {
-                resolvedFileSets.addAll(createFileSets(unfilteredFiles, 0, false, packageName, false, defaultEncoding));
-            }
-        }
-
-        if (!files.isEmpty()) {
-            LOGGER.info("Ignored files: " + files);
+        if (!ignoredFiles.isEmpty()) {
+            LOGGER.info("Ignored files: " + ignoredFiles);
         }
 
         return resolvedFileSets;
@@ -1585,36 +1450,41 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
     }
 
     private String getReversedContent(String content, Properties properties) {
-        String result =
-                StringUtils.replace(StringUtils.replace(content, "$", "${symbol_dollar}"), "\\", "${symbol_escape}");
-        result = getReversedPlainContent(result, properties);
-
         // TODO: Replace velocity to a better engine...
-        return "#set( $symbol_pound = '#' )\n" + "#set( $symbol_dollar = '$' )\n" + "#set( $symbol_escape = '\\' )\n"
-                + StringUtils.replace(result, "#", "${symbol_pound}");
+        return getPropertyReversal(properties).reverseEscaped(content);
     }
 
     private String getReversedPlainContent(String content, Properties properties) {
-        String result = content;
+        return getPropertyReversal(properties).reverse(content);
+    }
 
+    /**
+     * @return the reversal of the current properties, built once for all the files processed with the same
+     *         properties
+     */
+    private PropertyReversal getPropertyReversal(Properties properties) {
+        Map<String, String> values = new LinkedHashMap<>();
+        List<String> key = new ArrayList<>();
         for (Iterator<?> propertyIterator = properties.keySet().iterator(); propertyIterator.hasNext(); ) {
             String propertyKey = (String) propertyIterator.next();
+            String propertyValue = properties.getProperty(propertyKey);
 
-            result = StringUtils.replace(result, properties.getProperty(propertyKey), "${" + propertyKey + "}");
+            values.put(propertyKey, propertyValue);
+            key.add(propertyKey);
+            key.add(propertyValue);
         }
-        return result;
-    }
 
-    private String getReversedFilename(String filename, Properties properties) {
-        String result = filename;
+        synchronized (reversals) {
+            PropertyReversal reversal = reversals.computeIfAbsent(key, k -> new PropertyReversal(values));
 
-        for (Iterator<?> propertyIterator = properties.keySet().iterator(); propertyIterator.hasNext(); ) {
-            String propertyKey = (String) propertyIterator.next();
+            Iterator<PropertyReversal> eldest = reversals.values().iterator();
+            while (reversals.size() > MAX_REVERSALS && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
 
-            result = StringUtils.replace(result, properties.getProperty(propertyKey), "__" + propertyKey + "__");
+            return reversal;
         }
-
-        return result;
     }
 
     private String getTemplateOutputDirectory() {
@@ -1641,15 +1511,111 @@ public class FilesetArchetypeCreator implements ArchetypeCreator {
         return createFileSet(excludes, false, filtered, group, includes, defaultEncoding);
     }
 
-    private String getFileCharsetEncoding(File detectedFile, String defaultEncoding) {
-        try (InputStream in = new BufferedInputStream(Files.newInputStream(detectedFile.toPath()))) {
-            CharsetDetector detector = new CharsetDetector();
-            detector.setText(in);
-            CharsetMatch match = detector.detect();
-            return match.getName().toUpperCase(Locale.ENGLISH);
+    /**
+     * Detects the charset of a file content. Content which is UTF-8 as a whole, and either ASCII or UTF-8 ICU would
+     * recognize with full confidence in its sample, is detected without ICU, which only gets the other content.
+     *
+     * @param content the file content
+     * @return the charset name
+     */
+    static String getCharsetEncoding(byte[] content) {
+        int length = Math.min(content.length, DETECTION_SAMPLE);
+
+        boolean bom =
+                length >= 3 && content[0] == (byte) 0xEF && content[1] == (byte) 0xBB && content[2] == (byte) 0xBF;
+        int sequences = 0;
+
+        int i = 0;
+        while (i < length) {
+            // NUL and ESC are part of UTF-16, UTF-32 and ISO-2022 content
+            if (content[i] == 0x00 || content[i] == 0x1B) {
+                return detectCharsetEncoding(content, length);
+            }
+
+            // a sequence cut by the end of the sample is left to ICU too
+            int sequence = getUtf8SequenceLength(content, i, length);
+            if (sequence < 0) {
+                return detectCharsetEncoding(content, length);
+            }
+
+            if (sequence > 1) {
+                sequences++;
+            }
+            i += sequence;
+        }
+
+        // ASCII reads and writes the same in any ASCII compatible charset
+        if (sequences > 0 && !bom && sequences <= 3) {
+            return detectCharsetEncoding(content, length);
+        }
+
+        // the sample says nothing of the rest of the content: ASCII followed by ISO-8859-1 isn't UTF-8
+        while (i < content.length) {
+            int sequence = getUtf8SequenceLength(content, i, content.length);
+            if (sequence < 0) {
+                String encoding = detectCharsetEncoding(content, length);
+
+                // ICU only reads the sample: keep the bytes it didn't read as they are
+                return "UTF-8".equals(encoding) ? "ISO-8859-1" : encoding;
+            }
+            i += sequence;
+        }
+
+        return "UTF-8";
+    }
+
+    /**
+     * @return the length of the UTF-8 sequence starting at <code>i</code> and ending before <code>end</code>, or
+     *         <code>-1</code> if the bytes are not a sequence Java decodes
+     */
+    private static int getUtf8SequenceLength(byte[] content, int i, int end) {
+        int b = content[i] & 0xFF;
+        if (b < 0x80) {
+            return 1;
+        }
+
+        int trailing;
+        int min = 0x80;
+        int max = 0xBF;
+        if (b >= 0xC2 && b <= 0xDF) {
+            trailing = 1;
+        } else if (b >= 0xE0 && b <= 0xEF) {
+            trailing = 2;
+            // no overlong encodings nor surrogates
+            min = b == 0xE0 ? 0xA0 : 0x80;
+            max = b == 0xED ? 0x9F : 0xBF;
+        } else if (b >= 0xF0 && b <= 0xF4) {
+            trailing = 3;
+            min = b == 0xF0 ? 0x90 : 0x80;
+            max = b == 0xF4 ? 0x8F : 0xBF;
+        } else {
+            return -1;
+        }
+
+        if (i + trailing >= end) {
+            return -1;
+        }
+
+        for (int j = 1; j <= trailing; j++) {
+            int next = content[i + j] & 0xFF;
+            if (next < (j == 1 ? min : 0x80) || next > (j == 1 ? max : 0xBF)) {
+                return -1;
+            }
+        }
+        return trailing + 1;
+    }
+
+    private static String detectCharsetEncoding(byte[] content, int length) {
+        CharsetDetector detector = new CharsetDetector();
+        try {
+            // as a stream, which ICU doesn't detect like an array of the same bytes
+            detector.setText(new ByteArrayInputStream(content, 0, length));
         } catch (IOException e) {
-            return defaultEncoding;
+            // not thrown by a byte array
+            throw new UncheckedIOException(e);
         }
+        CharsetMatch match = detector.detect();
+        return match.getName().toUpperCase(Locale.ENGLISH);
     }
 
     private FileSet getUnpackagedFileSet(
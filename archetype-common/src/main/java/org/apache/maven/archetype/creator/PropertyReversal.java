@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.creator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Replaces the property values found in a project file with references to the properties, in a single scan of the
+ * file whatever the number of properties.
+ * <p>
+ * Property values are matched by an Aho-Corasick automaton, leftmost first and longest first: when a property value
+ * is part of another one, the longest value found is replaced. When several properties have the same value, the first
+ * one is referenced.
+ *
+ * @since 3.4.2
+ */
+class PropertyReversal {
+    /**
+     * Velocity references replacing the characters of the content which would be interpreted by Velocity.
+     */
+    static final String ESCAPE_HEADER =
+            "#set( $symbol_pound = '#' )\n" + "#set( $symbol_dollar = '$' )\n" + "#set( $symbol_escape = '\\' )\n";
+
+    private final Automaton plain;
+
+    private final Automaton escaped;
+
+    /**
+     * @param properties the property values by property name, in preference order
+     */
+    PropertyReversal(Map<String, String> properties) {
+        Map<String, String> plainValues = new LinkedHashMap<>();
+        Map<String, String> escapedValues = new LinkedHashMap<>();
+
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            String value = property.getValue();
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+
+            plainValues.putIfAbsent(value, property.getKey());
+
+            // escaped before the property values were replaced: never matched
+            if (value.indexOf('$') < 0 && value.indexOf('\\') < 0) {
+                escapedValues.putIfAbsent(value, property.getKey());
+            }
+        }
+
+        plain = new Automaton(plainValues);
+        escaped = plain.keys.length == escapedValues.size() ? plain : new Automaton(escapedValues);
+    }
+
+    /**
+     * @return the content with its property values replaced by <code>${property}</code>
+     */
+    String reverse(String content) {
+        if (content == null) {
+            return null;
+        }
+
+        StringBuilder result = new StringBuilder(content.length() + 16);
+        plain.replace(content, "${", "}", false, result);
+        return result.toString();
+    }
+
+    /**
+     * @return the content with its property values replaced by <code>${property}</code> and its other <code>$</code>,
+     *         <code>\</code> and <code>#</code> characters escaped, as a Velocity template
+     */
+    String reverseEscaped(String content) {
+        StringBuilder result = new StringBuilder(ESCAPE_HEADER.length() + content.length() + 64);
+        result.append(ESCAPE_HEADER);
+        escaped.replace(content, "${", "}", true, result);
+        return result.toString();
+    }
+
+    /**
+     * @return the filename with its property values replaced by <code>__property__</code>
+     */
+    String reverseFilename(String filename) {
+        StringBuilder result = new StringBuilder(filename.length() + 16);
+        plain.replace(filename, "__", "__", false, result);
+        return result.toString();
+    }
+
+    private static void append(CharSequence text, int start, int end, boolean escape, StringBuilder result) {
+        if (!escape) {
+            result.append(text, start, end);
+            return;
+        }
+
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '$':
+                    result.append("${symbol_dollar}");
+                    break;
+                case '\\':
+                    result.append("${symbol_escape}");
+                    break;
+                case '#':
+                    result.append("${symbol_pound}");
+                    break;
+                default:
+                    result.append(c);
+            }
+        }
+    }
+
+    /**
+     * Aho-Corasick automaton of property values. Its states are the prefixes of the values, with transitions sorted
+     * by character.
+     */
+    private static class Automaton {
+        private final String[] keys;
+
+        private final int[] lengths;
+
+        private final char[][] characters;
+
+        private final int[][] targets;
+
+        private final int[] fail;
+
+        private final int[] depth;
+
+        /**
+         * The longest value ending at each state, or <code>-1</code>.
+         */
+        private final int[] output;
+
+        Automaton(Map<String, String> values) {
+            keys = values.values().toArray(new String[0]);
+            lengths = new int[keys.length];
+
+            List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+            List<Integer> depths = new ArrayList<>();
+            List<Integer> outputs = new ArrayList<>();
+            trie.add(new TreeMap<>());
+            depths.add(0);
+            outputs.add(-1);
+
+            int index = 0;
+            for (String value : values.keySet()) {
+                int state = 0;
+                for (int i = 0; i < value.length(); i++) {
+                    Integer next = trie.get(state).get(value.charAt(i));
+                    if (next == null) {
+                        next = trie.size();
+                        trie.add(new TreeMap<>());
+                        depths.add(i + 1);
+                        outputs.add(-1);
+                        trie.get(state).put(value.charAt(i), next);
+                    }
+                    state = next;
+                }
+                outputs.set(state, index);
+                lengths[index++] = value.length();
+            }
+
+            int states = trie.size();
+            characters = new char[states][];
+            targets = new int[states][];
+            fail = new int[states];
+            depth = new int[states];
+            output = new int[states];
+
+            for (int state = 0; state < states; state++) {
+                TreeMap<Character, Integer> transitions = trie.get(state);
+                characters[state] = new char[transitions.size()];
+                targets[state] = new int[transitions.size()];
+
+                int i = 0;
+                for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+                    characters[state][i] = transition.getKey();
+                    targets[state][i++] = transition.getValue();
+                }
+
+                depth[state] = depths.get(state);
+                output[state] = outputs.get(state);
+            }
+
+            // breadth first, so that the failure state of a state is computed before its own
+            Queue<Integer> queue = new ArrayDeque<>();
+            for (int target : targets[0]) {
+                queue.add(target);
+            }
+
+            while (!queue.isEmpty()) {
+                int state = queue.remove();
+
+                for (int i = 0; i < characters[state].length; i++) {
+                    int target = targets[state][i];
+
+                    fail[target] = next(fail[state], characters[state][i]);
+                    if (output[target] < 0) {
+                        output[target] = output[fail[target]];
+                    }
+
+                    queue.add(target);
+                }
+            }
+        }
+
+        private int transition(int state, char c) {
+            int i = Arrays.binarySearch(characters[state], c);
+            return i < 0 ? -1 : targets[state][i];
+        }
+
+        private int next(int state, char c) {
+            while (true) {
+                int target = transition(state, c);
+                if (target >= 0) {
+                    return target;
+                }
+                if (state == 0) {
+                    return 0;
+                }
+                state = fail[state];
+            }
+        }
+
+        /**
+         * Appends the text with its values replaced, leftmost and longest first.
+         */
+        void replace(String text, String prefix, String suffix, boolean escape, StringBuilder result) {
+            int emitted = 0;
+
+            int state = 0;
+            int match = -1;
+            int matchStart = -1;
+            int matchEnd = -1;
+
+            int i = 0;
+            while (true) {
+                if (i == text.length()) {
+                    if (match < 0) {
+                        break;
+                    }
+                } else {
+                    state = next(state, text.charAt(i++));
+
+                    int found = output[state];
+                    if (found >= 0) {
+                        int start = i - lengths[found];
+                        // a later match starting at the same position is longer
+                        if (match < 0 || start <= matchStart) {
+                            match = found;
+                            matchStart = start;
+                            matchEnd = i;
+                        }
+                    }
+
+                    // a longer match starting at the same position or before is still possible
+                    if (match < 0 || i - depth[state] <= matchStart) {
+                        continue;
+                    }
+                }
+
+                append(text, emitted, matchStart, escape, result);
+                result.append(prefix).append(keys[match]).append(suffix);
+                emitted = matchEnd;
+
+                // the text after the match may start another match, in characters already scanned
+                i = matchEnd;
+                state = 0;
+                match = -1;
+            }
+
+            append(text, emitted, text.length(), escape, result);
+        }
+    }
+}
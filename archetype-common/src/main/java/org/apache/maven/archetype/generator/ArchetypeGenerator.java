@@ -19,6 +19,7 @@
 package org.apache.maven.archetype.generator;
 
 import java.io.File;
+import java.util.List;
 
 import org.apache.maven.archetype.ArchetypeGenerationRequest;
 import org.apache.maven.archetype.ArchetypeGenerationResult;
@@ -32,4 +33,15 @@ public interface ArchetypeGenerator {
     void generateArchetype(ArchetypeGenerationRequest request, ArchetypeGenerationResult result);
 
     void generateArchetype(ArchetypeGenerationRequest request, File archetypeFile, ArchetypeGenerationResult result);
+
+    /**
+     * Generates projects, resolving and opening each archetype once for all the requests using it.
+     *
+     * @param requests the generation requests
+     * @param concurrency the maximum number of projects generated at the same time
+     * @param results the results to fill, one for each request in the same order
+     * @since 3.4.2
+     */
+    void generateArchetypes(
+            List<ArchetypeGenerationRequest> requests, int concurrency, List<ArchetypeGenerationResult> results);
 }
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.apache.velocity.context.Context;
+
+/**
+ * A template of a fileset archetype, parsed once and merged for each generated file.
+ *
+ * @see TemplateCache
+ * @since 3.4.2
+ */
+interface ArchetypeTemplate {
+    /**
+     * Renders the template.
+     *
+     * @param context the Velocity context
+     * @param writer the writer of the generated file
+     * @throws IOException if the file cannot be written
+     */
+    void merge(Context context, Writer writer) throws IOException;
+}
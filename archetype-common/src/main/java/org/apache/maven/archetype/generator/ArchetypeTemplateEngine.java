@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.Properties;
+
+import org.apache.maven.archetype.common.ArchetypeArchive;
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.context.Context;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.resource.ResourceManager;
+import org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader;
+import org.apache.velocity.runtime.resource.loader.FileResourceLoader;
+import org.codehaus.plexus.velocity.VelocityComponentConfigurator;
+
+/**
+ * The Velocity engine rendering fileset archetypes, shared by all generations, concurrent or not.
+ * <p>
+ * It is configured once like the Plexus Velocity component, and never changed afterwards. Its templates are read
+ * from the archetype archives {@link #open(String, ArchetypeArchive) opened} by the generations, instead of through
+ * the thread context class loader. Resources included by templates which are not in their archetype are still looked
+ * up like the Plexus Velocity component does, in the class path then in the file system.
+ * <p>
+ * Fileset archetypes and old (1.x) archetypes are both rendered by this engine, through the {@link TemplateCache}.
+ *
+ * @since 3.4.2
+ */
+@Named
+@Singleton
+public class ArchetypeTemplateEngine {
+    private static final String ARCHIVE_LOADER = "archive";
+
+    private final ArchiveResourceLoader loader = new ArchiveResourceLoader();
+
+    private final VelocityEngine engine;
+
+    private final TemplateCache templateCache;
+
+    ArchetypeTemplateEngine(VelocityComponentConfigurator configurator) {
+        this(configurator, new TemplateCache());
+    }
+
+    @Inject
+    ArchetypeTemplateEngine(VelocityComponentConfigurator configurator, TemplateCache templateCache) {
+        this.templateCache = templateCache;
+
+        // same configuration as the Plexus Velocity component, the archive loader coming first
+        Properties properties = new Properties();
+        properties.setProperty("resource.loaders", ARCHIVE_LOADER + ",classpath,file");
+        properties.setProperty("resource.loader.classpath.class", ClasspathResourceLoader.class.getName());
+        properties.setProperty("resource.loader.file.class", FileResourceLoader.class.getName());
+        properties.setProperty("resource.loader.file.path", "");
+        properties.setProperty("runtime.log.log_invalid_references", "false");
+        properties.setProperty("resource.manager.log_when_found", "false");
+        properties.setProperty("event_handler.include.class", ArchiveIncludePath.class.getName());
+        properties.setProperty("velocimacro.inline.replace_global", "true");
+        properties.setProperty("parser.space_gobbling", "bc");
+
+        configurator.configure(properties);
+
+        engine = new VelocityEngine();
+        engine.setProperties(properties);
+        engine.setProperty("resource.loader." + ARCHIVE_LOADER + ".instance", loader);
+        engine.init();
+    }
+
+    VelocityEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Makes the templates of an archive available to the engine.
+     *
+     * @param checksum the archive SHA-1
+     * @param archive the open archive
+     * @return closes the archive for the engine, not the archive itself
+     */
+    Closeable open(String checksum, ArchetypeArchive archive) {
+        loader.open(checksum, archive);
+
+        return () -> loader.close(checksum, archive);
+    }
+
+    /**
+     * Makes the templates of an archive available to the engine, under the archive SHA-1.
+     *
+     * @param archive the open archive
+     * @return closes the archive for the engine, not the archive itself
+     * @throws IOException if the archive checksum cannot be computed
+     */
+    public Closeable open(ArchetypeArchive archive) throws IOException {
+        return open(templateCache.getChecksum(archive.getFile()), archive);
+    }
+
+    /**
+     * Renders a template of an archive {@link #open(ArchetypeArchive) open} in the engine, the parsed template being
+     * cached.
+     *
+     * @param archive the open archive
+     * @param name the template entry name
+     * @param encoding the template encoding
+     * @param context the Velocity context
+     * @param writer the writer of the generated file
+     * @throws Exception if the template cannot be found, parsed or rendered
+     */
+    public void merge(ArchetypeArchive archive, String name, String encoding, Context context, Writer writer)
+            throws Exception {
+        templateCache.getTemplate(this, archive, name, encoding).merge(context, writer);
+    }
+
+    /**
+     * Parses a template of an open archive.
+     *
+     * @param checksum the archive SHA-1
+     * @param name the template entry name
+     * @param encoding the template encoding
+     * @return the parsed template
+     */
+    Template getTemplate(String checksum, String name, String encoding) {
+        return engine.getTemplate(checksum + '/' + name, encoding);
+    }
+
+    /**
+     * Parses a template of an open archive from its source, already read, as if it was read by the archive loader.
+     *
+     * @param checksum the archive SHA-1
+     * @param name the template entry name
+     * @param encoding the template encoding
+     * @param source the template source
+     * @return the parsed template
+     */
+    Template parse(String checksum, String name, String encoding, String source) {
+        RuntimeServices runtimeServices = loader.getRuntimeServices();
+
+        Template template = new Template();
+        template.setRuntimeServices(runtimeServices);
+        template.setType(ResourceManager.RESOURCE_TEMPLATE);
+        template.setName(checksum + '/' + name);
+        template.setEncoding(encoding);
+
+        try {
+            template.setData(runtimeServices.parse(new StringReader(source), template));
+        } catch (ParseException e) {
+            throw new ParseErrorException(e, template.getName());
+        }
+        template.initDocument();
+
+        return template;
+    }
+}
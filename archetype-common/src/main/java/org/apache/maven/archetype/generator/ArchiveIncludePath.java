@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import org.apache.velocity.app.event.IncludeEventHandler;
+import org.apache.velocity.context.Context;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.util.RuntimeServicesAware;
+
+/**
+ * Resolves <code>#parse</code> and <code>#include</code> paths like
+ * {@link org.apache.velocity.app.event.implement.IncludeRelativePath}, within the archetype of the including template:
+ * relative paths are resolved against the including template directory, absolute paths against the archetype root.
+ * A path which is not in the archetype is resolved as by {@link org.apache.velocity.app.event.implement.IncludeRelativePath}
+ * without the archetype, for the class path and file system loaders following the archive loader.
+ * <p>
+ * Public as Velocity instantiates it by class name: not meant to be used directly.
+ *
+ * @see ArchiveResourceLoader
+ * @since 3.4.2
+ */
+public class ArchiveIncludePath implements IncludeEventHandler, RuntimeServicesAware {
+    private RuntimeServices runtimeServices;
+
+    @Override
+    public void setRuntimeServices(RuntimeServices runtimeServices) {
+        this.runtimeServices = runtimeServices;
+    }
+
+    @Override
+    public String includeEvent(
+            Context context, String includeResourcePath, String currentResourcePath, String directiveName) {
+        // the archetype checksum prefixes the template names
+        int archetype = currentResourcePath.indexOf('/');
+        boolean absolute = includeResourcePath.startsWith("/") || includeResourcePath.startsWith("\\");
+
+        String path;
+        if (absolute) {
+            path = archetype < 0
+                    ? includeResourcePath
+                    : currentResourcePath.substring(0, archetype + 1) + includeResourcePath.substring(1);
+        } else {
+            int lastSlash = Math.max(currentResourcePath.lastIndexOf('/'), currentResourcePath.lastIndexOf('\\'));
+
+            path = lastSlash < 0
+                    ? includeResourcePath
+                    : currentResourcePath.substring(0, lastSlash + 1) + includeResourcePath;
+        }
+
+        if (archetype < 0 || runtimeServices == null || runtimeServices.getLoaderNameForResource(path) != null) {
+            return path;
+        }
+
+        // not in the archetype: same path as the Plexus Velocity component would include
+        return absolute ? includeResourcePath : path.substring(archetype + 1);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.maven.archetype.common.ArchetypeArchive;
+import org.apache.velocity.exception.ResourceNotFoundException;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.resource.Resource;
+import org.apache.velocity.runtime.resource.loader.ResourceLoader;
+import org.apache.velocity.util.ExtProperties;
+
+/**
+ * Velocity resource loader reading templates from the open archetype archives. A template is named
+ * <code>&lt;archetype SHA-1&gt;/&lt;entry name&gt;</code>, so it is found whatever the generation or thread rendering
+ * it, without going through the thread context class loader.
+ * <p>
+ * Several archives with the same checksum may be open at the same time: they have the same content, any of them is
+ * read.
+ *
+ * @since 3.4.2
+ */
+class ArchiveResourceLoader extends ResourceLoader {
+    private final Map<String, List<ArchetypeArchive>> archives = new ConcurrentHashMap<>();
+
+    /**
+     * Makes the templates of an archive available until it is {@link #close(String, ArchetypeArchive) closed}.
+     *
+     * @param checksum the archive SHA-1, prefixing its template names
+     * @param archive the open archive
+     */
+    void open(String checksum, ArchetypeArchive archive) {
+        archives.compute(checksum, (key, open) -> {
+            List<ArchetypeArchive> result = open == null ? new CopyOnWriteArrayList<>() : open;
+            result.add(archive);
+            return result;
+        });
+    }
+
+    void close(String checksum, ArchetypeArchive archive) {
+        archives.computeIfPresent(checksum, (key, open) -> {
+            open.remove(archive);
+            return open.isEmpty() ? null : open;
+        });
+    }
+
+    /**
+     * @return the runtime services of the engine owning this loader, once initialized
+     */
+    RuntimeServices getRuntimeServices() {
+        return rsvc;
+    }
+
+    @Override
+    public void init(ExtProperties configuration) {
+        // configured by the engine owning it
+    }
+
+    @Override
+    public Reader getResourceReader(String source, String encoding) throws ResourceNotFoundException {
+        String path = source.startsWith("/") ? source.substring(1) : source;
+        int separator = path.indexOf('/');
+
+        ArchetypeArchive archive = separator < 0 ? null : getArchive(path.substring(0, separator));
+        if (archive == null) {
+            throw new ResourceNotFoundException("No open archetype provides the template " + source);
+        }
+
+        String name = path.substring(separator + 1);
+        try {
+            InputStream is = archive.getInputStream(name);
+            if (is == null) {
+                throw new ResourceNotFoundException(
+                        "The template " + name + " does not exist in " + archive.getFile() + ".");
+            }
+
+            return buildReader(is, encoding);
+        } catch (IOException e) {
+            throw new ResourceNotFoundException(
+                    "The template " + name + " cannot be read in " + archive.getFile() + ".", e);
+        }
+    }
+
+    @Override
+    public boolean resourceExists(String source) {
+        String path = source.startsWith("/") ? source.substring(1) : source;
+        int separator = path.indexOf('/');
+
+        ArchetypeArchive archive = separator < 0 ? null : getArchive(path.substring(0, separator));
+        try {
+            return archive != null && archive.getEntry(path.substring(separator + 1)) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isSourceModified(Resource resource) {
+        return false;
+    }
+
+    @Override
+    public long getLastModified(Resource resource) {
+        return 0;
+    }
+
+    private ArchetypeArchive getArchive(String checksum) {
+        List<ArchetypeArchive> open = archives.get(checksum);
+
+        if (open != null) {
+            for (ArchetypeArchive archive : open) {
+                return archive;
+            }
+        }
+
+        return null;
+    }
+}
@@ -25,8 +25,11 @@ import javax.inject.Singleton;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.maven.archetype.ArchetypeGenerationReport;
 import org.apache.maven.archetype.ArchetypeGenerationRequest;
 import org.apache.maven.archetype.ArchetypeGenerationResult;
 import org.apache.maven.archetype.common.ArchetypeArtifactManager;
@@ -54,16 +57,20 @@ public class DefaultArchetypeGenerator implements ArchetypeGenerator {
 
     private RepositorySystem repositorySystem;
 
+    private OldArchetypeConverter oldArchetypeConverter;
+
     @Inject
     public DefaultArchetypeGenerator(
             ArchetypeArtifactManager archetypeArtifactManager,
             FilesetArchetypeGenerator filesetGenerator,
             OldArchetype oldArchetype,
-            RepositorySystem repositorySystem) {
+            RepositorySystem repositorySystem,
+            OldArchetypeConverter oldArchetypeConverter) {
         this.archetypeArtifactManager = archetypeArtifactManager;
         this.filesetGenerator = filesetGenerator;
         this.oldArchetype = oldArchetype;
         this.repositorySystem = repositorySystem;
+        this.oldArchetypeConverter = oldArchetypeConverter;
     }
 
     private File getArchetypeFile(ArchetypeGenerationRequest request) throws ArchetypeException {
@@ -99,11 +106,32 @@ public class DefaultArchetypeGenerator implements ArchetypeGenerator {
                 request.getRepositorySession());
     }
 
-    private void generateArchetype(ArchetypeGenerationRequest request, File archetypeFile) throws ArchetypeException {
+    private void processArchetype(
+            ArchetypeGenerationRequest request, File archetypeFile, ArchetypeGenerationResult result)
+            throws ArchetypeException {
         if (archetypeArtifactManager.isFileSetArchetype(archetypeFile)) {
-            processFileSetArchetype(request, archetypeFile);
+            processFileSetArchetype(request, archetypeFile, result);
         } else if (archetypeArtifactManager.isOldArchetype(archetypeFile)) {
+            if (oldArchetypeConverter.canConvert(request, archetypeFile)) {
+                processFileSetArchetype(request, archetypeFile, result);
+                return;
+            }
+
+            if (request.isPlanOnly()) {
+                throw new ArchetypeGenerationFailure(
+                        "The generation of a 1.x archetype cannot be planned: " + archetypeFile);
+            }
+
+            if (!new GenerationOutput(request).isFileSystem()) {
+                throw new ArchetypeGenerationFailure(
+                        "A 1.x archetype can only be generated in its output directory: " + archetypeFile);
+            }
+
+            long start = System.nanoTime();
+
             processOldArchetype(request, archetypeFile);
+
+            result.getReport().addTime(ArchetypeGenerationReport.Phase.GENERATION, System.nanoTime() - start);
         } else {
             throw new ArchetypeGenerationFailure("The defined artifact is not an archetype: " + archetypeFile);
         }
@@ -121,9 +149,10 @@ public class DefaultArchetypeGenerator implements ArchetypeGenerator {
     }
 
     /** FileSetArchetype. */
-    private void processFileSetArchetype(ArchetypeGenerationRequest request, File archetypeFile)
+    private void processFileSetArchetype(
+            ArchetypeGenerationRequest request, File archetypeFile, ArchetypeGenerationResult result)
             throws ArchetypeException {
-        filesetGenerator.generateArchetype(request, archetypeFile);
+        filesetGenerator.generateArchetype(request, archetypeFile, result);
     }
 
     private void processOldArchetype(ArchetypeGenerationRequest request, File archetypeFile)
@@ -135,7 +164,7 @@ public class DefaultArchetypeGenerator implements ArchetypeGenerator {
     public void generateArchetype(
             ArchetypeGenerationRequest request, File archetypeFile, ArchetypeGenerationResult result) {
         try {
-            generateArchetype(request, archetypeFile);
+            processArchetype(request, archetypeFile, result);
         } catch (ArchetypeException e) {
             result.setCause(e);
         }
@@ -144,14 +173,84 @@ public class DefaultArchetypeGenerator implements ArchetypeGenerator {
     @Override
     public void generateArchetype(ArchetypeGenerationRequest request, ArchetypeGenerationResult result) {
         try {
+            long start = System.nanoTime();
+
             File archetypeFile = getArchetypeFile(request);
 
+            result.getReport().addTime(ArchetypeGenerationReport.Phase.RESOLVE, System.nanoTime() - start);
+
             generateArchetype(request, archetypeFile, result);
         } catch (ArchetypeException ex) {
             result.setCause(ex);
         }
     }
 
+    @Override
+    public void generateArchetypes(
+            List<ArchetypeGenerationRequest> requests, int concurrency, List<ArchetypeGenerationResult> results) {
+        Map<String, List<Integer>> batches = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            batches.computeIfAbsent(getBatchKey(requests.get(i)), k -> new ArrayList<>())
+                    .add(i);
+        }
+
+        for (List<Integer> batch : batches.values()) {
+            List<ArchetypeGenerationRequest> batchRequests = new ArrayList<>(batch.size());
+            List<ArchetypeGenerationResult> batchResults = new ArrayList<>(batch.size());
+            for (int i : batch) {
+                batchRequests.add(requests.get(i));
+                batchResults.add(results.get(i));
+            }
+
+            try {
+                long start = System.nanoTime();
+
+                File archetypeFile = getArchetypeFile(batchRequests.get(0));
+
+                // each project waited for the shared resolution
+                long resolveTime = System.nanoTime() - start;
+                for (ArchetypeGenerationResult result : batchResults) {
+                    result.getReport().addTime(ArchetypeGenerationReport.Phase.RESOLVE, resolveTime);
+                }
+
+                if (archetypeArtifactManager.isFileSetArchetype(archetypeFile)) {
+                    filesetGenerator.generateArchetypes(batchRequests, archetypeFile, concurrency, batchResults);
+                } else {
+                    // old archetypes are generated one after the other
+                    for (int i = 0; i < batchRequests.size(); i++) {
+                        generateArchetype(batchRequests.get(i), archetypeFile, batchResults.get(i));
+                    }
+                }
+            } catch (ArchetypeException e) {
+                for (ArchetypeGenerationResult result : batchResults) {
+                    result.setCause(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Requests with the same key are generated from the same archetype file, opened once.
+     */
+    // the deprecated archetype repository is still added to the repositories resolving the archetype, so requests
+    // differing only by it may resolve different archetype files
+    @SuppressWarnings("deprecation")
+    private static String getBatchKey(ArchetypeGenerationRequest request) {
+        return request.getArchetypeGroupId()
+                + ':'
+                + request.getArchetypeArtifactId()
+                + ':'
+                + request.getArchetypeVersion()
+                + ':'
+                + request.getArchetypeRepository()
+                + ':'
+                + request.getRemoteRepositories()
+                + ':'
+                + request.getContentCacheDirectory()
+                + ':'
+                + request.isLinkCachedContent();
+    }
+
     private RemoteRepository createRepository(
             RepositorySystemSession repositorySession, String url, String repositoryId) {
 
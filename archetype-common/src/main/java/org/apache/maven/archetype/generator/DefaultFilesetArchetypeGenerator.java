@@ -24,31 +24,39 @@ import javax.inject.Singleton;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
 
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
-import groovy.lang.Binding;
-import groovy.lang.GroovyShell;
+import org.apache.maven.archetype.ArchetypeGenerationPlan;
+import org.apache.maven.archetype.ArchetypeGenerationReport;
 import org.apache.maven.archetype.ArchetypeGenerationRequest;
+import org.apache.maven.archetype.ArchetypeGenerationResult;
+import org.apache.maven.archetype.common.ArchetypeArchive;
 import org.apache.maven.archetype.common.ArchetypeArtifactManager;
+import org.apache.maven.archetype.common.ArchetypeContentCache;
 import org.apache.maven.archetype.common.ArchetypeFilesResolver;
 import org.apache.maven.archetype.common.Constants;
 import org.apache.maven.archetype.common.PomManager;
+import org.apache.maven.archetype.exception.ArchetypeException;
 import org.apache.maven.archetype.exception.ArchetypeGenerationFailure;
 import org.apache.maven.archetype.exception.ArchetypeNotConfigured;
 import org.apache.maven.archetype.exception.InvalidPackaging;
@@ -61,13 +69,11 @@ import org.apache.maven.archetype.metadata.ArchetypeDescriptor;
 import org.apache.maven.archetype.metadata.FileSet;
 import org.apache.maven.archetype.metadata.ModuleDescriptor;
 import org.apache.maven.archetype.metadata.RequiredProperty;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.context.Context;
-import org.codehaus.plexus.util.FileUtils;
-import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
-import org.codehaus.plexus.velocity.VelocityComponent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
@@ -83,36 +89,171 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
 
     private PomManager pomManager;
 
-    private VelocityComponent velocity;
+    private ArchetypeTemplateEngine templateEngine;
+
+    private TemplateCache templateCache;
+
+    private PostGenerationScripts postGenerationScripts;
+
+    private OldArchetypeConverter oldArchetypeConverter;
 
     @Inject
     public DefaultFilesetArchetypeGenerator(
             ArchetypeArtifactManager archetypeArtifactManager,
             ArchetypeFilesResolver archetypeFilesResolver,
             PomManager pomManager,
-            VelocityComponent velocity) {
+            ArchetypeTemplateEngine templateEngine,
+            TemplateCache templateCache,
+            PostGenerationScripts postGenerationScripts,
+            OldArchetypeConverter oldArchetypeConverter) {
         this.archetypeArtifactManager = archetypeArtifactManager;
         this.archetypeFilesResolver = archetypeFilesResolver;
         this.pomManager = pomManager;
-        this.velocity = velocity;
+        this.templateEngine = templateEngine;
+        this.templateCache = templateCache;
+        this.postGenerationScripts = postGenerationScripts;
+        this.oldArchetypeConverter = oldArchetypeConverter;
     }
 
-    /**
-     * Pattern used to detect tokens in a string. Tokens are any text surrounded
-     * by the delimiter <code>__</code>.
-     */
-    private static final Pattern TOKEN_PATTERN = Pattern.compile("__((?:[^_]+_)*[^_]+)__");
+    private final FilenameTokens filenameTokens = new FilenameTokens();
 
     @Override
-    @SuppressWarnings("checkstyle:MethodLength")
     public void generateArchetype(ArchetypeGenerationRequest request, File archetypeFile)
             throws UnknownArchetype, ArchetypeNotConfigured, ProjectDirectoryExists, PomFileExists, OutputFileExists,
                     ArchetypeGenerationFailure, InvalidPackaging {
-        ClassLoader old = Thread.currentThread().getContextClassLoader();
+        generateArchetype(request, archetypeFile, new ArchetypeGenerationResult());
+    }
+
+    @Override
+    public void generateArchetype(
+            ArchetypeGenerationRequest request, File archetypeFile, ArchetypeGenerationResult result)
+            throws UnknownArchetype, ArchetypeNotConfigured, ProjectDirectoryExists, PomFileExists, OutputFileExists,
+                    ArchetypeGenerationFailure, InvalidPackaging {
+        long start = System.nanoTime();
+
+        try (PreparedArchetype archetype = prepareArchetype(request, archetypeFile)) {
+            result.getReport().addTime(ArchetypeGenerationReport.Phase.DESCRIPTOR, System.nanoTime() - start);
+
+            generateArchetype(request, archetype, result);
+        } catch (IOException e) {
+            throw new ArchetypeGenerationFailure(e);
+        }
+    }
+
+    @Override
+    public void generateArchetypes(
+            List<ArchetypeGenerationRequest> requests,
+            File archetypeFile,
+            int concurrency,
+            List<ArchetypeGenerationResult> results) {
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        try (PreparedArchetype archetype = prepareArchetype(requests.get(0), archetypeFile)) {
+            long descriptorTime = System.nanoTime() - start;
+            for (ArchetypeGenerationResult result : results) {
+                result.getReport().addTime(ArchetypeGenerationReport.Phase.DESCRIPTOR, descriptorTime);
+            }
+
+            ExecutorService executor =
+                    Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, requests.size())));
+
+            try {
+                List<Future<?>> generations = new ArrayList<>(requests.size());
+
+                for (int i = 0; i < requests.size(); i++) {
+                    ArchetypeGenerationRequest request = requests.get(i);
+                    ArchetypeGenerationResult result = results.get(i);
+
+                    generations.add(executor.submit(() -> {
+                        try {
+                            generateArchetype(request, archetype, result);
+                        } catch (ArchetypeException | RuntimeException e) {
+                            // one failed project doesn't stop the others
+                            result.setCause(e);
+                        }
+                    }));
+                }
+
+                for (int i = 0; i < generations.size(); i++) {
+                    try {
+                        generations.get(i).get();
+                    } catch (ExecutionException e) {
+                        results.get(i).setCause(new ArchetypeGenerationFailure(e.getCause()));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                for (ArchetypeGenerationResult result : results) {
+                    if (result.getCause() == null) {
+                        result.setCause(new ArchetypeGenerationFailure("Interrupted while generating projects", e));
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        } catch (UnknownArchetype | IOException e) {
+            for (ArchetypeGenerationResult result : results) {
+                result.setCause(e);
+            }
+        }
+    }
+
+    /**
+     * Opens the archetype and reads its descriptor, for one or more generations.
+     */
+    private PreparedArchetype prepareArchetype(ArchetypeGenerationRequest request, File archetypeFile)
+            throws UnknownArchetype, IOException {
+        ArchetypeArchive archetypeArchive = archetypeArtifactManager.getArchetypeArchive(archetypeFile);
 
         try {
-            ArchetypeDescriptor archetypeDescriptor =
-                    archetypeArtifactManager.getFileSetArchetypeDescriptor(archetypeFile);
+            if (request.getContentCacheDirectory() != null) {
+                archetypeArchive.setContentCache(
+                        new ArchetypeContentCache(request.getContentCacheDirectory(), request.isLinkCachedContent()));
+            }
+
+            // 1.x archetypes are generated from their descriptor converted when loaded
+            boolean converted = !archetypeArchive.isFileSetArchetype() && archetypeArchive.isOldArchetype();
+
+            ArchetypeDescriptor descriptor = converted
+                    ? getConvertedArchetypeDescriptor(archetypeArchive)
+                    : getFileSetArchetypeDescriptor(archetypeArchive);
+
+            return new PreparedArchetype(
+                    archetypeArchive,
+                    descriptor,
+                    converted,
+                    templateEngine.open(templateCache.getChecksum(archetypeFile), archetypeArchive));
+        } catch (UnknownArchetype | IOException e) {
+            archetypeArchive.close();
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("checkstyle:MethodLength")
+    private void generateArchetype(
+            ArchetypeGenerationRequest request, PreparedArchetype archetype, ArchetypeGenerationResult result)
+            throws UnknownArchetype, ArchetypeNotConfigured, ProjectDirectoryExists, PomFileExists, OutputFileExists,
+                    ArchetypeGenerationFailure, InvalidPackaging {
+        ArchetypeGenerationReport report = result.getReport();
+        long start = System.nanoTime();
+
+        GenerationOutput output = new GenerationOutput(request);
+
+        try (GenerationTasks tasks = new GenerationTasks(
+                request.getParallelism(),
+                report,
+                request.isPlanOnly() ? result.getPlan() : null,
+                loadManifest(request, archetype.descriptor, output),
+                output,
+                archetype.converted ? OldArchetypeConverter.getPomEncoding() : null)) {
+            ArchetypeArchive archetypeArchive = archetype.archive;
+
+            ArchetypeDescriptor archetypeDescriptor = archetype.descriptor;
 
             if (!isArchetypeConfigured(archetypeDescriptor, request)) {
                 if (request.isInteractiveMode()) {
@@ -135,7 +276,12 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
                 throw new ArchetypeNotConfigured(exceptionMessage.toString(), missingProperties);
             }
 
-            Context context = prepareVelocityContext(request);
+            long contextStart = System.nanoTime();
+
+            Context context =
+                    archetype.converted ? prepareOldArchetypeVelocityContext(request) : prepareVelocityContext(request);
+
+            report.addTime(ArchetypeGenerationReport.Phase.CONTEXT, System.nanoTime() - contextStart);
 
             String packageName = request.getPackage();
             String artifactId = request.getArtifactId();
@@ -143,54 +289,51 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
             File basedirPom = new File(request.getOutputDirectory(), Constants.ARCHETYPE_POM);
             File pom = new File(outputDirectoryFile, Constants.ARCHETYPE_POM);
 
-            List<String> archetypeResources = archetypeArtifactManager.getFilesetArchetypeResources(archetypeFile);
-
-            ZipFile archetypeZipFile = archetypeArtifactManager.getArchetypeZipFile(archetypeFile);
-
-            ClassLoader archetypeJarLoader = archetypeArtifactManager.getArchetypeJarLoader(archetypeFile);
-
-            Thread.currentThread().setContextClassLoader(archetypeJarLoader);
+            List<String> archetypeResources = archetypeArchive.getArchetypeResources();
 
             if (archetypeDescriptor.isPartial()) {
                 LOGGER.debug("Processing partial archetype " + archetypeDescriptor.getName());
-                if (outputDirectoryFile.exists()) {
-                    if (!pom.exists()) {
+                if (output.exists(outputDirectoryFile)) {
+                    if (!output.exists(pom)) {
                         throw new PomFileExists("This is a partial archetype and the pom.xml file doesn't exist.");
                     }
 
-                    processPomWithMerge(context, pom, "");
+                    processPomWithMerge(context, pom, "", archetypeArchive, tasks);
 
                     processArchetypeTemplatesWithWarning(
                             archetypeDescriptor,
                             archetypeResources,
-                            archetypeZipFile,
+                            archetypeArchive,
                             "",
                             context,
                             packageName,
-                            outputDirectoryFile);
+                            outputDirectoryFile,
+                            tasks);
                 } else {
-                    if (basedirPom.exists()) {
-                        processPomWithMerge(context, basedirPom, "");
+                    if (output.exists(basedirPom)) {
+                        processPomWithMerge(context, basedirPom, "", archetypeArchive, tasks);
 
                         processArchetypeTemplatesWithWarning(
                                 archetypeDescriptor,
                                 archetypeResources,
-                                archetypeZipFile,
+                                archetypeArchive,
                                 "",
                                 context,
                                 packageName,
-                                new File(request.getOutputDirectory()));
+                                new File(request.getOutputDirectory()),
+                                tasks);
                     } else {
-                        processPom(context, pom, "");
+                        processPom(context, pom, "", archetypeArchive, tasks);
 
                         processArchetypeTemplates(
                                 archetypeDescriptor,
                                 archetypeResources,
-                                archetypeZipFile,
+                                archetypeArchive,
                                 "",
                                 context,
                                 packageName,
-                                outputDirectoryFile);
+                                outputDirectoryFile,
+                                tasks);
                     }
                 }
 
@@ -199,36 +342,75 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
                 }
             } else {
                 LOGGER.debug("Processing complete archetype " + archetypeDescriptor.getName());
-                if (outputDirectoryFile.exists() && pom.exists()) {
+                // an incremental generation is applied again to the project it generated
+                if (output.exists(outputDirectoryFile)
+                        && output.exists(pom)
+                        && (tasks.getManifest() == null || !tasks.getManifest().isPresent())) {
                     throw new ProjectDirectoryExists(
                             "A Maven project already exists in the directory " + outputDirectoryFile.getPath());
                 }
 
-                if (outputDirectoryFile.exists()) {
+                if (output.exists(outputDirectoryFile)) {
                     LOGGER.warn("The directory " + outputDirectoryFile.getPath() + " already exists.");
                 }
 
-                context.put("rootArtifactId", artifactId);
+                if (!archetype.converted) {
+                    context.put("rootArtifactId", artifactId);
+                }
 
                 processFilesetModule(
                         artifactId,
                         artifactId,
                         archetypeResources,
                         pom,
-                        archetypeZipFile,
+                        archetypeArchive,
                         "",
                         basedirPom,
                         outputDirectoryFile,
                         packageName,
                         archetypeDescriptor,
-                        context);
+                        context,
+                        tasks);
+            }
+
+            tasks.await();
+
+            if (tasks.isPlanOnly()) {
+                LOGGER.info("Planned " + result.getPlan().getFiles().size() + " files with "
+                        + result.getPlan().getConflicts().size() + " conflicts in dir: "
+                        + outputDirectoryFile.getAbsolutePath());
+                return;
             }
 
-            String postGenerationScript = archetypeArtifactManager.getPostGenerationScript(archetypeFile);
-            if (postGenerationScript != null) {
+            // modules are only registered once all files are generated, parent POMs having been checked when their
+            // first module was processed
+            for (Map.Entry<File, List<String>> modules : tasks.getModules().entrySet()) {
+                LOGGER.debug("Adding modules " + modules.getValue() + " to " + modules.getKey());
+
+                long modulesStart = System.nanoTime();
+
+                tasks.getOutput().addModules(pomManager, modules.getKey(), modules.getValue());
+
+                if (tasks.getManifest() != null) {
+                    tasks.getManifest().update(modules.getKey());
+                }
+
+                report.addTime(ArchetypeGenerationReport.Phase.POM, System.nanoTime() - modulesStart);
+            }
+
+            if (tasks.getManifest() != null) {
+                tasks.getManifest().write();
+            }
+
+            String postGenerationScript = archetype.getPostGenerationScript();
+            if (postGenerationScript != null && !output.isFileSystem()) {
+                LOGGER.warn("The " + Constants.ARCHETYPE_POST_GENERATION_SCRIPT
+                        + " post-generation script is not executed, the project not being generated in its output"
+                        + " directory");
+            } else if (postGenerationScript != null) {
                 LOGGER.info("Executing " + Constants.ARCHETYPE_POST_GENERATION_SCRIPT + " post-generation script");
 
-                Binding binding = new Binding();
+                Map<String, Object> variables = new LinkedHashMap<>();
 
                 final Properties archetypeGeneratorProperties = new Properties();
                 archetypeGeneratorProperties.putAll(System.getProperties());
@@ -238,13 +420,16 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
                 }
 
                 for (Map.Entry<Object, Object> entry : archetypeGeneratorProperties.entrySet()) {
-                    binding.setVariable(entry.getKey().toString(), entry.getValue());
+                    variables.put(entry.getKey().toString(), entry.getValue());
                 }
 
-                binding.setVariable("request", request);
+                variables.put("request", request);
+
+                long scriptStart = System.nanoTime();
+
+                postGenerationScripts.run(postGenerationScript, variables);
 
-                GroovyShell shell = new GroovyShell(binding);
-                shell.evaluate(postGenerationScript);
+                report.addTime(ArchetypeGenerationReport.Phase.POST_GENERATION_SCRIPT, System.nanoTime() - scriptStart);
             }
 
             // ----------------------------------------------------------------------
@@ -260,7 +445,28 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
                 | SAXException e) {
             throw new ArchetypeGenerationFailure(e);
         } finally {
-            Thread.currentThread().setContextClassLoader(old);
+            report.addTime(ArchetypeGenerationReport.Phase.GENERATION, System.nanoTime() - start);
+        }
+    }
+
+    private ArchetypeDescriptor getConvertedArchetypeDescriptor(ArchetypeArchive archetypeArchive)
+            throws UnknownArchetype, IOException {
+        ArchetypeDescriptor descriptor = oldArchetypeConverter.getDescriptor(archetypeArchive);
+
+        if (descriptor == null) {
+            throw new UnknownArchetype(
+                    "The 1.x archetype " + archetypeArchive.getFile() + " cannot be generated as a fileset archetype");
+        }
+
+        return descriptor;
+    }
+
+    private ArchetypeDescriptor getFileSetArchetypeDescriptor(ArchetypeArchive archetypeArchive)
+            throws UnknownArchetype {
+        try {
+            return archetypeArchive.getFileSetArchetypeDescriptor();
+        } catch (XmlPullParserException | IOException e) {
+            throw new UnknownArchetype(e);
         }
     }
 
@@ -269,31 +475,42 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
     }
 
     private boolean copyFile(
-            final File outFile, final String template, final boolean failIfExists, final ZipFile archetypeZipFile)
+            final File outFile,
+            final String template,
+            final boolean failIfExists,
+            final ArchetypeArchive archetypeArchive,
+            final GenerationTasks tasks)
             throws OutputFileExists, IOException {
         LOGGER.debug("Copying file " + template);
 
-        if (failIfExists && outFile.exists()) {
-            throw new OutputFileExists("Don't rewrite file " + outFile.getName());
-        } else if (outFile.exists()) {
-            LOGGER.warn("CP Don't override file " + outFile);
+        GenerationManifest manifest = tasks.getManifest();
+        GenerationOutput output = tasks.getOutput();
 
-            return false;
-        }
+        ZipEntry input = archetypeArchive.getEntry(Constants.ARCHETYPE_RESOURCES + "/" + template);
 
-        ZipEntry input = archetypeZipFile.getEntry(Constants.ARCHETYPE_RESOURCES + "/" + template);
+        if (output.exists(outFile)) {
+            GenerationManifest.State state = getState(manifest, outFile, input, GenerationManifest.NO_PROPERTIES);
+
+            if (state == GenerationManifest.State.UNKNOWN) {
+                if (failIfExists) {
+                    throw new OutputFileExists("Don't rewrite file " + outFile.getName());
+                }
+
+                LOGGER.warn("CP Don't override file " + outFile);
+            }
+
+            if (state != GenerationManifest.State.OUTDATED) {
+                return false;
+            }
+        }
 
         if (input.isDirectory()) {
-            outFile.mkdirs();
+            output.mkdirs(outFile);
         } else {
-            outFile.getParentFile().mkdirs();
-            if (!outFile.exists() && !outFile.createNewFile()) {
-                LOGGER.warn("Could not create new file \"" + outFile.getPath() + "\" or the file already exists.");
-            }
+            output.copyEntry(archetypeArchive, input.getName(), outFile);
 
-            try (InputStream inputStream = archetypeZipFile.getInputStream(input);
-                    OutputStream out = Files.newOutputStream(outFile.toPath())) {
-                IOUtil.copy(inputStream, out);
+            if (manifest != null) {
+                manifest.record(outFile, GenerationManifest.hash(input), GenerationManifest.NO_PROPERTIES);
             }
         }
 
@@ -307,18 +524,34 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
             boolean packaged,
             String packageName,
             File outputDirectoryFile,
-            ZipFile archetypeZipFile,
+            ArchetypeArchive archetypeArchive,
             String moduleOffset,
             boolean failIfExists,
-            Context context)
-            throws OutputFileExists, IOException {
+            Context context,
+            GenerationTasks tasks,
+            ArchetypeGenerationReport.Fileset fileSetReport)
+            throws OutputFileExists, ArchetypeGenerationFailure, IOException {
         int count = 0;
 
         for (String template : fileSetResources) {
             File outputFile = getOutputFile(
                     template, directory, outputDirectoryFile, packaged, packageName, moduleOffset, context);
 
-            if (copyFile(outputFile, template, failIfExists, archetypeZipFile)) {
+            if (tasks.isPlanOnly()) {
+                if (tasks.plan(
+                        outputFile,
+                        Constants.ARCHETYPE_RESOURCES + "/" + template,
+                        moduleOffset,
+                        directory,
+                        false,
+                        failIfExists)) {
+                    count++;
+                }
+            } else if (tasks.submit(
+                    fileSetReport,
+                    outputFile,
+                    failIfExists,
+                    () -> copyFile(outputFile, template, failIfExists, archetypeArchive, tasks))) {
                 count++;
             }
         }
@@ -344,16 +577,20 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
             Context context) {
         String templateName = StringUtils.replaceOnce(template, directory, "");
 
-        String outputFileName = directory + "/" + (packaged ? getPackageAsDirectory(packageName) : "") + "/"
-                + templateName.substring(moduleOffset.length());
-
-        outputFileName = replaceFilenameTokens(outputFileName, context);
+        // parts are interpolated separately, so that their interpolation plans are reused across files
+        String outputFileName = filenameTokens.replace(
+                context,
+                directory,
+                "/",
+                packaged ? getPackageAsDirectory(packageName) : "",
+                "/",
+                templateName.substring(moduleOffset.length()));
 
         return new File(outputDirectoryFile, outputFileName);
     }
 
     /**
-     * Replaces all tokens (text matching {@link #TOKEN_PATTERN}) within
+     * Replaces all tokens (text surrounded by the delimiter <code>__</code>) within
      * the given string, using properties contained within the context. If a
      * property does not exist in the context, the token is left unmodified
      * and a warning is logged.
@@ -362,32 +599,7 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
      * @param context  contains the available properties
      */
     private String replaceFilenameTokens(final String filePath, final Context context) {
-        StringBuffer interpolatedResult = new StringBuffer();
-        Matcher matcher = TOKEN_PATTERN.matcher(filePath);
-
-        while (matcher.find()) {
-            String propertyToken = matcher.group(1);
-            String contextPropertyValue = (String) context.get(propertyToken);
-            if (contextPropertyValue != null && !contextPropertyValue.trim().isEmpty()) {
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Replacing property '" + propertyToken + "' in file path '" + filePath
-                            + "' with value '" + contextPropertyValue + "'.");
-                }
-                matcher.appendReplacement(interpolatedResult, contextPropertyValue);
-            } else {
-                // Need to skip the undefined property
-                LOGGER.warn("Property '" + propertyToken + "' was not specified, so the token in '" + filePath
-                        + "' is not being replaced.");
-            }
-        }
-
-        matcher.appendTail(interpolatedResult);
-
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Final interpolated file path: '" + interpolatedResult + "'");
-        }
-
-        return interpolatedResult.toString();
+        return filenameTokens.replace(context, filePath);
     }
 
     private String getPackageInPathFormat(String aPackage) {
@@ -449,27 +661,44 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
         return context;
     }
 
+    /**
+     * Prepares the same Velocity context as {@link org.apache.maven.archetype.old.DefaultOldArchetype}, for converted
+     * 1.x archetypes.
+     */
+    private Context prepareOldArchetypeVelocityContext(ArchetypeGenerationRequest request) {
+        Context context = new VelocityContext();
+        context.put(Constants.PACKAGE, request.getPackage());
+        context.put("basedir", request.getOutputDirectory());
+        context.put("packageName", request.getPackage());
+        context.put(Constants.GROUP_ID, request.getGroupId());
+        context.put(Constants.ARTIFACT_ID, request.getArtifactId());
+        context.put(Constants.VERSION, request.getVersion());
+        return context;
+    }
+
     private boolean maybeVelocityExpression(String value) {
         return value != null && value.contains("${");
     }
 
     private String evaluateExpression(Context context, String key, String value) {
         try (StringWriter stringWriter = new StringWriter()) {
-            velocity.getEngine().evaluate(context, stringWriter, key, value);
+            templateEngine.getEngine().evaluate(context, stringWriter, key, value);
             return stringWriter.toString();
         } catch (Exception ex) {
             return value;
         }
     }
 
+    @SuppressWarnings("checkstyle:ParameterNumber")
     private void processArchetypeTemplates(
             AbstractArchetypeDescriptor archetypeDescriptor,
             List<String> archetypeResources,
-            ZipFile archetypeZipFile,
+            ArchetypeArchive archetypeArchive,
             String moduleOffset,
             Context context,
             String packageName,
-            File outputDirectoryFile)
+            File outputDirectoryFile,
+            GenerationTasks tasks)
             throws OutputFileExists, ArchetypeGenerationFailure, IOException {
         processTemplates(
                 packageName,
@@ -477,19 +706,22 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
                 context,
                 archetypeDescriptor,
                 archetypeResources,
-                archetypeZipFile,
+                archetypeArchive,
                 moduleOffset,
-                false);
+                false,
+                tasks);
     }
 
+    @SuppressWarnings("checkstyle:ParameterNumber")
     private void processArchetypeTemplatesWithWarning(
             ArchetypeDescriptor archetypeDescriptor,
             List<String> archetypeResources,
-            ZipFile archetypeZipFile,
+            ArchetypeArchive archetypeArchive,
             String moduleOffset,
             Context context,
             String packageName,
-            File outputDirectoryFile)
+            File outputDirectoryFile,
+            GenerationTasks tasks)
             throws OutputFileExists, ArchetypeGenerationFailure, IOException {
         processTemplates(
                 packageName,
@@ -497,9 +729,10 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
                 context,
                 archetypeDescriptor,
                 archetypeResources,
-                archetypeZipFile,
+                archetypeArchive,
                 moduleOffset,
-                true);
+                true,
+                tasks);
     }
 
     @SuppressWarnings("checkstyle:ParameterNumber")
@@ -512,20 +745,48 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
             File outputDirectoryFile,
             String moduleOffset,
             String archetypeEncoding,
-            boolean failIfExists)
+            boolean failIfExists,
+            ArchetypeArchive archetypeArchive,
+            GenerationTasks tasks,
+            ArchetypeGenerationReport.Fileset fileSetReport)
             throws IOException, OutputFileExists, ArchetypeGenerationFailure {
         int count = 0;
 
+        String propertiesHash = getPropertiesHash(tasks, context);
+
         for (String template : fileSetResources) {
             File outputFile = getOutputFile(
                     template, directory, outputDirectoryFile, packaged, packageName, moduleOffset, context);
 
-            if (processTemplate(
+            if (tasks.isPlanOnly()) {
+                if (tasks.plan(
+                        outputFile,
+                        Constants.ARCHETYPE_RESOURCES + "/" + template,
+                        moduleOffset,
+                        directory,
+                        true,
+                        failIfExists)) {
+                    count++;
+                }
+                continue;
+            }
+
+            // in parallel mode, templates #set their variables in their own context
+            Context templateContext = tasks.isParallel() ? new VelocityContext(context) : context;
+
+            if (tasks.submit(
+                    fileSetReport,
                     outputFile,
-                    context,
-                    Constants.ARCHETYPE_RESOURCES + "/" + template,
-                    archetypeEncoding,
-                    failIfExists)) {
+                    failIfExists,
+                    () -> processTemplate(
+                            outputFile,
+                            templateContext,
+                            Constants.ARCHETYPE_RESOURCES + "/" + template,
+                            archetypeEncoding,
+                            failIfExists,
+                            archetypeArchive,
+                            tasks,
+                            propertiesHash))) {
                 count++;
             }
         }
@@ -539,16 +800,19 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
             final String artifactId,
             final List<String> archetypeResources,
             File pom,
-            final ZipFile archetypeZipFile,
+            final ArchetypeArchive archetypeArchive,
             String moduleOffset,
             File basedirPom,
             File outputDirectoryFile,
             final String packageName,
             final AbstractArchetypeDescriptor archetypeDescriptor,
-            final Context context)
+            final Context context,
+            final GenerationTasks tasks)
             throws XmlPullParserException, IOException, ParserConfigurationException, SAXException,
                     TransformerException, OutputFileExists, ArchetypeGenerationFailure, InvalidPackaging {
-        outputDirectoryFile.mkdirs();
+        if (!tasks.isPlanOnly()) {
+            tasks.getOutput().mkdirs(outputDirectoryFile);
+        }
         LOGGER.debug("Processing module " + artifactId);
         LOGGER.debug("Processing module rootArtifactId " + rootArtifactId);
         LOGGER.debug("Processing module pom " + pom);
@@ -560,12 +824,13 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
                 StringUtils.replace(artifactId, "${rootArtifactId}", rootArtifactId),
                 archetypeResources,
                 pom,
-                archetypeZipFile,
+                archetypeArchive,
                 moduleOffset,
                 context,
                 packageName,
                 outputDirectoryFile,
-                basedirPom);
+                basedirPom,
+                tasks);
 
         String parentArtifactId = (String) context.get(Constants.PARENT_ARTIFACT_ID);
 
@@ -597,14 +862,15 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
                     moduleArtifactId,
                     archetypeResources,
                     new File(moduleOutputDirectoryFile, Constants.ARCHETYPE_POM),
-                    archetypeZipFile,
+                    archetypeArchive,
                     ((moduleOffset == null || moduleOffset.isEmpty()) ? "" : (moduleOffset + "/"))
                             + StringUtils.replace(project.getDir(), "${rootArtifactId}", rootArtifactId),
                     pom,
                     moduleOutputDirectoryFile,
                     packageName,
                     project,
-                    context);
+                    context,
+                    tasks);
         }
 
         restoreParentArtifactId(context, parentArtifactId);
@@ -618,12 +884,13 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
             final String moduleId,
             final List<String> archetypeResources,
             final File pom,
-            final ZipFile archetypeZipFile,
+            final ArchetypeArchive archetypeArchive,
             String moduleOffset,
             final Context context,
             final String packageName,
             final File outputDirectoryFile,
-            final File basedirPom)
+            final File basedirPom,
+            final GenerationTasks tasks)
             throws XmlPullParserException, IOException, ParserConfigurationException, SAXException,
                     TransformerException, OutputFileExists, ArchetypeGenerationFailure, InvalidPackaging {
         LOGGER.debug("Processing fileset project moduleId " + moduleId);
@@ -632,98 +899,235 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
         LOGGER.debug("Processing fileset project outputDirectoryFile " + outputDirectoryFile);
         LOGGER.debug("Processing fileset project basedirPom " + basedirPom);
 
-        if (basedirPom.exists()) {
-            processPomWithParent(context, pom, moduleOffset, basedirPom, moduleId);
+        if (tasks.isPlanOnly()) {
+            tasks.getPlan().addModule(moduleId, outputDirectoryFile, tasks.exists(basedirPom) ? basedirPom : null);
+        }
+
+        if (tasks.exists(basedirPom)) {
+            processPomWithParent(context, pom, moduleOffset, basedirPom, moduleId, archetypeArchive, tasks);
         } else {
-            processPom(context, pom, moduleOffset);
+            processPom(context, pom, moduleOffset, archetypeArchive, tasks);
         }
 
         processArchetypeTemplates(
                 archetypeDescriptor,
                 archetypeResources,
-                archetypeZipFile,
+                archetypeArchive,
                 moduleOffset,
                 context,
                 packageName,
-                outputDirectoryFile);
+                outputDirectoryFile,
+                tasks);
     }
 
-    private void processPom(Context context, File pom, String moduleOffset)
+    private void processPom(
+            Context context, File pom, String moduleOffset, ArchetypeArchive archetypeArchive, GenerationTasks tasks)
             throws IOException, OutputFileExists, ArchetypeGenerationFailure {
         LOGGER.debug("Processing pom " + pom);
 
-        processTemplate(
+        String template = Constants.ARCHETYPE_RESOURCES + getOffsetSeparator(moduleOffset) + Constants.ARCHETYPE_POM;
+
+        if (tasks.isPlanOnly()) {
+            tasks.plan(pom, template, moduleOffset, null, true, true);
+            return;
+        }
+
+        tasks.claim(pom, true);
+
+        long start = System.nanoTime();
+
+        boolean generated = processTemplate(
                 pom,
                 context,
-                Constants.ARCHETYPE_RESOURCES + getOffsetSeparator(moduleOffset) + Constants.ARCHETYPE_POM,
-                getEncoding(null),
-                true);
+                template,
+                getEncoding(tasks.getPomEncoding()),
+                true,
+                archetypeArchive,
+                tasks,
+                getPropertiesHash(tasks, context));
+
+        addPom(tasks, pom, start, generated);
     }
 
-    private void processPomWithMerge(Context context, File pom, String moduleOffset)
+    private void processPomWithMerge(
+            Context context, File pom, String moduleOffset, ArchetypeArchive archetypeArchive, GenerationTasks tasks)
             throws OutputFileExists, IOException, XmlPullParserException, ArchetypeGenerationFailure {
         LOGGER.debug("Processing pom " + pom + " with merge");
 
-        File temporaryPom = getTemporaryFile(pom);
+        String template = Constants.ARCHETYPE_RESOURCES + getOffsetSeparator(moduleOffset) + Constants.ARCHETYPE_POM;
 
-        processTemplate(
-                temporaryPom,
-                context,
-                Constants.ARCHETYPE_RESOURCES + getOffsetSeparator(moduleOffset) + Constants.ARCHETYPE_POM,
-                getEncoding(null),
-                true);
+        if (tasks.isPlanOnly()) {
+            tasks.getPlan().addFile(pom, template, moduleOffset, null, true, ArchetypeGenerationPlan.Action.MERGE);
+            return;
+        }
 
-        pomManager.mergePoms(pom, temporaryPom);
+        long start = System.nanoTime();
 
-        // getTemporaryFile sets deleteOnExit. Lets try to delete and then make sure deleteOnExit is
-        // still set. Windows has issues deleting files with certain JDKs.
+        // the generated pom is only rendered in memory, to be merged into the existing one
+        StringWriter generatedPom = new StringWriter();
         try {
-            FileUtils.forceDelete(temporaryPom);
-        } catch (IOException e) {
-            temporaryPom.deleteOnExit();
+            getTemplate(template, getEncoding(tasks.getPomEncoding()), archetypeArchive)
+                    .merge(context, generatedPom);
+        } catch (Exception e) {
+            throw new ArchetypeGenerationFailure("Error merging velocity templates: " + e.getMessage(), e);
         }
+
+        tasks.getOutput()
+                .mergePoms(pomManager, pom, new MavenXpp3Reader().read(new StringReader(generatedPom.toString())));
+
+        addPom(tasks, pom, start, true);
     }
 
-    private void processPomWithParent(Context context, File pom, String moduleOffset, File basedirPom, String moduleId)
-            throws XmlPullParserException, IOException, ParserConfigurationException, SAXException,
-                    TransformerException, OutputFileExists, ArchetypeGenerationFailure, InvalidPackaging {
+    private void processPomWithParent(
+            Context context,
+            File pom,
+            String moduleOffset,
+            File basedirPom,
+            String moduleId,
+            ArchetypeArchive archetypeArchive,
+            GenerationTasks tasks)
+            throws XmlPullParserException, IOException, OutputFileExists, ArchetypeGenerationFailure, InvalidPackaging {
         LOGGER.debug("Processing pom " + pom + " with parent " + basedirPom);
 
-        processTemplate(
+        String template = Constants.ARCHETYPE_RESOURCES + getOffsetSeparator(moduleOffset) + Constants.ARCHETYPE_POM;
+
+        if (tasks.isPlanOnly()) {
+            tasks.plan(pom, template, moduleOffset, null, true, true);
+            if (tasks.addModule(basedirPom, moduleId)) {
+                planModules(basedirPom, tasks);
+            }
+            return;
+        }
+
+        LOGGER.debug("Adding module " + moduleId + " once all modules are generated");
+
+        // the parent POM is rewritten once all modules are generated, but checked before generating any of them
+        if (tasks.addModule(basedirPom, moduleId)) {
+            checkPackaging(basedirPom, tasks);
+        }
+
+        tasks.claim(pom, true);
+
+        long start = System.nanoTime();
+
+        boolean generated = processTemplate(
                 pom,
                 context,
-                Constants.ARCHETYPE_RESOURCES + getOffsetSeparator(moduleOffset) + Constants.ARCHETYPE_POM,
-                getEncoding(null),
-                true);
+                template,
+                getEncoding(tasks.getPomEncoding()),
+                true,
+                archetypeArchive,
+                tasks,
+                getPropertiesHash(tasks, context));
+
+        // an up to date pom of an incremental generation already has its parent
+        if (generated) {
+            tasks.getOutput().addParent(pomManager, pom, basedirPom);
+
+            if (tasks.getManifest() != null) {
+                tasks.getManifest().update(pom);
+            }
+        }
 
-        LOGGER.debug("Adding module " + moduleId);
+        addPom(tasks, pom, start, generated);
+    }
 
-        pomManager.addModule(basedirPom, moduleId);
+    /**
+     * Plans a conflict if an existing parent POM cannot have modules.
+     */
+    private void planModules(File parentPom, GenerationTasks tasks) {
+        ArchetypeGenerationPlan plan = tasks.getPlan();
+
+        if (!tasks.getOutput().exists(parentPom)) {
+            // generated
+            return;
+        }
 
-        pomManager.addParent(pom, basedirPom);
+        try {
+            checkPackaging(parentPom, tasks);
+        } catch (InvalidPackaging e) {
+            plan.addConflict(e.getMessage() + ": " + parentPom.getAbsolutePath());
+        } catch (IOException | XmlPullParserException e) {
+            plan.addConflict("Unable to read the parent POM " + parentPom.getAbsolutePath() + ": " + e.getMessage());
+        }
     }
 
-    @SuppressWarnings("deprecation")
-    private boolean processTemplate(
-            File outFile, Context context, String templateFileName, String encoding, boolean failIfExists)
-            throws IOException, OutputFileExists, ArchetypeGenerationFailure {
+    /**
+     * Checks that a parent POM can have modules, as {@link PomManager#addModules(File, List)} would.
+     *
+     * @throws InvalidPackaging if the parent POM is not of packaging type <code>pom</code>
+     */
+    private void checkPackaging(File parentPom, GenerationTasks tasks)
+            throws IOException, XmlPullParserException, InvalidPackaging {
+        if (!"pom".equals(tasks.getOutput().readPom(pomManager, parentPom).getPackaging())) {
+            throw new InvalidPackaging(
+                    "Unable to add module to the current project as it is not of packaging type 'pom'");
+        }
+    }
+
+    private static void addPom(GenerationTasks tasks, File pom, long start, boolean written) {
+        tasks.getReport().addTime(ArchetypeGenerationReport.Phase.POM, System.nanoTime() - start);
+
+        if (written) {
+            // not on disk when written to a sink
+            tasks.getReport().addFile(tasks.getOutput().size(pom));
+        }
+    }
+
+    private String getTemplateFileName(String templateFileName, ArchetypeArchive archetypeArchive) throws IOException {
         templateFileName = templateFileName.replace(File.separatorChar, '/');
 
         String localTemplateFileName = templateFileName.replace('/', File.separatorChar);
         if (!templateFileName.equals(localTemplateFileName)
-                && !velocity.getEngine().resourceExists(templateFileName)
-                && velocity.getEngine().resourceExists(localTemplateFileName)) {
+                && archetypeArchive.getEntry(templateFileName) == null
+                && archetypeArchive.getEntry(localTemplateFileName) != null) {
             templateFileName = localTemplateFileName;
         }
 
+        return templateFileName;
+    }
+
+    private ArchetypeTemplate getTemplate(String templateFileName, String encoding, ArchetypeArchive archetypeArchive)
+            throws Exception {
+        return templateCache.getTemplate(
+                templateEngine, archetypeArchive, getTemplateFileName(templateFileName, archetypeArchive), encoding);
+    }
+
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private boolean processTemplate(
+            File outFile,
+            Context context,
+            String templateFileName,
+            String encoding,
+            boolean failIfExists,
+            ArchetypeArchive archetypeArchive,
+            GenerationTasks tasks,
+            String propertiesHash)
+            throws IOException, OutputFileExists, ArchetypeGenerationFailure {
+        templateFileName = getTemplateFileName(templateFileName, archetypeArchive);
+
         LOGGER.debug("Processing template " + templateFileName);
 
-        if (outFile.exists()) {
-            if (failIfExists) {
-                throw new OutputFileExists("Don't override file " + outFile.getAbsolutePath());
+        GenerationManifest manifest = tasks.getManifest();
+        GenerationOutput output = tasks.getOutput();
+
+        ZipEntry templateEntry = manifest == null ? null : archetypeArchive.getEntry(templateFileName);
+
+        if (output.exists(outFile)) {
+            GenerationManifest.State state = getState(manifest, outFile, templateEntry, propertiesHash);
+
+            if (state == GenerationManifest.State.OUTDATED) {
+                return regenerateTemplate(
+                        outFile, context, templateFileName, encoding, archetypeArchive, manifest, propertiesHash);
             }
 
-            LOGGER.warn("Don't override file " + outFile);
+            if (state == GenerationManifest.State.UNKNOWN) {
+                if (failIfExists) {
+                    throw new OutputFileExists("Don't override file " + outFile.getAbsolutePath());
+                }
+
+                LOGGER.warn("Don't override file " + outFile);
+            }
 
             return false;
         }
@@ -731,32 +1135,127 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
         if (templateFileName.endsWith("/")) {
             LOGGER.debug("Creating directory " + outFile);
 
-            outFile.mkdirs();
+            output.mkdirs(outFile);
 
             return true;
         }
 
-        if (!outFile.getParentFile().exists()) {
-            outFile.getParentFile().mkdirs();
-        }
+        LOGGER.debug("Merging into " + outFile);
 
-        if (!outFile.exists() && !outFile.createNewFile()) {
-            LOGGER.warn("Could not create new file \"" + outFile.getPath() + "\" or the file already exists.");
+        // merged content is written as it is rendered, without being held in memory
+        try (Writer writer = new LineSeparatorWriter(output.newWriter(outFile, encoding), System.lineSeparator())) {
+            getTemplate(templateFileName, encoding, archetypeArchive).merge(context, writer);
+        } catch (Exception e) {
+            throw new ArchetypeGenerationFailure("Error merging velocity templates: " + e.getMessage(), e);
         }
 
-        LOGGER.debug("Merging into " + outFile);
-
-        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(outFile.toPath()), encoding)) {
-            StringWriter stringWriter = new StringWriter();
+        if (manifest != null && templateEntry != null) {
+            manifest.record(outFile, GenerationManifest.hash(templateEntry), propertiesHash);
+        }
 
-            velocity.getEngine().mergeTemplate(templateFileName, encoding, context, stringWriter);
+        return true;
+    }
 
-            writer.write(StringUtils.unifyLineSeparators(stringWriter.toString()));
+    /**
+     * Renders again a file of an incremental generation whose template or properties changed, the file being only
+     * written if its content changed.
+     *
+     * @return <code>true</code> if the file was written
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private boolean regenerateTemplate(
+            File outFile,
+            Context context,
+            String templateFileName,
+            String encoding,
+            ArchetypeArchive archetypeArchive,
+            GenerationManifest manifest,
+            String propertiesHash)
+            throws IOException, ArchetypeGenerationFailure {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (Writer writer = new LineSeparatorWriter(
+                new OutputStreamWriter(content, Charset.forName(encoding)), System.lineSeparator())) {
+            getTemplate(templateFileName, encoding, archetypeArchive).merge(context, writer);
         } catch (Exception e) {
             throw new ArchetypeGenerationFailure("Error merging velocity templates: " + e.getMessage(), e);
         }
 
-        return true;
+        byte[] bytes = content.toByteArray();
+        String outputHash = GenerationManifest.hash(bytes);
+
+        boolean changed = !outputHash.equals(manifest.getPreviousOutput(outFile));
+        if (changed) {
+            LOGGER.debug("Regenerating " + outFile);
+
+            Files.write(outFile.toPath(), bytes);
+        } else {
+            LOGGER.debug("Regenerated " + outFile + " is unchanged");
+        }
+
+        manifest.record(
+                outFile,
+                GenerationManifest.hash(archetypeArchive.getEntry(templateFileName)),
+                propertiesHash,
+                outputHash);
+
+        return changed;
+    }
+
+    /**
+     * @return the state of an existing file compared to the previous incremental generation, the entry of a file which
+     *         is not generated again being kept
+     */
+    private static GenerationManifest.State getState(
+            GenerationManifest manifest, File outFile, ZipEntry template, String propertiesHash) throws IOException {
+        if (manifest == null || template == null || template.isDirectory()) {
+            return GenerationManifest.State.UNKNOWN;
+        }
+
+        GenerationManifest.State state = manifest.check(outFile, GenerationManifest.hash(template), propertiesHash);
+
+        if (state == GenerationManifest.State.UP_TO_DATE) {
+            LOGGER.debug("Up to date " + outFile);
+
+            manifest.keep(outFile);
+        } else if (state == GenerationManifest.State.MODIFIED) {
+            LOGGER.warn("Don't override file " + outFile + ", modified since it was generated");
+
+            manifest.keep(outFile);
+        }
+
+        return state;
+    }
+
+    private static String getPropertiesHash(GenerationTasks tasks, Context context) {
+        return tasks.getManifest() == null ? null : GenerationManifest.hash(context);
+    }
+
+    /**
+     * @return the manifest of an incremental generation, or <code>null</code>
+     */
+    private static GenerationManifest loadManifest(
+            ArchetypeGenerationRequest request, ArchetypeDescriptor descriptor, GenerationOutput output)
+            throws IOException {
+        if (!request.isIncremental() || request.isPlanOnly()) {
+            return null;
+        }
+
+        if (!output.isFileSystem()) {
+            LOGGER.warn("Incremental generation is ignored, the project not being generated in its output directory");
+            return null;
+        }
+
+        File outputDirectory = new File(request.getOutputDirectory());
+        File projectDirectory = new File(outputDirectory, request.getArtifactId());
+
+        // a partial archetype without project directory is generated in the output directory
+        if (descriptor.isPartial()
+                && !projectDirectory.exists()
+                && new File(outputDirectory, Constants.ARCHETYPE_POM).exists()) {
+            return GenerationManifest.load(outputDirectory);
+        }
+
+        return GenerationManifest.load(projectDirectory);
     }
 
     @SuppressWarnings("checkstyle:ParameterNumber")
@@ -766,9 +1265,10 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
             Context context,
             AbstractArchetypeDescriptor archetypeDescriptor,
             List<String> archetypeResources,
-            ZipFile archetypeZipFile,
+            ArchetypeArchive archetypeArchive,
             String moduleOffset,
-            boolean failIfExists)
+            boolean failIfExists,
+            GenerationTasks tasks)
             throws OutputFileExists, ArchetypeGenerationFailure, IOException {
         Iterator<FileSet> iterator = archetypeDescriptor.getFileSets().iterator();
         if (iterator.hasNext()) {
@@ -780,31 +1280,50 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
             FileSet fileSet = iterator.next();
             count++;
 
+            boolean included = true;
             final String includeCondition = fileSet.getIncludeCondition();
             if (includeCondition != null && !includeCondition.isEmpty()) {
                 final String evaluatedCondition = evaluateExpression(context, "includeCondition", includeCondition);
-                if (!Boolean.parseBoolean(evaluatedCondition)) {
+                included = Boolean.parseBoolean(evaluatedCondition);
+                if (!included) {
                     LOGGER.debug(String.format(
                             "Skipping fileset %s due to includeCondition: %s being: %s",
                             fileSet, includeCondition, evaluatedCondition));
-                    continue;
                 }
             }
 
-            List<String> fileSetResources =
-                    archetypeFilesResolver.filterFiles(moduleOffset, fileSet, archetypeResources);
+            if (tasks.isPlanOnly()) {
+                tasks.getPlan()
+                        .addFileset(
+                                moduleOffset, fileSet.getDirectory(), fileSet.isFiltered(), includeCondition, included);
+            }
+
+            if (!included) {
+                continue;
+            }
+
+            List<String> fileSetResources = archetypeFilesResolver.filterFiles(
+                    moduleOffset, fileSet, archetypeArchive.getArchetypeResourcesIndex());
+
+            // scheduled files must not see the changes made to the context while processing the next modules
+            Context fileSetContext = tasks.isParallel() ? copyContext(context) : context;
+
+            ArchetypeGenerationReport.Fileset fileSetReport =
+                    tasks.getReport().addFileset(moduleOffset, fileSet.getDirectory(), fileSet.isFiltered());
 
             // This creates an empty directory, even if there is no file to process
             // Fix for ARCHETYPE-57
-            getOutputFile(
-                            moduleOffset,
-                            fileSet.getDirectory(),
-                            outputDirectoryFile,
-                            fileSet.isPackaged(),
-                            packageName,
-                            moduleOffset,
-                            context)
-                    .mkdirs();
+            if (!tasks.isPlanOnly()) {
+                tasks.getOutput()
+                        .mkdirs(getOutputFile(
+                                moduleOffset,
+                                fileSet.getDirectory(),
+                                outputDirectoryFile,
+                                fileSet.isPackaged(),
+                                packageName,
+                                moduleOffset,
+                                context));
+            }
 
             if (fileSet.isFiltered()) {
                 LOGGER.debug("    Processing fileset " + fileSet + " -> " + fileSetResources.size() + ":\n      "
@@ -815,11 +1334,14 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
                         fileSetResources,
                         fileSet.isPackaged(),
                         packageName,
-                        context,
+                        fileSetContext,
                         outputDirectoryFile,
                         moduleOffset,
                         getEncoding(fileSet.getEncoding()),
-                        failIfExists);
+                        failIfExists,
+                        archetypeArchive,
+                        tasks,
+                        fileSetReport);
 
                 LOGGER.debug("    Processed " + processed + " files.");
             } else {
@@ -832,10 +1354,12 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
                         fileSet.isPackaged(),
                         packageName,
                         outputDirectoryFile,
-                        archetypeZipFile,
+                        archetypeArchive,
                         moduleOffset,
                         failIfExists,
-                        context);
+                        fileSetContext,
+                        tasks,
+                        fileSetReport);
 
                 LOGGER.debug("    Copied " + copied + " files.");
             }
@@ -844,6 +1368,16 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
         LOGGER.debug("Processed " + count + " filesets");
     }
 
+    private Context copyContext(Context context) {
+        Context copy = new VelocityContext();
+
+        for (String key : context.getKeys()) {
+            copy.put(key, context.get(key));
+        }
+
+        return copy;
+    }
+
     private void restoreParentArtifactId(Context context, String parentArtifactId) {
         if (parentArtifactId == null || parentArtifactId.isEmpty()) {
             context.remove(Constants.PARENT_ARTIFACT_ID);
@@ -852,11 +1386,58 @@ public class DefaultFilesetArchetypeGenerator implements FilesetArchetypeGenerat
         }
     }
 
-    private File getTemporaryFile(File file) {
-        File tmp = FileUtils.createTempFile(file.getName(), Constants.TMP, file.getParentFile());
+    /**
+     * An opened archetype, shared by the generations of a batch: the jar, descriptor and post-generation script are
+     * read once, and the jar templates are available to the template engine until it is closed.
+     */
+    private static class PreparedArchetype implements Closeable {
+        private final ArchetypeArchive archive;
+
+        private final ArchetypeDescriptor descriptor;
+
+        /**
+         * Whether the archetype is a 1.x archetype, whose descriptor was converted.
+         */
+        private final boolean converted;
 
-        tmp.deleteOnExit();
+        private final Closeable templates;
+
+        private boolean scriptRead;
+
+        private String script;
+
+        PreparedArchetype(
+                ArchetypeArchive archive, ArchetypeDescriptor descriptor, boolean converted, Closeable templates) {
+            this.archive = archive;
+            this.descriptor = descriptor;
+            this.converted = converted;
+            this.templates = templates;
+        }
 
-        return tmp;
+        /**
+         * @return the post-generation script, or <code>null</code> if the archetype has none
+         */
+        synchronized String getPostGenerationScript() throws IOException {
+            if (converted) {
+                // not supported by 1.x archetypes
+                return null;
+            }
+
+            if (!scriptRead) {
+                script = archive.getPostGenerationScript();
+                scriptRead = true;
+            }
+
+            return script;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                templates.close();
+            } finally {
+                archive.close();
+            }
+        }
     }
 }
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.velocity.context.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replaces <code>__property__</code> tokens in generated file paths.
+ * <p>
+ * Paths are given in parts (fileset directory, package directory, resource name...), each part being compiled once
+ * into literals and property references: producing a path is then a concatenation. Parts which could combine into
+ * tokens, and property values the regular expression replacement would interpret, go through the regular expression
+ * instead, so the result is always the same as {@link Matcher#appendReplacement(StringBuffer, String)} on the whole
+ * path.
+ */
+class FilenameTokens {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FilenameTokens.class);
+
+    /**
+     * Pattern used to detect tokens in a string. Tokens are any text surrounded
+     * by the delimiter <code>__</code>.
+     */
+    static final Pattern TOKEN_PATTERN = Pattern.compile("__((?:[^_]+_)*[^_]+)__");
+
+    private static final String DELIMITER = "__";
+
+    private static final int MAX_PLANS = 16 * 1024;
+
+    private final Map<String, Plan> plans = new ConcurrentHashMap<>();
+
+    /**
+     * Replaces all tokens within the given path, using properties contained within the context. If a property does
+     * not exist in the context, the token is left unmodified and a warning is logged.
+     *
+     * @param context contains the available properties
+     * @param parts the parts of the file name and path to be interpolated
+     */
+    String replace(Context context, String... parts) {
+        String result = replaceWithPlans(context, parts);
+
+        if (result == null) {
+            result = replaceWithPattern(String.join("", parts), context);
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Final interpolated file path: '" + result + "'");
+        }
+
+        return result;
+    }
+
+    private String replaceWithPlans(Context context, String... parts) {
+        Plan[] partPlans = new Plan[parts.length];
+
+        for (int i = 0; i < parts.length; i++) {
+            partPlans[i] = getPlan(parts[i]);
+
+            if (partPlans[i].dangling) {
+                return null;
+            }
+        }
+
+        for (Plan plan : partPlans) {
+            for (String propertyToken : plan.properties) {
+                Object value = context.get(propertyToken);
+                if (value instanceof String
+                        && (((String) value).indexOf('$') >= 0 || ((String) value).indexOf('\\') >= 0)) {
+                    // special characters of Matcher.appendReplacement
+                    return null;
+                }
+            }
+        }
+
+        StringBuilder interpolatedResult = new StringBuilder();
+
+        for (Plan plan : partPlans) {
+            for (int i = 0; i < plan.properties.length; i++) {
+                interpolatedResult.append(plan.literals[i]);
+
+                String propertyToken = plan.properties[i];
+                String contextPropertyValue = (String) context.get(propertyToken);
+                if (contextPropertyValue != null && !contextPropertyValue.trim().isEmpty()) {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Replacing property '" + propertyToken + "' in file path '"
+                                + String.join("", parts) + "' with value '" + contextPropertyValue + "'.");
+                    }
+                    interpolatedResult.append(contextPropertyValue);
+                } else {
+                    // Need to skip the undefined property
+                    LOGGER.warn("Property '" + propertyToken + "' was not specified, so the token in '"
+                            + String.join("", parts) + "' is not being replaced.");
+                    interpolatedResult.append(DELIMITER).append(propertyToken).append(DELIMITER);
+                }
+            }
+
+            interpolatedResult.append(plan.literals[plan.properties.length]);
+        }
+
+        return interpolatedResult.toString();
+    }
+
+    private static String replaceWithPattern(String filePath, Context context) {
+        StringBuffer interpolatedResult = new StringBuffer();
+        Matcher matcher = TOKEN_PATTERN.matcher(filePath);
+
+        while (matcher.find()) {
+            String propertyToken = matcher.group(1);
+            String contextPropertyValue = (String) context.get(propertyToken);
+            if (contextPropertyValue != null && !contextPropertyValue.trim().isEmpty()) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Replacing property '" + propertyToken + "' in file path '" + filePath
+                            + "' with value '" + contextPropertyValue + "'.");
+                }
+                matcher.appendReplacement(interpolatedResult, contextPropertyValue);
+            } else {
+                // Need to skip the undefined property
+                LOGGER.warn("Property '" + propertyToken + "' was not specified, so the token in '" + filePath
+                        + "' is not being replaced.");
+            }
+        }
+
+        matcher.appendTail(interpolatedResult);
+
+        return interpolatedResult.toString();
+    }
+
+    private Plan getPlan(String part) {
+        Plan plan = plans.get(part);
+
+        if (plan == null) {
+            if (plans.size() >= MAX_PLANS) {
+                // plans are cheap to compile again: no need for a finer eviction
+                plans.clear();
+            }
+
+            plan = new Plan(part);
+            plans.put(part, plan);
+        }
+
+        return plan;
+    }
+
+    /**
+     * A path part, split into literals and the properties between them.
+     */
+    private static class Plan {
+        private final String[] literals;
+
+        private final String[] properties;
+
+        /**
+         * Whether a literal contains a token delimiter, which could make a token with another part.
+         */
+        private final boolean dangling;
+
+        Plan(String part) {
+            List<String> literalList = new ArrayList<>();
+            List<String> propertyList = new ArrayList<>();
+
+            Matcher matcher = TOKEN_PATTERN.matcher(part);
+            int start = 0;
+            while (matcher.find()) {
+                literalList.add(part.substring(start, matcher.start()));
+                propertyList.add(matcher.group(1));
+                start = matcher.end();
+            }
+            literalList.add(part.substring(start));
+
+            boolean delimiterInLiteral = false;
+            for (String literal : literalList) {
+                delimiterInLiteral |= literal.contains(DELIMITER);
+            }
+
+            this.literals = literalList.toArray(new String[0]);
+            this.properties = propertyList.toArray(new String[0]);
+            // an underscore at the edge of the part could also make a delimiter with the next or previous part
+            this.dangling =
+                    delimiterInLiteral || literals[0].startsWith("_") || literals[literals.length - 1].endsWith("_");
+        }
+    }
+}
@@ -19,8 +19,10 @@
 package org.apache.maven.archetype.generator;
 
 import java.io.File;
+import java.util.List;
 
 import org.apache.maven.archetype.ArchetypeGenerationRequest;
+import org.apache.maven.archetype.ArchetypeGenerationResult;
 import org.apache.maven.archetype.exception.ArchetypeGenerationFailure;
 import org.apache.maven.archetype.exception.ArchetypeNotConfigured;
 import org.apache.maven.archetype.exception.InvalidPackaging;
@@ -44,4 +46,32 @@ public interface FilesetArchetypeGenerator {
     void generateArchetype(ArchetypeGenerationRequest request, File archetypeFile)
             throws UnknownArchetype, ArchetypeNotConfigured, ProjectDirectoryExists, PomFileExists, OutputFileExists,
                     ArchetypeGenerationFailure, InvalidPackaging;
+
+    /**
+     * Generate a project from an archetype file, or only plan its generation, recording where the time went. Failures
+     * are thrown, not set in the result.
+     *
+     * @param request the generation request
+     * @param archetypeFile the archetype file
+     * @param result the result whose report, and plan for a plan-only request, are filled
+     * @since 3.4.2
+     */
+    void generateArchetype(ArchetypeGenerationRequest request, File archetypeFile, ArchetypeGenerationResult result)
+            throws UnknownArchetype, ArchetypeNotConfigured, ProjectDirectoryExists, PomFileExists, OutputFileExists,
+                    ArchetypeGenerationFailure, InvalidPackaging;
+
+    /**
+     * Generate projects from an archetype file, which is opened once for all of them.
+     *
+     * @param requests the generation requests, all for the given archetype and with the same content cache settings
+     * @param archetypeFile the archetype file
+     * @param concurrency the maximum number of projects generated at the same time
+     * @param results the results to fill, one for each request in the same order
+     * @since 3.4.2
+     */
+    void generateArchetypes(
+            List<ArchetypeGenerationRequest> requests,
+            File archetypeFile,
+            int concurrency,
+            List<ArchetypeGenerationResult> results);
 }
@@ -0,0 +1,320 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+
+import org.apache.velocity.context.Context;
+
+/**
+ * Manifest of the files of an incremental generation, written in the generated project as {@value #FILE_NAME}: for
+ * each generated file, the hashes of its template, of the properties it was rendered with and of its content.
+ * <p>
+ * Generating again with the manifest only renders the files whose template or properties changed, and never overrides
+ * a file modified since it was generated. Files may be recorded concurrently.
+ */
+class GenerationManifest {
+    static final String FILE_NAME = ".archetype-manifest.properties";
+
+    /**
+     * Properties hash of copied files, which don't depend on the properties.
+     */
+    static final String NO_PROPERTIES = "-";
+
+    /**
+     * The state of an existing file, compared to the previous generation.
+     */
+    enum State {
+        /**
+         * The file wasn't generated by the previous generation.
+         */
+        UNKNOWN,
+
+        /**
+         * The file was modified since it was generated.
+         */
+        MODIFIED,
+
+        /**
+         * The file is generated from the same template and properties: it doesn't need to be generated again.
+         */
+        UP_TO_DATE,
+
+        /**
+         * The file template or properties changed: it needs to be generated again.
+         */
+        OUTDATED
+    }
+
+    private final File directory;
+
+    private final File file;
+
+    private final Map<String, Entry> previous;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private GenerationManifest(File directory, Map<String, Entry> previous) {
+        this.directory = directory;
+        this.file = new File(directory, FILE_NAME);
+        this.previous = previous;
+    }
+
+    /**
+     * @param directory the directory of the generated project, where the manifest is read and written
+     * @return the manifest, holding the files of the previous generation if any
+     * @throws IOException if the existing manifest cannot be read
+     */
+    static GenerationManifest load(File directory) throws IOException {
+        Map<String, Entry> previous = new TreeMap<>();
+
+        File file = new File(directory, FILE_NAME);
+        if (file.isFile()) {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+
+            for (String path : properties.stringPropertyNames()) {
+                String[] hashes = properties.getProperty(path).split(",");
+                if (hashes.length == 3) {
+                    previous.put(path, new Entry(hashes[0], hashes[1], hashes[2]));
+                }
+            }
+        }
+
+        return new GenerationManifest(directory, previous);
+    }
+
+    /**
+     * @return <code>true</code> if a previous generation wrote a manifest
+     */
+    boolean isPresent() {
+        return file.isFile();
+    }
+
+    /**
+     * @param output an existing file
+     * @param templateHash the hash of the template generating the file
+     * @param propertiesHash the hash of the properties the file would be rendered with
+     * @return the state of the file, compared to the previous generation
+     * @throws IOException if the file cannot be read
+     */
+    State check(File output, String templateHash, String propertiesHash) throws IOException {
+        Entry entry = previous.get(getPath(output));
+
+        if (entry == null) {
+            return State.UNKNOWN;
+        }
+
+        if (!entry.output.equals(hash(output))) {
+            return State.MODIFIED;
+        }
+
+        return entry.template.equals(templateHash) && entry.properties.equals(propertiesHash)
+                ? State.UP_TO_DATE
+                : State.OUTDATED;
+    }
+
+    /**
+     * @return the content hash of the file in the previous generation, or <code>null</code> if it wasn't generated
+     */
+    String getPreviousOutput(File output) {
+        Entry entry = previous.get(getPath(output));
+
+        return entry == null ? null : entry.output;
+    }
+
+    /**
+     * Keeps the entry of a file of the previous generation, which is not generated again.
+     */
+    void keep(File output) {
+        String path = getPath(output);
+        Entry entry = previous.get(path);
+
+        if (entry != null) {
+            entries.put(path, entry);
+        }
+    }
+
+    /**
+     * Records a generated file, whose content hash is computed.
+     *
+     * @throws IOException if the file cannot be read
+     */
+    void record(File output, String templateHash, String propertiesHash) throws IOException {
+        record(output, templateHash, propertiesHash, hash(output));
+    }
+
+    void record(File output, String templateHash, String propertiesHash, String outputHash) {
+        entries.put(getPath(output), new Entry(templateHash, propertiesHash, outputHash));
+    }
+
+    /**
+     * Updates the content hash of a recorded file, modified after its generation like a POM getting its parent.
+     *
+     * @throws IOException if the file cannot be read
+     */
+    void update(File output) throws IOException {
+        String path = getPath(output);
+        Entry entry = entries.get(path);
+
+        if (entry != null) {
+            entries.put(path, new Entry(entry.template, entry.properties, hash(output)));
+        }
+    }
+
+    /**
+     * Writes the files recorded by this generation, replacing the previous manifest.
+     *
+     * @throws IOException if the manifest cannot be written
+     */
+    void write() throws IOException {
+        directory.mkdirs();
+
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("# Files generated from the archetype: template, properties and content hashes\n");
+
+            for (Map.Entry<String, Entry> entry : new TreeMap<>(entries).entrySet()) {
+                writer.write(escape(entry.getKey()));
+                writer.write('=');
+                writer.write(entry.getValue().template);
+                writer.write(',');
+                writer.write(entry.getValue().properties);
+                writer.write(',');
+                writer.write(entry.getValue().output);
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * @return the hash of a template, from its archive entry
+     */
+    static String hash(ZipEntry template) {
+        return Long.toHexString(template.getCrc()) + '-' + Long.toHexString(template.getSize());
+    }
+
+    /**
+     * @return the hash of the properties of a context, whose keys are sorted
+     */
+    static String hash(Context context) {
+        Object[] keys = context.getKeys();
+        Arrays.sort(keys);
+
+        StringBuilder properties = new StringBuilder();
+        for (Object key : keys) {
+            properties
+                    .append(key)
+                    .append('=')
+                    .append(context.get(key.toString()))
+                    .append('\n');
+        }
+
+        return hash(properties.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String hash(byte[] content) {
+        MessageDigest digest = newDigest();
+        return toHex(digest.digest(content));
+    }
+
+    static String hash(File output) throws IOException {
+        MessageDigest digest = newDigest();
+
+        try (InputStream in = new DigestInputStream(Files.newInputStream(output.toPath()), digest)) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+                // digest only
+            }
+        }
+
+        return toHex(digest.digest());
+    }
+
+    private String getPath(File output) {
+        return directory.toPath().relativize(output.toPath()).toString().replace(File.separatorChar, '/');
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Escapes a path as a properties key.
+     */
+    private static String escape(String path) {
+        StringBuilder escaped = new StringBuilder();
+
+        for (char c : path.toCharArray()) {
+            if (c == '\\' || c == '=' || c == ':' || c == '#' || c == '!' || c == ' ') {
+                escaped.append('\\');
+            }
+            if (c < 0x20 || c > 0x7e) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+
+        return escaped.toString();
+    }
+
+    private static class Entry {
+        private final String template;
+
+        private final String properties;
+
+        private final String output;
+
+        Entry(String template, String properties, String output) {
+            this.template = template;
+            this.properties = properties;
+            this.output = output;
+        }
+    }
+}
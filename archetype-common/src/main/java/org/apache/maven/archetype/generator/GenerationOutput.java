@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerException;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.archetype.ArchetypeGenerationRequest;
+import org.apache.maven.archetype.common.ArchetypeArchive;
+import org.apache.maven.archetype.common.PomManager;
+import org.apache.maven.archetype.exception.InvalidPackaging;
+import org.apache.maven.archetype.old.ArchetypeTemplateProcessingException;
+import org.apache.maven.archetype.output.FileSystemSink;
+import org.apache.maven.archetype.output.OutputSink;
+import org.apache.maven.model.Model;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.xml.sax.SAXException;
+
+/**
+ * Where the files of one fileset archetype generation are written. The generator locates files under the output
+ * directory of the request, which this class maps to the paths of the {@link OutputSink} of the request.
+ * <p>
+ * Without sink, or with a {@link FileSystemSink} of the output directory, files are written directly: the content
+ * cache can link copied files, and the POMs are updated in place.
+ */
+class GenerationOutput {
+    private final Path directory;
+
+    private final OutputSink sink;
+
+    /**
+     * Sizes of the files written to a sink which is not the file system.
+     */
+    private final Map<File, Long> sizes = new ConcurrentHashMap<>();
+
+    GenerationOutput(ArchetypeGenerationRequest request) {
+        this.directory =
+                new File(request.getOutputDirectory()).toPath().toAbsolutePath().normalize();
+
+        OutputSink outputSink = request.getOutputSink();
+        if (outputSink instanceof FileSystemSink
+                && ((FileSystemSink) outputSink)
+                        .getDirectory()
+                        .toPath()
+                        .toAbsolutePath()
+                        .normalize()
+                        .equals(directory)) {
+            outputSink = null;
+        }
+        this.sink = outputSink;
+    }
+
+    /**
+     * @return <code>true</code> if the files are written where the generator locates them
+     */
+    boolean isFileSystem() {
+        return sink == null;
+    }
+
+    boolean exists(File file) {
+        return sink == null ? file.exists() : sink.exists(getPath(file));
+    }
+
+    void mkdirs(File file) throws IOException {
+        if (sink == null) {
+            file.mkdirs();
+        } else {
+            sink.createDirectories(getPath(file));
+        }
+    }
+
+    /**
+     * @return a buffered writer of the file, replacing characters which cannot be encoded with the charset
+     *         replacement, as <code>OutputStreamWriter</code> does
+     */
+    Writer newWriter(File file, String encoding) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(newOutputStream(file), Charset.forName(encoding)));
+    }
+
+    OutputStream newOutputStream(File file) throws IOException {
+        if (sink == null) {
+            file.getParentFile().mkdirs();
+
+            return Files.newOutputStream(file.toPath());
+        }
+
+        return new FilterOutputStream(sink.newOutputStream(getPath(file))) {
+            private long size;
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                size++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                size += len;
+            }
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                sizes.put(file, size);
+            }
+        };
+    }
+
+    /**
+     * Copies an archive entry to a file, through the content cache of the archive when written directly.
+     */
+    void copyEntry(ArchetypeArchive archive, String name, File file) throws IOException {
+        if (sink == null) {
+            file.getParentFile().mkdirs();
+
+            archive.copyEntry(name, file.toPath());
+            return;
+        }
+
+        try (InputStream in = archive.getInputStream(name);
+                OutputStream out = newOutputStream(file)) {
+            if (in == null) {
+                throw new IOException("The " + name + " entry does not exist in " + archive.getFile() + ".");
+            }
+
+            IOUtil.copy(in, out);
+        }
+    }
+
+    /**
+     * @return the size of a written file, or <code>-1</code> if it wasn't written
+     */
+    long size(File file) {
+        if (sink == null) {
+            return file.isFile() ? file.length() : -1;
+        }
+
+        return sizes.getOrDefault(file, -1L);
+    }
+
+    Model readPom(PomManager pomManager, File pom) throws IOException, XmlPullParserException {
+        if (sink == null) {
+            return pomManager.readPom(pom);
+        }
+
+        try (InputStream in = sink.newInputStream(getPath(pom))) {
+            return pomManager.readPom(in);
+        }
+    }
+
+    void addModules(PomManager pomManager, File pom, List<String> artifactIds)
+            throws IOException, ParserConfigurationException, TransformerException, SAXException, InvalidPackaging,
+                    ArchetypeTemplateProcessingException {
+        if (sink == null) {
+            pomManager.addModules(pom, artifactIds);
+        } else {
+            write(pom, pomManager.addModules(read(pom), artifactIds));
+        }
+    }
+
+    void addParent(PomManager pomManager, File pom, File parentPom) throws IOException, XmlPullParserException {
+        if (sink == null) {
+            pomManager.addParent(pom, parentPom);
+        } else {
+            write(pom, pomManager.addParent(read(pom), read(parentPom)));
+        }
+    }
+
+    void mergePoms(PomManager pomManager, File pom, Model generatedModel) throws IOException, XmlPullParserException {
+        if (sink == null) {
+            pomManager.mergePoms(pom, generatedModel);
+        } else {
+            write(pom, pomManager.mergePoms(read(pom), generatedModel));
+        }
+    }
+
+    private byte[] read(File file) throws IOException {
+        try (InputStream in = sink.newInputStream(getPath(file))) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            IOUtil.copy(in, content);
+            return content.toByteArray();
+        }
+    }
+
+    /**
+     * Writes a file if its content changed, <code>null</code> content meaning unchanged.
+     */
+    private void write(File file, byte[] content) throws IOException {
+        if (content != null) {
+            try (OutputStream out = newOutputStream(file)) {
+                out.write(content);
+            }
+        }
+    }
+
+    private String getPath(File file) {
+        return directory
+                .relativize(file.toPath().toAbsolutePath().normalize())
+                .toString()
+                .replace(File.separatorChar, '/');
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.maven.archetype.ArchetypeGenerationPlan;
+import org.apache.maven.archetype.ArchetypeGenerationReport;
+import org.apache.maven.archetype.exception.ArchetypeGenerationFailure;
+import org.apache.maven.archetype.exception.OutputFileExists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the file tasks of one fileset archetype generation: on the calling thread when generation is sequential,
+ * or on a dedicated pool when generation is parallel.
+ * <p>
+ * Only the rendering and copying of fileset files is delegated to tasks: modules, POMs and the Velocity context are
+ * still processed on the calling thread, in descriptor order. Each output file is claimed on the calling thread before
+ * its task is scheduled, so that the first fileset generating a file wins, as when generation is sequential.
+ * <p>
+ * Modules are registered in their parent POM once all of them are generated, so that each parent POM is rewritten
+ * once whatever its number of modules.
+ */
+class GenerationTasks implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GenerationTasks.class);
+
+    /**
+     * Generates a single file.
+     */
+    interface Task {
+        /**
+         * @return <code>true</code> if the file was generated, <code>false</code> if an existing file was kept
+         */
+        boolean run() throws IOException, OutputFileExists, ArchetypeGenerationFailure;
+    }
+
+    private final ForkJoinPool pool;
+
+    private final ArchetypeGenerationReport report;
+
+    private final ArchetypeGenerationPlan plan;
+
+    private final GenerationManifest manifest;
+
+    private final GenerationOutput output;
+
+    private final String pomEncoding;
+
+    private final List<Future<Boolean>> pending = new ArrayList<>();
+
+    private final Map<File, List<String>> modules = new LinkedHashMap<>();
+
+    private final Set<File> claimed = new HashSet<>();
+
+    /**
+     * @param parallelism the number of threads generating files
+     * @param report the report of the generation
+     * @param plan the plan to fill instead of generating files, or <code>null</code> to generate them
+     * @param manifest the manifest of an incremental generation, or <code>null</code>
+     * @param output where the files are written
+     * @param pomEncoding the encoding of the POM templates
+     */
+    GenerationTasks(
+            int parallelism,
+            ArchetypeGenerationReport report,
+            ArchetypeGenerationPlan plan,
+            GenerationManifest manifest,
+            GenerationOutput output,
+            String pomEncoding) {
+        this.pool = parallelism > 1 && plan == null ? new ForkJoinPool(parallelism) : null;
+        this.report = report;
+        this.plan = plan;
+        this.manifest = manifest;
+        this.output = output;
+        this.pomEncoding = pomEncoding;
+    }
+
+    /**
+     * @return the report of the generation
+     */
+    ArchetypeGenerationReport getReport() {
+        return report;
+    }
+
+    /**
+     * @return the encoding of the POM templates
+     */
+    String getPomEncoding() {
+        return pomEncoding;
+    }
+
+    /**
+     * Records a module to register in its parent POM.
+     *
+     * @param parentPom the parent POM
+     * @param moduleId the module directory
+     * @return <code>true</code> if it is the first module of the parent POM
+     */
+    boolean addModule(File parentPom, String moduleId) {
+        List<String> parentModules = modules.computeIfAbsent(parentPom, pom -> new ArrayList<>());
+        parentModules.add(moduleId);
+        return parentModules.size() == 1;
+    }
+
+    /**
+     * @return the modules to register by parent POM, in generation order
+     */
+    Map<File, List<String>> getModules() {
+        return modules;
+    }
+
+    /**
+     * @return the manifest of an incremental generation, or <code>null</code>
+     */
+    GenerationManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * @return where the files are written
+     */
+    GenerationOutput getOutput() {
+        return output;
+    }
+
+    boolean isPlanOnly() {
+        return plan != null;
+    }
+
+    /**
+     * @return the plan to fill, or <code>null</code> if files are generated
+     */
+    ArchetypeGenerationPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Plans the generation of a file, which fails if the file already exists and <code>failIfExists</code> is set.
+     *
+     * @return <code>true</code> if the file would be written
+     */
+    boolean plan(
+            File outputFile, String template, String module, String directory, boolean filtered, boolean failIfExists) {
+        ArchetypeGenerationPlan.Action action;
+        if (!exists(outputFile)) {
+            action = ArchetypeGenerationPlan.Action.WRITE;
+        } else if (failIfExists) {
+            action = ArchetypeGenerationPlan.Action.CONFLICT;
+        } else {
+            action = ArchetypeGenerationPlan.Action.KEEP;
+        }
+
+        plan.addFile(outputFile, template, module, directory, filtered, action);
+
+        return action == ArchetypeGenerationPlan.Action.WRITE;
+    }
+
+    /**
+     * @return <code>true</code> if the file exists, or would have been written when planning
+     */
+    boolean exists(File file) {
+        return output.exists(file) || (plan != null && plan.isWritten(file));
+    }
+
+    boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Runs the task now if generation is sequential, or schedules it.
+     *
+     * @return the task result if it was run, <code>true</code> if it was scheduled
+     */
+    boolean submit(Task task) throws IOException, OutputFileExists, ArchetypeGenerationFailure {
+        if (pool == null) {
+            return task.run();
+        }
+
+        pending.add(pool.submit(task::run));
+
+        return true;
+    }
+
+    /**
+     * Claims an output file for the generation, on the calling thread: a file already claimed by an earlier task is
+     * not overridden, as it would already exist when generation is sequential.
+     *
+     * @return <code>true</code> if the file was claimed, <code>false</code> if it already was
+     * @throws OutputFileExists if the file already was claimed and <code>failIfExists</code> is set
+     */
+    boolean claim(File outputFile, boolean failIfExists) throws OutputFileExists {
+        if (claimed.add(outputFile.toPath().toAbsolutePath().normalize().toFile())) {
+            return true;
+        }
+
+        if (failIfExists) {
+            throw new OutputFileExists("Don't override file " + outputFile.getAbsolutePath());
+        }
+
+        LOGGER.warn("Don't override file " + outputFile);
+
+        return false;
+    }
+
+    /**
+     * Claims a fileset file then runs or schedules its generation, recording it in the fileset report.
+     *
+     * @see #claim(File, boolean)
+     * @see #submit(Task)
+     */
+    boolean submit(ArchetypeGenerationReport.Fileset fileSetReport, File outputFile, boolean failIfExists, Task task)
+            throws IOException, OutputFileExists, ArchetypeGenerationFailure {
+        if (!claim(outputFile, failIfExists)) {
+            fileSetReport.addFile(-1, 0);
+
+            return false;
+        }
+
+        return submit(() -> {
+            long start = System.nanoTime();
+
+            boolean generated = task.run();
+
+            fileSetReport.addFile(generated ? output.size(outputFile) : -1, System.nanoTime() - start);
+
+            return generated;
+        });
+    }
+
+    /**
+     * Waits for all scheduled tasks.
+     *
+     * @throws OutputFileExists if a task failed with it, the failure of the first failed task being reported
+     * @throws ArchetypeGenerationFailure if a task failed with it, or if interrupted
+     * @throws IOException if a task failed with it
+     */
+    void await() throws IOException, OutputFileExists, ArchetypeGenerationFailure {
+        Throwable failure = null;
+
+        try {
+            for (Future<Boolean> task : pending) {
+                try {
+                    task.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ArchetypeGenerationFailure("Interrupted while generating files", e);
+        } finally {
+            pending.clear();
+        }
+
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof OutputFileExists) {
+            throw (OutputFileExists) failure;
+        } else if (failure instanceof ArchetypeGenerationFailure) {
+            throw (ArchetypeGenerationFailure) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new ArchetypeGenerationFailure(failure);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer replacing <code>\r\n</code>, <code>\r</code> and <code>\n</code> line separators with the given one while
+ * writing, like {@link org.codehaus.plexus.util.StringUtils#unifyLineSeparators(String, String)} does for a whole
+ * string.
+ */
+class LineSeparatorWriter extends FilterWriter {
+    private final String lineSeparator;
+
+    /**
+     * Whether the last character written was a <code>\r</code>, whose line separator is already written: a following
+     * <code>\n</code> belongs to the same line separator.
+     */
+    private boolean afterCarriageReturn;
+
+    LineSeparatorWriter(Writer out, String lineSeparator) {
+        super(out);
+        this.lineSeparator = lineSeparator;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (c == '\n' && afterCarriageReturn) {
+            afterCarriageReturn = false;
+            return;
+        }
+
+        afterCarriageReturn = c == '\r';
+
+        if (c == '\r' || c == '\n') {
+            out.write(lineSeparator);
+        } else {
+            out.write(c);
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        int start = off;
+        int end = off + len;
+
+        for (int i = off; i < end; i++) {
+            char c = cbuf[i];
+
+            if (c == '\r' || c == '\n') {
+                out.write(cbuf, start, i - start);
+                write(c);
+                start = i + 1;
+            } else {
+                afterCarriageReturn = false;
+            }
+        }
+
+        out.write(cbuf, start, end - start);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        int start = off;
+        int end = off + len;
+
+        for (int i = off; i < end; i++) {
+            char c = str.charAt(i);
+
+            if (c == '\r' || c == '\n') {
+                out.write(str, start, i - start);
+                write(c);
+                start = i + 1;
+            } else {
+                afterCarriageReturn = false;
+            }
+        }
+
+        out.write(str, start, end - start);
+    }
+}
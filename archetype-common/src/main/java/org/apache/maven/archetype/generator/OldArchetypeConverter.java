@@ -0,0 +1,387 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.maven.archetype.ArchetypeGenerationRequest;
+import org.apache.maven.archetype.common.ArchetypeArchive;
+import org.apache.maven.archetype.common.ArchetypeArtifactManager;
+import org.apache.maven.archetype.common.Constants;
+import org.apache.maven.archetype.exception.UnknownArchetype;
+import org.apache.maven.archetype.metadata.ArchetypeDescriptor;
+import org.apache.maven.archetype.metadata.FileSet;
+import org.apache.maven.archetype.old.descriptor.TemplateDescriptor;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts the descriptors of 1.x archetypes to fileset archetype descriptors when the archetypes are loaded, so that
+ * they are generated by the fileset generator, with its template cache, parallelism, plan and output sinks.
+ * <p>
+ * An archetype is only converted when the fileset generator writes the same files as
+ * {@link org.apache.maven.archetype.old.DefaultOldArchetype}: its sources and test sources are in the default source
+ * directories, its POM doesn't override the build directories, and its templates are found in the archetype with
+ * names that are neither patterns nor contain filename tokens. A project is only generated from a converted
+ * archetype when it is not added as a module to an existing project. The other archetypes and projects are still
+ * generated by the 1.x generator.
+ * <p>
+ * Conversions, and archetypes which cannot be converted, are cached by archetype jar SHA-1.
+ *
+ * @since 3.4.2
+ */
+@Named
+@Singleton
+class OldArchetypeConverter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OldArchetypeConverter.class);
+
+    static final int DEFAULT_MAX_ARCHETYPES = 64;
+
+    private static final String SOURCE_DIRECTORY = "src/main/java";
+
+    private static final String RESOURCE_DIRECTORY = "src/main/resources";
+
+    private static final String TEST_SOURCE_DIRECTORY = "src/test/java";
+
+    private static final String TEST_RESOURCE_DIRECTORY = "src/test/resources";
+
+    /**
+     * The POM elements overriding the directories the 1.x generator creates or relocates sources in.
+     */
+    private static final String[] BUILD_DIRECTORIES = {
+        "<sourceDirectory", "<scriptSourceDirectory", "<testSourceDirectory", "<resources", "<testResources"
+    };
+
+    private final ArchetypeArtifactManager archetypeArtifactManager;
+
+    private final TemplateCache templateCache;
+
+    private final int maxArchetypes;
+
+    /**
+     * Converted descriptors by archetype jar SHA-1, empty for archetypes which cannot be converted, least recently
+     * used first.
+     */
+    private final Map<String, Optional<ArchetypeDescriptor>> descriptors = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Inject
+    OldArchetypeConverter(ArchetypeArtifactManager archetypeArtifactManager, TemplateCache templateCache) {
+        this(archetypeArtifactManager, templateCache, DEFAULT_MAX_ARCHETYPES);
+    }
+
+    OldArchetypeConverter(
+            ArchetypeArtifactManager archetypeArtifactManager, TemplateCache templateCache, int maxArchetypes) {
+        this.archetypeArtifactManager = archetypeArtifactManager;
+        this.templateCache = templateCache;
+        this.maxArchetypes = maxArchetypes;
+    }
+
+    /**
+     * @param request the generation request
+     * @param archetypeFile the 1.x archetype jar
+     * @return <code>true</code> if the project can be generated by the fileset generator from the converted
+     *         archetype
+     */
+    boolean canConvert(ArchetypeGenerationRequest request, File archetypeFile) {
+        if (request.getOutputDirectory() == null
+                || request.getGroupId() == null
+                || request.getArtifactId() == null
+                || request.getVersion() == null
+                || request.getPackage() == null) {
+            // let the 1.x generator report the missing values
+            return false;
+        }
+
+        GenerationOutput output = new GenerationOutput(request);
+
+        // the 1.x generator adds the project to the parent POM, and its parent to the project POM, its own way
+        if (output.exists(new File(request.getOutputDirectory(), Constants.ARCHETYPE_POM))) {
+            return false;
+        }
+
+        // the 1.x generator handles existing projects of archetypes allowing partial generation
+        File projectDirectory = new File(request.getOutputDirectory(), request.getArtifactId());
+        if (output.exists(projectDirectory)
+                && !(request.isIncremental()
+                        && output.exists(new File(projectDirectory, GenerationManifest.FILE_NAME)))) {
+            return false;
+        }
+
+        try (ArchetypeArchive archive = archetypeArtifactManager.getArchetypeArchive(archetypeFile)) {
+            return getDescriptor(archive) != null;
+        } catch (UnknownArchetype | IOException e) {
+            LOGGER.debug("Unable to convert the 1.x archetype " + archetypeFile, e);
+            return false;
+        }
+    }
+
+    /**
+     * @param archive the 1.x archetype
+     * @return the equivalent fileset archetype descriptor, or <code>null</code> if the archetype cannot be converted
+     * @throws IOException if the archetype cannot be read
+     */
+    ArchetypeDescriptor getDescriptor(ArchetypeArchive archive) throws IOException {
+        String checksum = templateCache.getChecksum(archive.getFile());
+
+        synchronized (this) {
+            Optional<ArchetypeDescriptor> cached = descriptors.get(checksum);
+            if (cached != null) {
+                return cached.orElse(null);
+            }
+        }
+
+        ArchetypeDescriptor descriptor;
+        try {
+            descriptor = convert(archive);
+        } catch (XmlPullParserException e) {
+            // reported by the 1.x generator
+            LOGGER.debug("Unable to read the 1.x archetype descriptor of " + archive.getFile(), e);
+            descriptor = null;
+        }
+
+        if (descriptor == null) {
+            LOGGER.debug("The 1.x archetype " + archive.getFile() + " is not converted to a fileset archetype");
+        }
+
+        synchronized (this) {
+            descriptors.put(checksum, Optional.ofNullable(descriptor));
+
+            Iterator<Optional<ArchetypeDescriptor>> eldest =
+                    descriptors.values().iterator();
+            while (descriptors.size() > maxArchetypes && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+
+        return descriptor;
+    }
+
+    synchronized int size() {
+        return descriptors.size();
+    }
+
+    /**
+     * @return the encoding of the POM template of 1.x archetypes
+     */
+    static String getPomEncoding() {
+        return new TemplateDescriptor().getEncoding();
+    }
+
+    private ArchetypeDescriptor convert(ArchetypeArchive archive) throws IOException, XmlPullParserException {
+        org.apache.maven.archetype.old.descriptor.ArchetypeDescriptor oldDescriptor =
+                archive.getOldArchetypeDescriptor();
+
+        if (oldDescriptor == null || overridesBuildDirectories(archive)) {
+            return null;
+        }
+
+        // fileset matching order, which must be the 1.x processing order for templates #set-ting variables
+        Map<String, Integer> resources = new HashMap<>();
+        List<String> archetypeResources = archive.getArchetypeResources();
+        for (int i = 0; i < archetypeResources.size(); i++) {
+            resources.put(archetypeResources.get(i), i);
+        }
+
+        ArchetypeDescriptor descriptor = new ArchetypeDescriptor();
+        descriptor.setName(oldDescriptor.getId());
+
+        Set<String> templates = new HashSet<>();
+
+        boolean converted = addFileSets(
+                        descriptor,
+                        oldDescriptor.getSources(),
+                        oldDescriptor::getSourceDescriptor,
+                        SOURCE_DIRECTORY,
+                        resources,
+                        templates)
+                && addFileSets(
+                        descriptor,
+                        oldDescriptor.getResources(),
+                        oldDescriptor::getResourceDescriptor,
+                        null,
+                        resources,
+                        templates)
+                && addFileSets(
+                        descriptor,
+                        oldDescriptor.getTestSources(),
+                        oldDescriptor::getTestSourceDescriptor,
+                        TEST_SOURCE_DIRECTORY,
+                        resources,
+                        templates)
+                && addFileSets(
+                        descriptor,
+                        oldDescriptor.getTestResources(),
+                        oldDescriptor::getTestResourceDescriptor,
+                        null,
+                        resources,
+                        templates)
+                && addFileSets(
+                        descriptor,
+                        oldDescriptor.getSiteResources(),
+                        oldDescriptor::getSiteResourceDescriptor,
+                        null,
+                        resources,
+                        templates);
+
+        if (!converted) {
+            return null;
+        }
+
+        // the 1.x generator creates the default resource directories, even if no resource is in them
+        if (!oldDescriptor.getResources().isEmpty()) {
+            addDirectory(descriptor, RESOURCE_DIRECTORY, templates);
+        }
+        if (!oldDescriptor.getTestResources().isEmpty()) {
+            addDirectory(descriptor, TEST_RESOURCE_DIRECTORY, templates);
+        }
+
+        return descriptor;
+    }
+
+    private boolean overridesBuildDirectories(ArchetypeArchive archive) throws IOException {
+        String pom;
+        try (InputStream in = archive.getInputStream(Constants.ARCHETYPE_RESOURCES + '/' + Constants.ARCHETYPE_POM)) {
+            if (in == null) {
+                // reported by the 1.x generator
+                return true;
+            }
+
+            pom = IOUtil.toString(in, getPomEncoding());
+        }
+
+        for (String element : BUILD_DIRECTORIES) {
+            if (pom.contains(element)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Adds the filesets of templates, one for each run of templates with the same directory, filtering and encoding,
+     * in matching order.
+     *
+     * @param sourceDirectory the directory of the templates to relocate in the package, or <code>null</code> if they
+     *            are not relocated
+     * @return <code>false</code> if the templates cannot be converted
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private boolean addFileSets(
+            ArchetypeDescriptor descriptor,
+            List<String> names,
+            Function<String, TemplateDescriptor> templateDescriptors,
+            String sourceDirectory,
+            Map<String, Integer> resources,
+            Set<String> templates) {
+        FileSet fileSet = null;
+        int previous = -1;
+
+        for (String name : names) {
+            String template = StringUtils.replace(name, "\\", "/");
+
+            Integer index = resources.get(template);
+            if (index == null || !templates.add(template) || !isLiteral(template)) {
+                return false;
+            }
+
+            String directory;
+            if (sourceDirectory != null) {
+                if (!template.startsWith(sourceDirectory + '/')) {
+                    return false;
+                }
+                directory = sourceDirectory;
+            } else {
+                int separator = template.lastIndexOf('/');
+                directory = separator < 0 ? "" : template.substring(0, separator);
+            }
+
+            TemplateDescriptor templateDescriptor = templateDescriptors.apply(name);
+
+            if (fileSet == null
+                    || index < previous
+                    || !directory.equals(fileSet.getDirectory())
+                    || templateDescriptor.isFiltered() != fileSet.isFiltered()
+                    || !templateDescriptor.getEncoding().equals(fileSet.getEncoding())) {
+                fileSet = new FileSet();
+                fileSet.setDirectory(directory);
+                fileSet.setPackaged(sourceDirectory != null);
+                fileSet.setFiltered(templateDescriptor.isFiltered());
+                fileSet.setEncoding(templateDescriptor.getEncoding());
+
+                descriptor.addFileSet(fileSet);
+            }
+
+            fileSet.addInclude(directory.isEmpty() ? template : template.substring(directory.length() + 1));
+            previous = index;
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds a fileset matching no file, whose directory is created anyway.
+     */
+    private void addDirectory(ArchetypeDescriptor descriptor, String directory, Set<String> templates) {
+        for (String template : templates) {
+            if (template.startsWith(directory + '/')) {
+                // created for its files
+                return;
+            }
+        }
+
+        FileSet fileSet = new FileSet();
+        fileSet.setDirectory(directory);
+        fileSet.setFiltered(false);
+        fileSet.addExclude("**");
+
+        descriptor.addFileSet(fileSet);
+    }
+
+    /**
+     * @return <code>true</code> if the template name is matched as is, and generates a file of the same name
+     */
+    private static boolean isLiteral(String template) {
+        return !template.isEmpty()
+                && !template.startsWith("/")
+                && !template.endsWith("/")
+                && template.indexOf('*') < 0
+                && template.indexOf('?') < 0
+                && !template.contains("__");
+    }
+}
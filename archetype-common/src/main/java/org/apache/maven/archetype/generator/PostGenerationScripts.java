@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs post-generation scripts, compiled once per script content: generating again with the same script only
+ * instantiates its compiled class with a new binding.
+ * <p>
+ * Groovy is only used by the nested {@link Groovy} class, so it is not loaded until an archetype with a script is
+ * generated.
+ *
+ * @since 3.4.2
+ */
+@Named
+@Singleton
+class PostGenerationScripts {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PostGenerationScripts.class);
+
+    static final int DEFAULT_MAX_SCRIPTS = 64;
+
+    private final int maxScripts;
+
+    /**
+     * Compiled scripts by SHA-256 of their content, least recently used first.
+     */
+    private final Map<String, Class<?>> scripts = new LinkedHashMap<>(16, 0.75f, true);
+
+    PostGenerationScripts() {
+        this(DEFAULT_MAX_SCRIPTS);
+    }
+
+    PostGenerationScripts(int maxScripts) {
+        this.maxScripts = maxScripts;
+    }
+
+    /**
+     * @param script the script content
+     * @param variables the variables bound to the script
+     */
+    void run(String script, Map<String, Object> variables) {
+        Groovy.run(getScriptClass(script), variables);
+    }
+
+    Class<?> getScriptClass(String script) {
+        String key = sha256(script);
+
+        synchronized (this) {
+            Class<?> scriptClass = scripts.get(key);
+            if (scriptClass != null) {
+                return scriptClass;
+            }
+        }
+
+        LOGGER.debug("Compiling post-generation script " + key);
+
+        Class<?> scriptClass = Groovy.compile(script);
+
+        synchronized (this) {
+            Class<?> compiled = scripts.get(key);
+            if (compiled != null) {
+                // compiled concurrently
+                return compiled;
+            }
+
+            scripts.put(key, scriptClass);
+
+            Iterator<Class<?>> eldest = scripts.values().iterator();
+            while (scripts.size() > maxScripts && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+
+        return scriptClass;
+    }
+
+    synchronized int size() {
+        return scripts.size();
+    }
+
+    private static String sha256(String script) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest(script.getBytes(StandardCharsets.UTF_8))) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * The Groovy calls, in their own class so that Groovy is loaded on first use only.
+     */
+    private static class Groovy {
+        static Class<?> compile(String script) {
+            // not the context class loader, which depends on the calling thread
+            return new GroovyShell(Groovy.class.getClassLoader()).parse(script).getClass();
+        }
+
+        static void run(Class<?> scriptClass, Map<String, Object> variables) {
+            InvokerHelper.createScript(scriptClass, new Binding(new LinkedHashMap<>(variables)))
+                    .run();
+        }
+    }
+}
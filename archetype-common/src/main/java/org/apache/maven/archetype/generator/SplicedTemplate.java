@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.velocity.context.Context;
+
+/**
+ * A template without Velocity directives, rendered without Velocity by splicing its literal text with the values of
+ * its <code>${name}</code> references. A template without any reference is static, and written as is.
+ * <p>
+ * A template is only spliced when Velocity is known to render it the same way: every <code>$</code> starts a braced
+ * reference to a plain identifier, every <code>#</code> is followed by whitespace, no backslash escapes a
+ * <code>$</code> or a <code>#</code>, and the template has no byte order mark. Any other template is left to
+ * Velocity.
+ *
+ * @since 3.4.2
+ */
+final class SplicedTemplate implements ArchetypeTemplate {
+    /**
+     * The literal text around the references, one more than the references.
+     */
+    private final String[] literals;
+
+    private final String[] references;
+
+    private SplicedTemplate(String[] literals, String[] references) {
+        this.literals = literals;
+        this.references = references;
+    }
+
+    /**
+     * @param source the template source
+     * @return the spliced template, or <code>null</code> if the template needs Velocity
+     */
+    static SplicedTemplate parse(String source) {
+        if (!source.isEmpty() && source.charAt(0) == '\uFEFF') {
+            return null;
+        }
+
+        List<String> literals = new ArrayList<>();
+        List<String> references = new ArrayList<>();
+
+        int start = 0;
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            char next = i + 1 < source.length() ? source.charAt(i + 1) : ' ';
+
+            if (c == '#' && !isWhitespace(next)) {
+                // a directive, a comment or a macro call
+                return null;
+            } else if (c == '\\' && (next == '$' || next == '#')) {
+                return null;
+            } else if (c == '$') {
+                int end = source.indexOf('}', i);
+                if (next != '{' || end < 0 || !isIdentifier(source, i + 2, end)) {
+                    return null;
+                }
+
+                literals.add(source.substring(start, i));
+                references.add(source.substring(i + 2, end));
+
+                i = end;
+                start = end + 1;
+            }
+        }
+        literals.add(source.substring(start));
+
+        return new SplicedTemplate(literals.toArray(new String[0]), references.toArray(new String[0]));
+    }
+
+    /**
+     * @return <code>true</code> if the template has no reference
+     */
+    boolean isStatic() {
+        return references.length == 0;
+    }
+
+    /**
+     * Writes the literal text and the values of the references, a reference without value being written as is like
+     * Velocity does.
+     */
+    @Override
+    public void merge(Context context, Writer writer) throws IOException {
+        writer.write(literals[0]);
+
+        for (int i = 0; i < references.length; i++) {
+            Object value = context.get(references[i]);
+            String text = value == null ? null : value.toString();
+
+            writer.write(text == null ? "${" + references[i] + '}' : text);
+            writer.write(literals[i + 1]);
+        }
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    /**
+     * @return <code>true</code> for a Velocity identifier, hyphens being allowed by the archetype engine
+     */
+    private static boolean isIdentifier(String source, int start, int end) {
+        if (start >= end || !isLetter(source.charAt(start)) || source.charAt(end - 1) == '-') {
+            return false;
+        }
+
+        for (int i = start + 1; i < end; i++) {
+            char c = source.charAt(i);
+            if (!isLetter(c) && !(c >= '0' && c <= '9') && c != '_' && c != '-') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
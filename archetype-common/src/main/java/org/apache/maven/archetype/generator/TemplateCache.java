@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+
+import org.apache.maven.archetype.common.ArchetypeArchive;
+import org.apache.velocity.Template;
+import org.codehaus.plexus.util.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of parsed Velocity templates, keyed by archetype jar SHA-1, template name and encoding, so that generating
+ * again from the same archetype in the same JVM doesn't parse its templates again.
+ * <p>
+ * Templates are classified when first loaded: templates without directives are {@link SplicedTemplate spliced}
+ * without Velocity, only the other ones being parsed by Velocity, from the source read to classify them.
+ * <p>
+ * Least recently used templates are evicted once the cache holds more than {@link #DEFAULT_MAX_ENTRIES} templates or
+ * more than {@link #DEFAULT_MAX_WEIGHT} bytes of template sources.
+ *
+ * @since 3.4.2
+ */
+@Named
+@Singleton
+class TemplateCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TemplateCache.class);
+
+    static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    /**
+     * Maximum size of the cached template sources: parsed templates take a few times more memory.
+     */
+    static final long DEFAULT_MAX_WEIGHT = 16L * 1024 * 1024;
+
+    /**
+     * Weight of a template whose source size is unknown.
+     */
+    private static final long DEFAULT_WEIGHT = 4096;
+
+    private final int maxEntries;
+
+    private final long maxWeight;
+
+    private final Map<Key, CachedTemplate> templates = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long weight;
+
+    /**
+     * SHA-1 of the archetype jars, by path, size and modification time.
+     */
+    private final Map<String, String> checksums = new ConcurrentHashMap<>();
+
+    TemplateCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT);
+    }
+
+    TemplateCache(int maxEntries, long maxWeight) {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @param engine the engine parsing the template on a cache miss
+     * @param archetypeArchive the archetype providing the template, open in the engine
+     * @param name the template name, which is also its entry name in the archetype jar
+     * @param encoding the template encoding
+     * @return the parsed template
+     * @throws Exception if the template cannot be found or parsed
+     */
+    ArchetypeTemplate getTemplate(
+            ArchetypeTemplateEngine engine, ArchetypeArchive archetypeArchive, String name, String encoding)
+            throws Exception {
+        String checksum = getChecksum(archetypeArchive.getFile());
+        Key key = new Key(checksum, name, encoding);
+
+        synchronized (this) {
+            CachedTemplate cached = templates.get(key);
+            if (cached != null) {
+                return cached.template;
+            }
+        }
+
+        ArchetypeTemplate template = load(engine, checksum, archetypeArchive, name, encoding);
+
+        ZipEntry entry = archetypeArchive.getEntry(name);
+        long templateWeight = (entry == null || entry.getSize() < 0) ? DEFAULT_WEIGHT : entry.getSize();
+
+        synchronized (this) {
+            CachedTemplate cached = templates.get(key);
+            if (cached != null) {
+                // parsed concurrently
+                return cached.template;
+            }
+
+            templates.put(key, new CachedTemplate(template, templateWeight));
+            weight += templateWeight;
+
+            evict();
+        }
+
+        return template;
+    }
+
+    /**
+     * Reads the template source once: it is spliced if it has no directive, else parsed by Velocity from the source
+     * already read.
+     *
+     * @return the template
+     */
+    private static ArchetypeTemplate load(
+            ArchetypeTemplateEngine engine,
+            String checksum,
+            ArchetypeArchive archetypeArchive,
+            String name,
+            String encoding)
+            throws IOException {
+        byte[] content;
+        try (InputStream in = archetypeArchive.getInputStream(name)) {
+            if (in == null || !Charset.isSupported(encoding)) {
+                // left to Velocity, which reports it
+                Template velocityTemplate = engine.getTemplate(checksum, name, encoding);
+                return velocityTemplate::merge;
+            }
+
+            content = IOUtil.toByteArray(in);
+        }
+
+        if (hasByteOrderMark(content)) {
+            // skipped by the Velocity resource loaders
+            Template velocityTemplate = engine.getTemplate(checksum, name, encoding);
+            return velocityTemplate::merge;
+        }
+
+        String source = new String(content, encoding);
+
+        SplicedTemplate template = SplicedTemplate.parse(source);
+
+        if (template != null) {
+            LOGGER.debug("Template " + name + " is " + (template.isStatic() ? "static" : "spliced") + ", not parsed");
+
+            return template;
+        }
+
+        Template velocityTemplate = engine.parse(checksum, name, encoding, source);
+        return velocityTemplate::merge;
+    }
+
+    /**
+     * @return <code>true</code> if the content starts with a UTF-8, UTF-16 or UTF-32 byte order mark
+     */
+    private static boolean hasByteOrderMark(byte[] content) {
+        return startsWith(content, 0xef, 0xbb, 0xbf)
+                || startsWith(content, 0xfe, 0xff)
+                || startsWith(content, 0xff, 0xfe)
+                || startsWith(content, 0x00, 0x00, 0xfe, 0xff);
+    }
+
+    private static boolean startsWith(byte[] content, int... prefix) {
+        if (content.length < prefix.length) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length; i++) {
+            if ((content[i] & 0xff) != prefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    synchronized int size() {
+        return templates.size();
+    }
+
+    private void evict() {
+        Iterator<CachedTemplate> eldest = templates.values().iterator();
+
+        while ((templates.size() > maxEntries || weight > maxWeight) && eldest.hasNext()) {
+            weight -= eldest.next().weight;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @param archetypeFile the archetype jar
+     * @return the jar SHA-1, computed once per path, size and modification time
+     * @throws IOException if the jar cannot be read
+     */
+    String getChecksum(File archetypeFile) throws IOException {
+        String identity =
+                archetypeFile.getAbsolutePath() + ':' + archetypeFile.length() + ':' + archetypeFile.lastModified();
+
+        String checksum = checksums.get(identity);
+
+        if (checksum == null) {
+            checksum = sha1(archetypeFile);
+            checksums.put(identity, checksum);
+
+            LOGGER.debug("Archetype " + archetypeFile + " has SHA-1 " + checksum);
+        }
+
+        return checksum;
+    }
+
+    private static String sha1(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-1
+            throw new IllegalStateException(e);
+        }
+
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+                // digest only
+            }
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static class CachedTemplate {
+        private final ArchetypeTemplate template;
+
+        private final long weight;
+
+        CachedTemplate(ArchetypeTemplate template, long weight) {
+            this.template = template;
+            this.weight = weight;
+        }
+    }
+
+    private static class Key {
+        private final String checksum;
+
+        private final String name;
+
+        private final String encoding;
+
+        Key(String checksum, String name, String encoding) {
+            this.checksum = checksum;
+            this.name = name;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return checksum.equals(other.checksum) && name.equals(other.name) && encoding.equals(other.encoding);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(checksum, name, encoding);
+        }
+    }
+}
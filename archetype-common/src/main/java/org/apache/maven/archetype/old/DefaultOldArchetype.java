@@ -24,6 +24,7 @@ import javax.inject.Singleton;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -32,20 +33,19 @@ import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
 import org.apache.maven.archetype.ArchetypeGenerationRequest;
+import org.apache.maven.archetype.common.ArchetypeArchive;
 import org.apache.maven.archetype.common.ArchetypeArtifactManager;
 import org.apache.maven.archetype.common.Constants;
 import org.apache.maven.archetype.common.util.PomUtils;
 import org.apache.maven.archetype.exception.InvalidPackaging;
 import org.apache.maven.archetype.exception.UnknownArchetype;
+import org.apache.maven.archetype.generator.ArchetypeTemplateEngine;
 import org.apache.maven.archetype.old.descriptor.ArchetypeDescriptor;
 import org.apache.maven.archetype.old.descriptor.ArchetypeDescriptorBuilder;
 import org.apache.maven.archetype.old.descriptor.TemplateDescriptor;
@@ -63,7 +63,6 @@ import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.xml.XmlStreamReader;
 import org.codehaus.plexus.util.xml.XmlStreamWriter;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
-import org.codehaus.plexus.velocity.VelocityComponent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
@@ -88,14 +87,15 @@ public class DefaultOldArchetype implements OldArchetype {
     // Components
     // ----------------------------------------------------------------------
 
-    private VelocityComponent velocity;
+    private ArchetypeTemplateEngine templateEngine;
 
     private ArchetypeArtifactManager archetypeArtifactManager;
 
     @Inject
-    public DefaultOldArchetype(VelocityComponent velocity, ArchetypeArtifactManager archetypeArtifactManager) {
+    public DefaultOldArchetype(
+            ArchetypeTemplateEngine templateEngine, ArchetypeArtifactManager archetypeArtifactManager) {
         this.archetypeArtifactManager = archetypeArtifactManager;
-        this.velocity = velocity;
+        this.templateEngine = templateEngine;
     }
 
     // ----------------------------------------------------------------------
@@ -125,9 +125,27 @@ public class DefaultOldArchetype implements OldArchetype {
     }
 
     @Override
-    @SuppressWarnings("checkstyle:MethodLength")
     public void createArchetype(ArchetypeGenerationRequest request, File archetypeFile)
             throws ArchetypeDescriptorException, ArchetypeTemplateProcessingException, InvalidPackaging {
+        ArchetypeArchive archetypeArchive;
+        try {
+            archetypeArchive = archetypeArtifactManager.getArchetypeArchive(archetypeFile);
+        } catch (UnknownArchetype e) {
+            throw new ArchetypeDescriptorException(e.getMessage(), e);
+        }
+
+        // closed once the project is generated, not to keep the archetype jar open
+        try (ArchetypeArchive archive = archetypeArchive;
+                Closeable templates = templateEngine.open(archive)) {
+            createArchetype(request, archive);
+        } catch (IOException e) {
+            throw new ArchetypeTemplateProcessingException("Unable to read the archetype " + archetypeFile, e);
+        }
+    }
+
+    @SuppressWarnings("checkstyle:MethodLength")
+    private void createArchetype(ArchetypeGenerationRequest request, ArchetypeArchive archetypeArchive)
+            throws ArchetypeDescriptorException, ArchetypeTemplateProcessingException, InvalidPackaging {
         Map<String, String> parameters = new HashMap<>();
 
         parameters.put("basedir", request.getOutputDirectory());
@@ -170,18 +188,7 @@ public class DefaultOldArchetype implements OldArchetype {
 
         ArchetypeDescriptor descriptor;
 
-        URLClassLoader archetypeJarLoader;
-
-        URL[] urls;
-        try {
-            urls = new URL[] {archetypeFile.toURI().toURL()};
-        } catch (MalformedURLException e) {
-            throw new ArchetypeDescriptorException(e.getMessage());
-        }
-
-        archetypeJarLoader = new URLClassLoader(urls);
-
-        try (InputStream is = getDescriptorInputStream(archetypeJarLoader)) {
+        try (InputStream is = getDescriptorInputStream(archetypeArchive)) {
             descriptor = builder.build(new XmlStreamReader(is));
         } catch (IOException | XmlPullParserException e) {
             throw new ArchetypeDescriptorException("Error reading the " + ARCHETYPE_DESCRIPTOR + " descriptor.", e);
@@ -256,10 +263,6 @@ public class DefaultOldArchetype implements OldArchetype {
         // Process the templates
         // ----------------------------------------------------------------------
 
-        ClassLoader old = Thread.currentThread().getContextClassLoader();
-
-        Thread.currentThread().setContextClassLoader(archetypeJarLoader);
-
         Model parentModel = null;
         if (creating) {
             if (parentPomFile.exists()) {
@@ -278,11 +281,9 @@ public class DefaultOldArchetype implements OldArchetype {
         }
 
         try {
-            processTemplates(pomFile, outputDirectory, context, descriptor, packageName, parentModel);
+            processTemplates(archetypeArchive, pomFile, outputDirectory, context, descriptor, packageName, parentModel);
         } catch (IOException e) {
             throw new ArchetypeTemplateProcessingException("Unable to process template", e);
-        } finally {
-            Thread.currentThread().setContextClassLoader(old);
         }
 
         if (parentModel != null) {
@@ -333,11 +334,12 @@ public class DefaultOldArchetype implements OldArchetype {
         }
     }
 
-    private InputStream getDescriptorInputStream(ClassLoader archetypeJarLoader) throws ArchetypeDescriptorException {
-        InputStream is = getStream(ARCHETYPE_DESCRIPTOR, archetypeJarLoader);
+    private InputStream getDescriptorInputStream(ArchetypeArchive archetypeArchive)
+            throws ArchetypeDescriptorException, IOException {
+        InputStream is = archetypeArchive.getInputStream(ARCHETYPE_DESCRIPTOR);
 
         if (is == null) {
-            is = getStream(ARCHETYPE_OLD_DESCRIPTOR, archetypeJarLoader);
+            is = archetypeArchive.getInputStream(ARCHETYPE_OLD_DESCRIPTOR);
         }
 
         if (is == null) {
@@ -355,6 +357,7 @@ public class DefaultOldArchetype implements OldArchetype {
 
     @SuppressWarnings("checkstyle:MethodLength")
     private void processTemplates(
+            ArchetypeArchive archetypeArchive,
             File pomFile,
             String outputDirectory,
             Context context,
@@ -363,7 +366,8 @@ public class DefaultOldArchetype implements OldArchetype {
             Model parentModel)
             throws ArchetypeTemplateProcessingException, IOException {
         if (!pomFile.exists()) {
-            processTemplate(outputDirectory, context, ARCHETYPE_POM, new TemplateDescriptor(), false, null);
+            processTemplate(
+                    archetypeArchive, outputDirectory, context, ARCHETYPE_POM, new TemplateDescriptor(), false, null);
         }
 
         // ---------------------------------------------------------------------
@@ -506,9 +510,15 @@ public class DefaultOldArchetype implements OldArchetype {
         if (!descriptor.getSources().isEmpty()) {
             if (!overrideSrcDir) {
                 FileUtils.mkdir(outputDirectory + DEFAULT_SOURCE_DIR);
-                processSources(outputDirectory, context, descriptor, packageName, DEFAULT_SOURCE_DIR);
+                processSources(archetypeArchive, outputDirectory, context, descriptor, packageName, DEFAULT_SOURCE_DIR);
             } else {
-                processSources(outputDirectory, context, descriptor, packageName, build.getSourceDirectory());
+                processSources(
+                        archetypeArchive,
+                        outputDirectory,
+                        context,
+                        descriptor,
+                        packageName,
+                        build.getSourceDirectory());
             }
         }
 
@@ -516,7 +526,7 @@ public class DefaultOldArchetype implements OldArchetype {
             if (!overrideResourceDir) {
                 FileUtils.mkdir(outputDirectory + DEFAULT_RESOURCE_DIR);
             }
-            processResources(outputDirectory, context, descriptor, packageName);
+            processResources(archetypeArchive, outputDirectory, context, descriptor, packageName);
         }
 
         // ----------------------------------------------------------------------
@@ -526,9 +536,16 @@ public class DefaultOldArchetype implements OldArchetype {
         if (!descriptor.getTestSources().isEmpty()) {
             if (!overrideTestSrcDir) {
                 FileUtils.mkdir(outputDirectory + DEFAULT_TEST_SOURCE_DIR);
-                processTestSources(outputDirectory, context, descriptor, packageName, DEFAULT_TEST_SOURCE_DIR);
+                processTestSources(
+                        archetypeArchive, outputDirectory, context, descriptor, packageName, DEFAULT_TEST_SOURCE_DIR);
             } else {
-                processTestSources(outputDirectory, context, descriptor, packageName, build.getTestSourceDirectory());
+                processTestSources(
+                        archetypeArchive,
+                        outputDirectory,
+                        context,
+                        descriptor,
+                        packageName,
+                        build.getTestSourceDirectory());
             }
         }
 
@@ -536,7 +553,7 @@ public class DefaultOldArchetype implements OldArchetype {
             if (!overrideTestResourceDir) {
                 FileUtils.mkdir(outputDirectory + DEFAULT_TEST_RESOURCE_DIR);
             }
-            processTestResources(outputDirectory, context, descriptor, packageName);
+            processTestResources(archetypeArchive, outputDirectory, context, descriptor, packageName);
         }
 
         // ----------------------------------------------------------------------
@@ -544,11 +561,12 @@ public class DefaultOldArchetype implements OldArchetype {
         // ----------------------------------------------------------------------
 
         if (!descriptor.getSiteResources().isEmpty()) {
-            processSiteResources(outputDirectory, context, descriptor, packageName);
+            processSiteResources(archetypeArchive, outputDirectory, context, descriptor, packageName);
         }
     }
 
     private void processTemplate(
+            ArchetypeArchive archetypeArchive,
             String outputDirectory,
             Context context,
             String template,
@@ -556,7 +574,8 @@ public class DefaultOldArchetype implements OldArchetype {
             boolean packageInFileName,
             String packageName)
             throws ArchetypeTemplateProcessingException, IOException {
-        processTemplate(outputDirectory, context, template, descriptor, packageInFileName, packageName, null);
+        processTemplate(
+                archetypeArchive, outputDirectory, context, template, descriptor, packageInFileName, packageName, null);
     }
 
     private String getOutputDirectory(String outputDirectory, String testResourceDirectory) {
@@ -569,6 +588,7 @@ public class DefaultOldArchetype implements OldArchetype {
     // ----------------------------------------------------------------------
 
     protected void processSources(
+            ArchetypeArchive archetypeArchive,
             String outputDirectory,
             Context context,
             ArchetypeDescriptor descriptor,
@@ -577,6 +597,7 @@ public class DefaultOldArchetype implements OldArchetype {
             throws ArchetypeTemplateProcessingException, IOException {
         for (String template : descriptor.getSources()) {
             processTemplate(
+                    archetypeArchive,
                     outputDirectory,
                     context,
                     template,
@@ -588,6 +609,7 @@ public class DefaultOldArchetype implements OldArchetype {
     }
 
     protected void processTestSources(
+            ArchetypeArchive archetypeArchive,
             String outputDirectory,
             Context context,
             ArchetypeDescriptor descriptor,
@@ -596,6 +618,7 @@ public class DefaultOldArchetype implements OldArchetype {
             throws ArchetypeTemplateProcessingException, IOException {
         for (String template : descriptor.getTestSources()) {
             processTemplate(
+                    archetypeArchive,
                     outputDirectory,
                     context,
                     template,
@@ -607,19 +630,34 @@ public class DefaultOldArchetype implements OldArchetype {
     }
 
     protected void processResources(
-            String outputDirectory, Context context, ArchetypeDescriptor descriptor, String packageName)
+            ArchetypeArchive archetypeArchive,
+            String outputDirectory,
+            Context context,
+            ArchetypeDescriptor descriptor,
+            String packageName)
             throws IOException, ArchetypeTemplateProcessingException {
         for (String template : descriptor.getResources()) {
             processTemplate(
-                    outputDirectory, context, template, descriptor.getResourceDescriptor(template), false, packageName);
+                    archetypeArchive,
+                    outputDirectory,
+                    context,
+                    template,
+                    descriptor.getResourceDescriptor(template),
+                    false,
+                    packageName);
         }
     }
 
     protected void processTestResources(
-            String outputDirectory, Context context, ArchetypeDescriptor descriptor, String packageName)
+            ArchetypeArchive archetypeArchive,
+            String outputDirectory,
+            Context context,
+            ArchetypeDescriptor descriptor,
+            String packageName)
             throws IOException, ArchetypeTemplateProcessingException {
         for (String template : descriptor.getTestResources()) {
             processTemplate(
+                    archetypeArchive,
                     outputDirectory,
                     context,
                     template,
@@ -630,10 +668,15 @@ public class DefaultOldArchetype implements OldArchetype {
     }
 
     protected void processSiteResources(
-            String outputDirectory, Context context, ArchetypeDescriptor descriptor, String packageName)
+            ArchetypeArchive archetypeArchive,
+            String outputDirectory,
+            Context context,
+            ArchetypeDescriptor descriptor,
+            String packageName)
             throws IOException, ArchetypeTemplateProcessingException {
         for (String template : descriptor.getSiteResources()) {
             processTemplate(
+                    archetypeArchive,
                     outputDirectory,
                     context,
                     template,
@@ -643,7 +686,9 @@ public class DefaultOldArchetype implements OldArchetype {
         }
     }
 
+    @SuppressWarnings("checkstyle:ParameterNumber")
     protected void processTemplate(
+            ArchetypeArchive archetypeArchive,
             String outputDirectory,
             Context context,
             String template,
@@ -700,17 +745,24 @@ public class DefaultOldArchetype implements OldArchetype {
             try (Writer writer = new OutputStreamWriter(Files.newOutputStream(f.toPath()), descriptor.getEncoding())) {
                 StringWriter stringWriter = new StringWriter();
 
-                template = ARCHETYPE_RESOURCES + "/" + template;
-
-                velocity.getEngine().mergeTemplate(template, descriptor.getEncoding(), context, stringWriter);
+                templateEngine.merge(
+                        archetypeArchive,
+                        ARCHETYPE_RESOURCES + "/" + template,
+                        descriptor.getEncoding(),
+                        context,
+                        stringWriter);
 
                 writer.write(StringUtils.unifyLineSeparators(stringWriter.toString()));
             } catch (Exception e) {
                 throw new ArchetypeTemplateProcessingException("Error merging velocity templates", e);
             }
         } else {
-            try (InputStream is = getStream(ARCHETYPE_RESOURCES + "/" + template, null);
+            try (InputStream is = archetypeArchive.getInputStream(ARCHETYPE_RESOURCES + "/" + template);
                     OutputStream fos = Files.newOutputStream(f.toPath())) {
+                if (is == null) {
+                    throw new IOException(
+                            "The " + template + " template does not exist in " + archetypeArchive.getFile());
+                }
                 IOUtil.copy(is, fos);
             } catch (Exception e) {
                 throw new ArchetypeTemplateProcessingException("Error copying file", e);
@@ -719,11 +771,4 @@ public class DefaultOldArchetype implements OldArchetype {
     }
 
     protected void createProjectDirectoryStructure(String outputDirectory) {}
-
-    private InputStream getStream(String name, ClassLoader loader) {
-        if (loader == null) {
-            return Thread.currentThread().getContextClassLoader().getResourceAsStream(name);
-        }
-        return loader.getResourceAsStream(name);
-    }
 }
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * Writes the generated files in a directory, the default when a request has no {@link OutputSink}.
+ *
+ * @since 3.4.2
+ */
+public class FileSystemSink implements OutputSink {
+    private final File directory;
+
+    /**
+     * @param directory the directory the paths are relative to
+     */
+    public FileSystemSink(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param path a path relative to the directory
+     * @return the file at this path
+     */
+    public File getFile(String path) {
+        return path.isEmpty() ? directory : new File(directory, path);
+    }
+
+    @Override
+    public boolean exists(String path) {
+        return getFile(path).exists();
+    }
+
+    @Override
+    public void createDirectories(String path) throws IOException {
+        Files.createDirectories(getFile(path).toPath());
+    }
+
+    @Override
+    public OutputStream newOutputStream(String path) throws IOException {
+        File file = getFile(path);
+        file.getParentFile().mkdirs();
+
+        return Files.newOutputStream(file.toPath());
+    }
+
+    @Override
+    public InputStream newInputStream(String path) throws IOException {
+        return Files.newInputStream(getFile(path).toPath());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.output;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Keeps the generated files in memory, for instance to generate without any disk access in tests.
+ *
+ * @since 3.4.2
+ */
+public class InMemorySink implements OutputSink {
+    private final NavigableMap<String, byte[]> files = new ConcurrentSkipListMap<>();
+
+    private final NavigableSet<String> directories = new ConcurrentSkipListSet<>();
+
+    /**
+     * @return the content of the files by path, in path order
+     */
+    public NavigableMap<String, byte[]> getFiles() {
+        return Collections.unmodifiableNavigableMap(files);
+    }
+
+    /**
+     * @return the directories, created explicitly or holding files, in path order
+     */
+    public NavigableSet<String> getDirectories() {
+        return Collections.unmodifiableNavigableSet(directories);
+    }
+
+    /**
+     * @param path the file path
+     * @return the file content, or <code>null</code> if there is no such file
+     */
+    public byte[] getContent(String path) {
+        return files.get(path);
+    }
+
+    @Override
+    public boolean exists(String path) {
+        return path.isEmpty() || files.containsKey(path) || directories.contains(path);
+    }
+
+    @Override
+    public void createDirectories(String path) {
+        for (String directory = path; !directory.isEmpty(); directory = getParent(directory)) {
+            directories.add(directory);
+        }
+    }
+
+    @Override
+    public OutputStream newOutputStream(final String path) {
+        createDirectories(getParent(path));
+
+        return new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                files.put(path, toByteArray());
+            }
+        };
+    }
+
+    @Override
+    public InputStream newInputStream(String path) throws IOException {
+        byte[] content = files.get(path);
+
+        if (content == null) {
+            throw new FileNotFoundException(path);
+        }
+
+        return new ByteArrayInputStream(content);
+    }
+
+    private static String getParent(String path) {
+        int index = path.lastIndexOf('/');
+
+        return index < 0 ? "" : path.substring(0, index);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.output;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Where the files of a generated project are written. Paths are relative to the
+ * {@link org.apache.maven.archetype.ArchetypeGenerationRequest#getOutputDirectory() output directory} of the request,
+ * with <code>/</code> separators.
+ * <p>
+ * Files may be written concurrently when fileset archetypes are generated in parallel. A file is written at most once
+ * by a generation, except POMs which are read back and rewritten to add their parent and modules.
+ *
+ * @see FileSystemSink
+ * @see ZipStreamSink
+ * @see InMemorySink
+ * @since 3.4.2
+ */
+public interface OutputSink {
+    /**
+     * @param path the path of a file or directory
+     * @return <code>true</code> if the file or directory exists
+     */
+    boolean exists(String path);
+
+    /**
+     * Creates a directory, with its parent directories.
+     *
+     * @param path the directory path
+     * @throws IOException if the directory cannot be created
+     */
+    void createDirectories(String path) throws IOException;
+
+    /**
+     * Opens a file for writing, creating its parent directories and replacing its content if it exists. The file is
+     * complete once the stream is closed.
+     *
+     * @param path the file path
+     * @return the stream to write the file content to
+     * @throws IOException if the file cannot be written
+     */
+    OutputStream newOutputStream(String path) throws IOException;
+
+    /**
+     * Opens a file written before, or existing before the generation.
+     *
+     * @param path the file path
+     * @return the stream to read the file content from
+     * @throws IOException if the file doesn't exist or cannot be read
+     */
+    InputStream newInputStream(String path) throws IOException;
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.output;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams the generated files as a zip, for instance to an HTTP response, without writing them to disk.
+ * <p>
+ * Each file is added to the zip once its stream is closed. POMs are the exception: their parent and modules are only
+ * added once all modules are generated, so they are kept in memory and added when the sink is {@link #close() closed}.
+ * Entries are written in generation order, which is not deterministic when files are generated in parallel.
+ *
+ * @since 3.4.2
+ */
+public class ZipStreamSink implements OutputSink, Closeable {
+    private static final String POM = "pom.xml";
+
+    private final ZipOutputStream zip;
+
+    private final Set<String> files = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> directories = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, byte[]> poms = new ConcurrentHashMap<>();
+
+    /**
+     * @param out the stream to write the zip to, closed with the sink
+     */
+    public ZipStreamSink(OutputStream out) {
+        this.zip = new ZipOutputStream(out);
+    }
+
+    @Override
+    public boolean exists(String path) {
+        return path.isEmpty() || files.contains(path) || directories.contains(path);
+    }
+
+    @Override
+    public void createDirectories(String path) throws IOException {
+        for (String directory = path; !directory.isEmpty(); directory = getParent(directory)) {
+            if (directories.add(directory)) {
+                putEntry(directory + '/', null);
+            }
+        }
+    }
+
+    @Override
+    public OutputStream newOutputStream(final String path) throws IOException {
+        createDirectories(getParent(path));
+
+        return new ByteArrayOutputStream() {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+
+                if (isPom(path)) {
+                    files.add(path);
+                    poms.put(path, toByteArray());
+                } else if (files.add(path)) {
+                    putEntry(path, this);
+                } else {
+                    throw new IOException("The " + path + " file is already written in the zip");
+                }
+            }
+        };
+    }
+
+    @Override
+    public InputStream newInputStream(String path) throws IOException {
+        byte[] pom = poms.get(path);
+
+        if (pom != null) {
+            return new ByteArrayInputStream(pom);
+        }
+
+        if (files.contains(path)) {
+            throw new IOException("The " + path + " file is already streamed in the zip");
+        }
+
+        throw new FileNotFoundException(path);
+    }
+
+    /**
+     * Adds the POMs to the zip, then finishes and closes it.
+     *
+     * @throws IOException if the zip cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            for (Map.Entry<String, byte[]> pom : new TreeMap<>(poms).entrySet()) {
+                ByteArrayOutputStream content = new ByteArrayOutputStream(pom.getValue().length);
+                content.write(pom.getValue());
+
+                putEntry(pom.getKey(), content);
+            }
+
+            poms.clear();
+        } finally {
+            zip.close();
+        }
+    }
+
+    private synchronized void putEntry(String name, ByteArrayOutputStream content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+
+        if (content != null) {
+            content.writeTo(zip);
+        }
+
+        zip.closeEntry();
+    }
+
+    private static boolean isPom(String path) {
+        return path.equals(POM) || path.endsWith('/' + POM);
+    }
+
+    private static String getParent(String path) {
+        int index = path.lastIndexOf('/');
+
+        return index < 0 ? "" : path.substring(0, index);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.codehaus.plexus.testing.PlexusExtension.getBasedir;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestArchetypeArchive {
+    @TempDir
+    private File directory;
+
+    @Test
+    public void testFileSetArchetype() throws Exception {
+        try (ArchetypeArchive archive = new ArchetypeArchive(getArchetypeFile("fileset_with_postscript"))) {
+            assertTrue(archive.isFileSetArchetype());
+            assertFalse(archive.isOldArchetype());
+
+            assertEquals("fileset", archive.getFileSetArchetypeDescriptor().getName());
+            assertNotNull(archive.getPostGenerationScript());
+            assertTrue(archive.getArchetypeResources().contains("pom.xml"));
+        }
+    }
+
+    @Test
+    public void testOldArchetype() throws Exception {
+        try (ArchetypeArchive archive = new ArchetypeArchive(getArchetypeFile("old"))) {
+            assertFalse(archive.isFileSetArchetype());
+            assertTrue(archive.isOldArchetype());
+
+            assertNull(archive.getFileSetArchetypeDescriptor());
+            assertEquals("old", archive.getOldArchetypeDescriptor().getId());
+            assertNull(archive.getPostGenerationScript());
+            assertTrue(archive.getArchetypeResources().contains("src/main/java/App.java"));
+        }
+    }
+
+    @Test
+    public void testEntries() throws Exception {
+        byte[] expected = Files.readAllBytes(
+                new File(getBasedir(), "src/test/archetypes/old-1.0/archetype-resources/src/main/java/App.java")
+                        .toPath());
+
+        try (ArchetypeArchive archive = new ArchetypeArchive(getArchetypeFile("old"))) {
+            assertTrue(archive.getEntryNames().contains("archetype-resources/src/main/java/App.java"));
+            assertEquals(
+                    expected.length,
+                    archive.getEntry("archetype-resources/src/main/java/App.java")
+                            .getSize());
+
+            try (InputStream in = archive.getInputStream("archetype-resources/src/main/java/App.java")) {
+                assertArrayEquals(expected, IOUtils.toByteArray(in));
+            }
+
+            assertNull(archive.getEntry("archetype-resources/missing.txt"));
+            assertNull(archive.getInputStream("archetype-resources/missing.txt"));
+        }
+    }
+
+    @Test
+    public void testCopyEntryReplacesFile() throws Exception {
+        Path target = new File(directory, "App.java").toPath();
+        Files.write(target, "outdated".getBytes(StandardCharsets.UTF_8));
+
+        try (ArchetypeArchive archive = new ArchetypeArchive(getArchetypeFile("old"))) {
+            archive.copyEntry("archetype-resources/src/main/java/App.java", target);
+
+            assertArrayEquals(
+                    IOUtils.toByteArray(archive.getInputStream("archetype-resources/src/main/java/App.java")),
+                    Files.readAllBytes(target));
+
+            assertThrows(
+                    IOException.class,
+                    () -> archive.copyEntry(
+                            "archetype-resources/missing.txt", new File(directory, "missing.txt").toPath()));
+        }
+    }
+
+    @Test
+    public void testArchiveFromMetadata() throws Exception {
+        File archetypeFile = getArchetypeFile("fileset_with_postscript");
+
+        ArchetypeMetadataIndex.Metadata metadata;
+        try (ArchetypeArchive archive = new ArchetypeArchive(archetypeFile)) {
+            metadata = ArchetypeMetadataIndex.Metadata.of(archive);
+        }
+
+        try (ArchetypeArchive archive = new ArchetypeArchive(archetypeFile, metadata)) {
+            assertTrue(archive.isFileSetArchetype());
+            assertEquals("fileset", archive.getFileSetArchetypeDescriptor().getName());
+            assertEquals(metadata.getArchetypeResources(), archive.getArchetypeResources());
+
+            // the jar is only opened to read entries
+            assertNotNull(archive.getEntry("archetype-resources/pom.xml"));
+        }
+    }
+
+    private static File getArchetypeFile(String artifactId) {
+        // archetypes prepared by antrun execution (see pom.xml) from src/test/archetypes
+        return new File(
+                getBasedir(),
+                "target/test-classes/repositories/central/archetypes/" + artifactId + "/1.0/" + artifactId
+                        + "-1.0.jar");
+    }
+}
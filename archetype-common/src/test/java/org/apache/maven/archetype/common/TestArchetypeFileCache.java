@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.common;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.archetype.downloader.DownloadException;
+import org.junit.jupiter.api.Test;
+
+import static org.codehaus.plexus.testing.PlexusExtension.getBasedir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestArchetypeFileCache {
+    private final File archetype = new File(getBasedir(), "pom.xml");
+
+    @Test
+    public void testConcurrentCallersShareResolution() throws Exception {
+        ArchetypeFileCache cache = new ArchetypeFileCache();
+        AtomicInteger resolutions = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<File>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return cache.get("g:a:1.0", "[]", () -> {
+                        resolutions.incrementAndGet();
+                        // give the other callers time to ask for the same archetype
+                        pause(50);
+                        return archetype;
+                    });
+                }));
+            }
+            start.countDown();
+
+            for (Future<File> future : futures) {
+                assertSame(archetype, future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, resolutions.get());
+    }
+
+    @Test
+    public void testFailureIsCachedForSameRepositories() {
+        ArchetypeFileCache cache = new ArchetypeFileCache();
+        AtomicInteger resolutions = new AtomicInteger();
+        ArchetypeFileCache.Resolver failing = () -> {
+            resolutions.incrementAndGet();
+            throw new DownloadException("not found", null);
+        };
+
+        assertThrows(DownloadException.class, () -> cache.get("g:a:1.0", "[central]", failing));
+        assertThrows(DownloadException.class, () -> cache.get("g:a:1.0", "[central]", failing));
+        assertEquals(1, resolutions.get());
+
+        // other repositories may provide the archetype
+        assertThrows(DownloadException.class, () -> cache.get("g:a:1.0", "[central, other]", failing));
+        assertEquals(2, resolutions.get());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws Exception {
+        ArchetypeFileCache cache = new ArchetypeFileCache(2, ArchetypeFileCache.DEFAULT_TTL, 0);
+
+        cache.get("g:a:1.0", "[]", () -> archetype);
+        Thread.sleep(1);
+        cache.get("g:b:1.0", "[]", () -> archetype);
+        Thread.sleep(1);
+        cache.get("g:a:1.0", "[]", () -> archetype);
+        Thread.sleep(1);
+        cache.get("g:c:1.0", "[]", () -> archetype);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.getIfPresent("g:a:1.0"));
+        assertNull(cache.getIfPresent("g:b:1.0"));
+        assertNotNull(cache.getIfPresent("g:c:1.0"));
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
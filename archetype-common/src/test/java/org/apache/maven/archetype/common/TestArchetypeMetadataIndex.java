@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.maven.archetype.metadata.ArchetypeDescriptor;
+import org.apache.maven.archetype.metadata.io.xpp3.ArchetypeDescriptorXpp3Writer;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.codehaus.plexus.testing.PlexusExtension.getBasedir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestArchetypeMetadataIndex {
+    private File localRepository;
+
+    private File archetypeFile;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        localRepository = new File(getBasedir(), "target/test-classes/repositories/index-test");
+        FileUtils.deleteDirectory(localRepository);
+
+        // archetype prepared by antrun execution (see pom.xml) from src/test/archetypes
+        File archetype = new File(
+                getBasedir(),
+                "target/test-classes/repositories/central/archetypes/fileset_with_postscript/1.0"
+                        + "/fileset_with_postscript-1.0.jar");
+        archetypeFile = new File(localRepository, "fileset_with_postscript-1.0.jar");
+        archetypeFile.getParentFile().mkdirs();
+        Files.copy(archetype.toPath(), archetypeFile.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ArchetypeMetadataIndex index = new ArchetypeMetadataIndex(localRepository);
+
+        assertNull(index.read("archetypes", "fileset_with_postscript", "1.0", archetypeFile));
+
+        ArchetypeMetadataIndex.Metadata expected;
+        try (ArchetypeArchive archive = new ArchetypeArchive(archetypeFile)) {
+            expected = ArchetypeMetadataIndex.Metadata.of(archive);
+        }
+
+        index.write("archetypes", "fileset_with_postscript", "1.0", archetypeFile, expected);
+        assertTrue(index.getIndexFile("archetypes", "fileset_with_postscript", "1.0")
+                .isFile());
+
+        ArchetypeMetadataIndex.Metadata actual =
+                index.read("archetypes", "fileset_with_postscript", "1.0", archetypeFile);
+        assertNotNull(actual);
+
+        assertTrue(actual.isFileSetArchetype());
+        assertFalse(actual.isOldArchetype());
+        assertEquals(expected.getArchetypeResources(), actual.getArchetypeResources());
+        assertNotNull(actual.getPostGenerationScript());
+        assertEquals(expected.getPostGenerationScript(), actual.getPostGenerationScript());
+        assertEquals(toXml(expected.getArchetypeDescriptor()), toXml(actual.getArchetypeDescriptor()));
+    }
+
+    @Test
+    public void testOutOfDateEntryIsIgnored() throws Exception {
+        ArchetypeMetadataIndex index = new ArchetypeMetadataIndex(localRepository);
+
+        try (ArchetypeArchive archive = new ArchetypeArchive(archetypeFile)) {
+            index.write(
+                    "archetypes",
+                    "fileset_with_postscript",
+                    "1.0",
+                    archetypeFile,
+                    ArchetypeMetadataIndex.Metadata.of(archive));
+        }
+
+        assertTrue(archetypeFile.setLastModified(archetypeFile.lastModified() - 60_000L));
+
+        assertNull(index.read("archetypes", "fileset_with_postscript", "1.0", archetypeFile));
+    }
+
+    private static String toXml(ArchetypeDescriptor descriptor) throws IOException {
+        StringWriter writer = new StringWriter();
+        new ArchetypeDescriptorXpp3Writer().write(writer, descriptor);
+        return writer.toString();
+    }
+}
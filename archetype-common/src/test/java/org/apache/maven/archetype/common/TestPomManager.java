@@ -18,19 +18,35 @@
  */
 package org.apache.maven.archetype.common;
 
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.maven.archetype.exception.InvalidPackaging;
+import org.apache.maven.archetype.old.ArchetypeTemplateProcessingException;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.junit.jupiter.api.Test;
+import org.xml.sax.SAXException;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 public class TestPomManager {
 
@@ -56,6 +72,27 @@ public class TestPomManager {
         assertFalse(matcher.find());
     }
 
+    @Test
+    public void testAddModulesAsAddModule() throws Exception {
+        PomManager pomManager = new DefaultPomManager();
+
+        Path pomPath = Paths.get(
+                getClass().getResource("/projects/pom-manager/pom-sample-1.xml").toURI());
+        Path sequentialPath = pomPath.getParent().resolve("pom-sample-1-sequential.xml");
+        Path batchedPath = pomPath.getParent().resolve("pom-sample-1-batched.xml");
+        Files.copy(pomPath, sequentialPath, StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(pomPath, batchedPath, StandardCopyOption.REPLACE_EXISTING);
+
+        for (String module : Arrays.asList("test0", "test1", "test0", "test2")) {
+            pomManager.addModule(sequentialPath.toFile(), module);
+        }
+        pomManager.addModules(batchedPath.toFile(), Arrays.asList("test0", "test1", "test0", "test2"));
+
+        assertEquals(
+                new String(Files.readAllBytes(sequentialPath), StandardCharsets.UTF_8),
+                new String(Files.readAllBytes(batchedPath), StandardCharsets.UTF_8));
+    }
+
     @Test
     public void testAddModuleNonPomPackaging() throws Exception {
         PomManager pomManager = new DefaultPomManager();
@@ -74,4 +111,90 @@ public class TestPomManager {
 
         assertNotNull(expectedException);
     }
+
+    @Test
+    public void testMergeGeneratedModel() throws Exception {
+        PomManager pomManager = new DefaultPomManager();
+
+        Path pomPath = Paths.get(
+                getClass().getResource("/projects/pom-manager/pom-sample-1.xml").toURI());
+        Path fromFile = pomPath.getParent().resolve("pom-sample-1-merged-from-file.xml");
+        Path fromModel = pomPath.getParent().resolve("pom-sample-1-merged-from-model.xml");
+        Path generatedPom = pomPath.getParent().resolve("pom-sample-1-generated.xml");
+        Files.copy(pomPath, fromFile, StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(pomPath, fromModel, StandardCopyOption.REPLACE_EXISTING);
+
+        Model generatedModel = new Model();
+        generatedModel.setModelVersion("4.0.0");
+        generatedModel.addProperty("generated", "true");
+        Dependency dependency = new Dependency();
+        dependency.setGroupId("org.example");
+        dependency.setArtifactId("generated");
+        dependency.setVersion("1.0");
+        generatedModel.addDependency(dependency);
+        pomManager.writePom(generatedModel, generatedPom.toFile(), pomPath.toFile());
+
+        pomManager.mergePoms(fromFile.toFile(), generatedPom.toFile());
+        pomManager.mergePoms(fromModel.toFile(), pomManager.readPom(generatedPom.toFile()));
+
+        assertArrayEquals(Files.readAllBytes(fromFile), Files.readAllBytes(fromModel));
+        Model merged = pomManager.readPom(fromModel.toFile());
+        assertEquals("true", merged.getProperties().getProperty("generated"));
+        assertEquals("generated", merged.getDependencies().get(0).getArtifactId());
+    }
+
+    @Test
+    public void testDefaultMethods() throws Exception {
+        DefaultPomManager delegate = new DefaultPomManager();
+        // implements only the methods which existed before the default ones
+        PomManager pomManager = new PomManager() {
+            @Override
+            public void addModule(File basedirPom, String artifactId)
+                    throws IOException, ParserConfigurationException, TransformerException, SAXException,
+                            InvalidPackaging, ArchetypeTemplateProcessingException {
+                delegate.addModule(basedirPom, artifactId);
+            }
+
+            @Override
+            public void addParent(File pom, File basedirPom) throws IOException, XmlPullParserException {
+                delegate.addParent(pom, basedirPom);
+            }
+
+            @Override
+            public void mergePoms(File pom, File temporaryPom) throws IOException, XmlPullParserException {
+                delegate.mergePoms(pom, temporaryPom);
+            }
+
+            @Override
+            public Model readPom(File pomFile) throws IOException, XmlPullParserException {
+                return delegate.readPom(pomFile);
+            }
+
+            @Override
+            public Model readPom(InputStream pomStream) throws IOException, XmlPullParserException {
+                return delegate.readPom(pomStream);
+            }
+
+            @Override
+            public void writePom(Model model, File pomFile, File initialPomFile) throws IOException {
+                delegate.writePom(model, pomFile, initialPomFile);
+            }
+        };
+
+        byte[] pom = Files.readAllBytes(Paths.get(
+                getClass().getResource("/projects/pom-manager/pom-sample-1.xml").toURI()));
+
+        assertArrayEquals(
+                delegate.addModules(pom, Arrays.asList("test0", "test1")),
+                pomManager.addModules(pom, Arrays.asList("test0", "test1")));
+        assertNull(pomManager.addModules(
+                pomManager.addModules(pom, Arrays.asList("test0", "test1")), Arrays.asList("test1")));
+
+        Model generatedModel = new Model();
+        generatedModel.setModelVersion("4.0.0");
+        generatedModel.addProperty("generated", "true");
+
+        Model merged = pomManager.readPom(new ByteArrayInputStream(pomManager.mergePoms(pom, generatedModel)));
+        assertEquals("true", merged.getProperties().getProperty("generated"));
+    }
 }
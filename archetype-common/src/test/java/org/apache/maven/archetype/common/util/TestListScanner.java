@@ -86,4 +86,52 @@ public class TestListScanner {
         assertTrue(result.contains("src\\main\\java\\App.java"));
         assertTrue(result.contains("src\\main\\java\\inner\\package\\App2.java"));
     }
+
+    @Test
+    public void testIndexedScanMatchesListScan() {
+        List<String> archetypeResources = new ArrayList<>();
+
+        archetypeResources.add("pom.xml");
+        archetypeResources.add("App.java");
+        archetypeResources.add("src/main/java/App.java");
+        archetypeResources.add("src/main/java/inner/package/App2.java");
+        archetypeResources.add("src/main/resources/App.properties");
+        archetypeResources.add("src/test/java/AppTest.java");
+        archetypeResources.add("module/pom.xml");
+        archetypeResources.add("module/src/main/java/App.java");
+        archetypeResources.add("module/src/main/resources/");
+        archetypeResources.add("module/src/main/resources/log.xml");
+        archetypeResources.add("module/src/main/javascript/app.js");
+
+        PathIndex index = new PathIndex(archetypeResources);
+
+        String[][] scans = {
+            {"", "**", ""},
+            {"", "*.xml", ""},
+            {"src/main/java", "**/*.java", "**/inner/**"},
+            {"src/main", "java/**,resources/", ""},
+            {"module/src/main/java", "**", ""},
+            {"module/src/main", "java*/**", ""},
+            {"module/src/main/resources", "log.xml", ""},
+            {"module", "src/*/resources/**", ""},
+            {"module", "src/main/java/App.java", ""},
+            {"missing", "**", ""}
+        };
+
+        for (String[] scan : scans) {
+            ListScanner scanner = new ListScanner();
+            scanner.setBasedir(scan[0]);
+            scanner.setIncludes(scan[1]);
+            scanner.setExcludes(scan[2]);
+            scanner.setCaseSensitive(true);
+
+            ListScanner indexedScanner = new ListScanner();
+            indexedScanner.setBasedir(scan[0]);
+            indexedScanner.setIncludes(scan[1]);
+            indexedScanner.setExcludes(scan[2]);
+            indexedScanner.setCaseSensitive(true);
+
+            assertEquals(scanner.scan(archetypeResources), indexedScanner.scan(index), String.join(" ", scan));
+        }
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.creator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CreationTasksTest {
+    @Test
+    public void testNestedTasksInOrder() throws Exception {
+        try (CreationTasks tasks = new CreationTasks(2)) {
+            List<CreationTasks.Task<String>> modules = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String module = "module" + i;
+                modules.add(() -> {
+                    List<CreationTasks.Task<String>> files = new ArrayList<>();
+                    for (int j = 0; j < 8; j++) {
+                        String file = module + "/file" + j;
+                        files.add(() -> file);
+                    }
+                    return String.join(",", tasks.runAll(files));
+                });
+            }
+
+            List<String> results = tasks.runAll(modules);
+
+            assertEquals(8, results.size());
+            for (int i = 0; i < 8; i++) {
+                List<String> files = new ArrayList<>();
+                for (int j = 0; j < 8; j++) {
+                    files.add("module" + i + "/file" + j);
+                }
+                assertEquals(String.join(",", files), results.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testFirstFailureReportedAfterAllTasks() {
+        AtomicInteger run = new AtomicInteger();
+
+        try (CreationTasks tasks = new CreationTasks(4)) {
+            IOException failure = assertThrows(
+                    IOException.class,
+                    () -> tasks.runAll(Arrays.<CreationTasks.Task<Void>>asList(
+                            () -> {
+                                run.incrementAndGet();
+                                return null;
+                            },
+                            () -> {
+                                run.incrementAndGet();
+                                throw new IOException("first");
+                            },
+                            () -> {
+                                run.incrementAndGet();
+                                throw new IOException("second");
+                            },
+                            () -> {
+                                run.incrementAndGet();
+                                return null;
+                            })));
+
+            assertEquals("first", failure.getMessage());
+            assertEquals(4, run.get());
+        }
+    }
+}
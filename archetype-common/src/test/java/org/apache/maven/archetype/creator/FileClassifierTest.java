@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.creator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.archetype.common.ArchetypeFilesResolver;
+import org.apache.maven.archetype.common.DefaultArchetypeFilesResolver;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FileClassifierTest {
+    private static final List<String> FILES = Arrays.asList(
+            "README.md",
+            ".gitignore",
+            "src/main/java/org/acme/App.java",
+            "src/main/java/org/acme/util/Util.java",
+            "src/main/java/org/acme/logo.png",
+            "src/main/groovy/org/acme/Script.groovy",
+            "src/main/resources/app.properties",
+            "src/main/resources/META-INF/beans.xml",
+            "src/main/webapp/WEB-INF/web.xml",
+            "src/test/java/org/acme/AppTest.java",
+            "src/test/resources/test.xml",
+            "src/site/site.xml",
+            "src/site/apt/index.apt",
+            "src/site/java/Odd.java",
+            "src/it/java/org/acme/AppIT.java",
+            "src/it/resources/it.xml",
+            "docs/java/Sample.java",
+            "docs/guide/intro.txt",
+            "java/Root.java",
+            "groovy/Root.groovy",
+            "etc/config/app.conf",
+            "etc/notes.txt",
+            "src/main/java/org/acme/.gitignore");
+
+    @Test
+    public void testSameGroupsAsResolverScans() {
+        List<List<String>> languages =
+                Arrays.asList(Collections.emptyList(), Arrays.asList("java"), Arrays.asList("java", "groovy"));
+        List<List<String>> filtereds = Arrays.asList(
+                Collections.emptyList(),
+                Arrays.asList("java", "xml"),
+                Arrays.asList("java", "properties", ".gitignore"));
+
+        for (List<String> language : languages) {
+            for (List<String> filtered : filtereds) {
+                List<String> ignored = new ArrayList<>();
+                List<String> groups = new ArrayList<>();
+                for (FileClassifier.Group group : new FileClassifier(language, filtered).classify(FILES, ignored)) {
+                    groups.add(describe(group.level, group.packaged, group.filtered, group.files));
+                }
+                groups.add("ignored " + ignored);
+
+                assertEquals(scan(FILES, language, filtered), groups, language + " " + filtered);
+            }
+        }
+    }
+
+    @Test
+    public void testNoThirdLevelResourcesWithoutThirdLevelSources() {
+        List<String> ignored = new ArrayList<>();
+        List<FileClassifier.Group> groups = new FileClassifier(Arrays.asList("java"), Arrays.asList("txt"))
+                .classify(Arrays.asList("a/b/c.txt", "a/b.txt", "c.txt"), ignored);
+
+        assertEquals(2, groups.size());
+        assertEquals(2, groups.get(0).level);
+        assertEquals(Arrays.asList("a/b/c.txt", "a/b.txt"), groups.get(0).files);
+        assertEquals(0, groups.get(1).level);
+        assertEquals(Arrays.asList("c.txt"), groups.get(1).files);
+        assertEquals(Collections.emptyList(), ignored);
+    }
+
+    /**
+     * The successive resolver scans the classifier replaces.
+     */
+    private static List<String> scan(List<String> fileNames, List<String> languages, List<String> filtereds) {
+        ArchetypeFilesResolver resolver = new DefaultArchetypeFilesResolver();
+
+        StringBuilder languageIncludes = new StringBuilder();
+        for (String language : languages) {
+            languageIncludes.append(((languageIncludes.length() == 0) ? "" : ",") + language + "/**");
+        }
+        String li = languageIncludes.toString();
+
+        StringBuilder filteredIncludes = new StringBuilder();
+        for (String filtered : filtereds) {
+            filteredIncludes.append(((filteredIncludes.length() == 0) ? "" : ",") + "**/"
+                    + (filtered.startsWith(".") ? "" : "*.") + filtered);
+        }
+        String fi = filteredIncludes.toString();
+
+        List<String> files = new ArrayList<>(fileNames);
+        List<String> groups = new ArrayList<>();
+
+        add(groups, resolver, fi, files, resolver.findSourcesMainFiles(files, li), 3, true);
+        add(groups, resolver, fi, files, resolver.findResourcesMainFiles(files, li), 3, false);
+        add(groups, resolver, fi, files, resolver.findSourcesTestFiles(files, li), 3, true);
+        add(groups, resolver, fi, files, resolver.findResourcesTestFiles(files, li), 3, false);
+        add(groups, resolver, fi, files, resolver.findSiteFiles(files, li), 2, false);
+        List<String> thirdLevelSources = resolver.findOtherSources(3, files, li);
+        if (!thirdLevelSources.isEmpty()) {
+            add(groups, resolver, fi, files, new ArrayList<>(thirdLevelSources), 3, true);
+            add(groups, resolver, fi, files, resolver.findOtherResources(3, files, thirdLevelSources, li), 3, false);
+        }
+        add(groups, resolver, fi, files, resolver.findOtherSources(2, files, li), 2, true);
+        add(groups, resolver, fi, files, resolver.findOtherResources(2, files, li), 2, false);
+        add(groups, resolver, fi, files, resolver.findOtherResources(0, files, li), 0, false);
+
+        groups.add("ignored " + files);
+        return groups;
+    }
+
+    private static void add(
+            List<String> groups,
+            ArchetypeFilesResolver resolver,
+            String filteredIncludes,
+            List<String> files,
+            List<String> found,
+            int level,
+            boolean packaged) {
+        if (!found.isEmpty()) {
+            files.removeAll(found);
+
+            List<String> filteredFiles = resolver.getFilteredFiles(found, filteredIncludes);
+            found.removeAll(filteredFiles);
+
+            if (!filteredFiles.isEmpty()) {
+                groups.add(describe(level, packaged, true, filteredFiles));
+            }
+            if (!found.isEmpty()) {
+                groups.add(describe(level, packaged, false, found));
+            }
+        }
+    }
+
+    private static String describe(int level, boolean packaged, boolean filtered, List<String> files) {
+        return level + (packaged ? " packaged" : "") + (filtered ? " filtered " : " ") + files;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.creator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class FilesetArchetypeCreatorTest {
+    @Test
+    public void testLatin1AfterAsciiSampleKept() throws Exception {
+        byte[] content = new byte[9000];
+        Arrays.fill(content, (byte) 'a');
+        // e acute in ISO-8859-1, after the 8000 bytes sampled for detection
+        content[8500] = (byte) 0xE9;
+
+        String encoding = FilesetArchetypeCreator.getCharsetEncoding(content);
+
+        assertNotEquals("UTF-8", encoding);
+        assertArrayEquals(content, new String(content, encoding).getBytes(encoding));
+    }
+
+    @Test
+    public void testUtf8AfterAsciiSample() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 8100; i++) {
+            text.append('a');
+        }
+        text.append("café");
+
+        assertEquals(
+                "UTF-8",
+                FilesetArchetypeCreator.getCharsetEncoding(text.toString().getBytes(StandardCharsets.UTF_8)));
+        assertEquals("UTF-8", FilesetArchetypeCreator.getCharsetEncoding("plain".getBytes(StandardCharsets.US_ASCII)));
+    }
+}
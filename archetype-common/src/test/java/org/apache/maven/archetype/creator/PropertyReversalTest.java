@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.creator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.codehaus.plexus.util.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class PropertyReversalTest {
+    private static final String CONTENT = "package org.acme.app;\n"
+            + "// ${user.home} \\n #if $artifactId\r\n"
+            + "public class App { String id = \"my-app\"; String version = \"1.0-SNAPSHOT\"; }\n"
+            + "my-appmy-app org.acme.ap";
+
+    @Test
+    public void testSameAsReplacingEachProperty() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("artifactId", "my-app");
+        properties.put("version", "1.0-SNAPSHOT");
+        properties.put("package", "org.acme.app");
+        properties.put("empty", "");
+
+        PropertyReversal reversal = new PropertyReversal(properties);
+
+        String expected =
+                StringUtils.replace(StringUtils.replace(CONTENT, "$", "${symbol_dollar}"), "\\", "${symbol_escape}");
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            expected = StringUtils.replace(expected, property.getValue(), "${" + property.getKey() + "}");
+        }
+        expected = PropertyReversal.ESCAPE_HEADER + StringUtils.replace(expected, "#", "${symbol_pound}");
+
+        assertEquals(expected, reversal.reverseEscaped(CONTENT));
+        assertEquals(
+                "src/main/java/__package__/__artifactId__.java",
+                reversal.reverseFilename("src/main/java/org.acme.app/my-app.java"));
+        assertEquals("${artifactId} ${version}", reversal.reverse("my-app 1.0-SNAPSHOT"));
+        assertNull(reversal.reverse(null));
+    }
+
+    @Test
+    public void testLongestValueReplaced() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("groupId", "org.acme");
+        properties.put("package", "org.acme.app");
+        properties.put("artifactId", "app");
+        properties.put("alias", "org.acme");
+
+        PropertyReversal reversal = new PropertyReversal(properties);
+
+        assertEquals(
+                "import ${package}.App; import ${groupId}.Other; ${artifactId}s",
+                reversal.reverse("import org.acme.app.App; import org.acme.Other; apps"));
+        assertEquals("${package}${artifactId}", reversal.reverse("org.acme.appapp"));
+    }
+
+    @Test
+    public void testEscapesNotReversed() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("word", "symbol");
+        properties.put("dollar", "$x");
+        properties.put("pound", "#y");
+
+        PropertyReversal reversal = new PropertyReversal(properties);
+
+        assertEquals(
+                PropertyReversal.ESCAPE_HEADER + "${symbol_dollar}x ${word} ${pound}",
+                reversal.reverseEscaped("$x symbol #y"));
+        assertEquals("${dollar} ${word} ${pound}", reversal.reverse("$x symbol #y"));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.maven.archetype.common.ArchetypeArchive;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ArchetypeTemplateEngineTest {
+    @TempDir
+    private File directory;
+
+    @Test
+    public void testTemplatesReadFromOpenArchives() throws Exception {
+        File jar = new File(directory, "archetype.jar");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar.toPath()))) {
+            addEntry(zip, "archetype-resources/pom.xml", "#parse(\"header.vm\")#parse(\"/common/footer.vm\")");
+            addEntry(zip, "archetype-resources/header.vm", "<${artifactId}>");
+            addEntry(zip, "common/footer.vm", "</${artifactId}>");
+        }
+
+        ArchetypeTemplateEngine engine = new ArchetypeTemplateEngine(properties -> {});
+
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        try (ArchetypeArchive archive = new ArchetypeArchive(jar)) {
+            // templates must not be looked up through the context class loader
+            thread.setContextClassLoader(null);
+
+            try (Closeable templates = engine.open("0123", archive)) {
+                VelocityContext context = new VelocityContext();
+                context.put("artifactId", "app");
+
+                StringWriter writer = new StringWriter();
+                engine.getTemplate("0123", "archetype-resources/pom.xml", "UTF-8")
+                        .merge(context, writer);
+
+                assertEquals("<app></app>", writer.toString());
+            }
+
+            assertThrows(
+                    ResourceNotFoundException.class,
+                    () -> engine.getTemplate("0123", "archetype-resources/pom.xml", "UTF-8"));
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    @Test
+    public void testIncludesOutsideArchiveFromClassPathAndFiles() throws Exception {
+        File outside = new File(directory, "outside.vm");
+        Files.write(outside.toPath(), "[${artifactId}]".getBytes(StandardCharsets.UTF_8));
+
+        File jar = new File(directory, "archetype.jar");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar.toPath()))) {
+            addEntry(
+                    zip,
+                    "archetype-resources/pom.xml",
+                    "#parse(\"" + outside.getAbsolutePath().replace('\\', '/') + "\")"
+                            + "#include(\"/projects/pom-manager/pom-sample-1.xml\")");
+        }
+
+        ArchetypeTemplateEngine engine = new ArchetypeTemplateEngine(properties -> {});
+
+        try (ArchetypeArchive archive = new ArchetypeArchive(jar);
+                Closeable templates = engine.open("0123", archive)) {
+            VelocityContext context = new VelocityContext();
+            context.put("artifactId", "app");
+
+            StringWriter writer = new StringWriter();
+            engine.getTemplate("0123", "archetype-resources/pom.xml", "UTF-8").merge(context, writer);
+
+            assertTrue(writer.toString().startsWith("[app]"), writer.toString());
+            assertTrue(writer.toString().contains("<project"), writer.toString());
+        }
+    }
+
+    private static void addEntry(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+}
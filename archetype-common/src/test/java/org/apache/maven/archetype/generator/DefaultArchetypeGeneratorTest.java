@@ -20,19 +20,43 @@ package org.apache.maven.archetype.generator;
 
 import javax.inject.Inject;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.maven.archetype.ArchetypeGenerationPlan;
+import org.apache.maven.archetype.ArchetypeGenerationReport;
 import org.apache.maven.archetype.ArchetypeGenerationRequest;
 import org.apache.maven.archetype.ArchetypeGenerationResult;
+import org.apache.maven.archetype.exception.ArchetypeNotDefined;
+import org.apache.maven.archetype.exception.InvalidPackaging;
+import org.apache.maven.archetype.old.OldArchetype;
+import org.apache.maven.archetype.output.InMemorySink;
+import org.apache.maven.archetype.output.ZipStreamSink;
 import org.apache.maven.model.Model;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.codehaus.plexus.testing.PlexusTest;
 import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.xml.XmlStreamReader;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.eclipse.aether.DefaultRepositorySystemSession;
@@ -43,8 +67,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.codehaus.plexus.testing.PlexusExtension.getBasedir;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -63,6 +90,8 @@ public class DefaultArchetypeGeneratorTest {
 
     private static final Archetype ARCHETYPE_OLD = new Archetype("archetypes", "old", "1.0");
 
+    private static final Archetype ARCHETYPE_OVERLAP = new Archetype("archetypes", "overlap", "1.0");
+
     private static final Archetype ARCHETYPE_FILESET_WITH_POSTCREATE_SCRIPT =
             new Archetype("archetypes", "fileset_with_postscript", "1.0");
 
@@ -91,6 +120,9 @@ public class DefaultArchetypeGeneratorTest {
     @Inject
     private RepositorySystem repositorySystem;
 
+    @Inject
+    private OldArchetype oldArchetype;
+
     private String outputDirectory;
 
     private File projectDirectory;
@@ -178,6 +210,26 @@ public class DefaultArchetypeGeneratorTest {
         assertTrue(parentModel.getModules().contains("file-value"));
     }
 
+    @Test
+    public void testGenerateArchetypeWithJarParent() throws Exception {
+        ArchetypeGenerationRequest request = createArchetypeGenerationRequest("generate-21", ARCHETYPE_FILESET);
+
+        FileUtils.deleteDirectory(outputDirectory);
+        File projectFile = getProjectFile();
+        projectFile.getParentFile().mkdirs();
+        FileUtils.fileWrite(
+                projectFile,
+                "UTF-8",
+                "<project><modelVersion>4.0.0</modelVersion><groupId>parent</groupId>"
+                        + "<artifactId>parent</artifactId><version>1.0</version><packaging>jar</packaging></project>");
+
+        ArchetypeGenerationResult result = generateProjectFromArchetypeWithFailure(request);
+
+        assertInstanceOf(InvalidPackaging.class, result.getCause());
+        // checked before the module is generated
+        assertFalse(new File(projectDirectory, "pom.xml").exists());
+    }
+
     @Test
     public void testGenerateArchetypePartialOnChild() throws Exception {
         ArchetypeGenerationRequest request = createArchetypeGenerationRequest("generate-8", ARCHETYPE_PARTIAL);
@@ -372,6 +424,360 @@ public class DefaultArchetypeGeneratorTest {
         assertEquals("file-value", model.getVersion());
     }
 
+    @Test
+    public void testGenerateFileSetArchetypeWithContentCache() throws Exception {
+        File contentCache = new File(getBasedir(), "target/test-classes/content-cache");
+        FileUtils.deleteDirectory(contentCache);
+
+        for (int i = 0; i < 2; i++) {
+            ArchetypeGenerationRequest request = createArchetypeGenerationRequest("generate-13", ARCHETYPE_FILESET);
+            request.setContentCacheDirectory(contentCache);
+            request.setLinkCachedContent(true);
+
+            FileUtils.deleteDirectory(projectDirectory);
+
+            generateProjectFromArchetype(request);
+
+            assertTemplateContentGeneratedWithFileSetArchetype(
+                    "src/main/java/file/value/package/App.java", "file-value");
+            assertTemplateCopiedWithFileSetArchetype("src/main/java/file/value/package/App.ogg");
+            assertTemplateCopiedWithFileSetArchetype("src/main/resources/some-dir/App.png");
+        }
+
+        assertTrue(new File(contentCache, "objects").isDirectory());
+        assertEquals(1, new File(contentCache, "archives").list().length);
+    }
+
+    @Test
+    public void testContentCacheCopiesWritable() throws Exception {
+        File contentCache = new File(getBasedir(), "target/test-classes/content-cache-writable");
+        FileUtils.deleteDirectory(contentCache);
+
+        ArchetypeGenerationRequest request = createArchetypeGenerationRequest("generate-23", ARCHETYPE_FILESET);
+        request.setContentCacheDirectory(contentCache);
+
+        for (int i = 0; i < 2; i++) {
+            FileUtils.deleteDirectory(projectDirectory);
+
+            generateProjectFromArchetype(request);
+
+            File copied = new File(projectDirectory, "src/main/java/file/value/package/App.ogg");
+            assertTrue(copied.isFile());
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                assertTrue(Files.getPosixFilePermissions(copied.toPath()).contains(PosixFilePermission.OWNER_WRITE));
+            }
+
+            // objects stored read-only by an older cache
+            for (File object : FileUtils.getFiles(new File(contentCache, "objects"), "**", null)) {
+                object.setReadOnly();
+            }
+        }
+    }
+
+    @Test
+    public void testContentCacheDamaged() throws Exception {
+        File contentCache = new File(getBasedir(), "target/test-classes/content-cache-damaged");
+        FileUtils.deleteDirectory(contentCache);
+
+        ArchetypeGenerationRequest request = createArchetypeGenerationRequest("generate-22", ARCHETYPE_FILESET);
+        request.setContentCacheDirectory(contentCache);
+        request.setLinkCachedContent(true);
+        FileUtils.deleteDirectory(projectDirectory);
+
+        generateProjectFromArchetype(request);
+
+        List<File> objects = FileUtils.getFiles(new File(contentCache, "objects"), "**", null);
+        assertFalse(objects.isEmpty());
+        for (File object : objects) {
+            // same size, other content
+            byte[] content = Files.readAllBytes(object.toPath());
+            Arrays.fill(content, (byte) '#');
+            Files.write(object.toPath(), content);
+            object.setLastModified(object.lastModified() - 60000);
+        }
+
+        FileUtils.deleteDirectory(projectDirectory);
+        generateProjectFromArchetype(request);
+
+        assertTemplateCopiedWithFileSetArchetype("src/main/java/file/value/package/App.ogg");
+        assertTemplateCopiedWithFileSetArchetype("src/main/resources/some-dir/App.png");
+    }
+
+    @Test
+    public void testGenerateFileSetArchetypeInParallel() throws Exception {
+        ArchetypeGenerationRequest request = createArchetypeGenerationRequest("generate-14", ARCHETYPE_FILESET);
+        FileUtils.deleteDirectory(projectDirectory);
+        generateProjectFromArchetype(request);
+        File sequentialProjectDirectory = projectDirectory;
+
+        request = createArchetypeGenerationRequest("generate-15", ARCHETYPE_FILESET);
+        request.setParallelism(4);
+        FileUtils.deleteDirectory(projectDirectory);
+        generateProjectFromArchetype(request);
+
+        List<String> files = FileUtils.getFileNames(sequentialProjectDirectory, "**", null, false);
+        List<String> parallelFiles = FileUtils.getFileNames(projectDirectory, "**", null, false);
+        Collections.sort(files);
+        Collections.sort(parallelFiles);
+        assertEquals(files, parallelFiles);
+
+        for (String file : files) {
+            assertArrayEquals(
+                    Files.readAllBytes(new File(sequentialProjectDirectory, file).toPath()),
+                    Files.readAllBytes(new File(projectDirectory, file).toPath()),
+                    file);
+        }
+    }
+
+    @Test
+    public void testGenerateOverlappingFileSetsInParallel() throws Exception {
+        for (int parallelism : new int[] {1, 4}) {
+            ArchetypeGenerationRequest request =
+                    createArchetypeGenerationRequest("generate-overlap-" + parallelism, ARCHETYPE_OVERLAP);
+            request.setParallelism(parallelism);
+            FileUtils.deleteDirectory(projectDirectory);
+            generateProjectFromArchetype(request);
+
+            // the first fileset filters the files the second one would copy
+            for (int i = 1; i <= 16; i++) {
+                assertEquals(
+                        "artifactId=file-value",
+                        FileUtils.fileRead(new File(projectDirectory, "src/main/resources/file-" + i + ".txt"))
+                                .trim(),
+                        "parallelism " + parallelism);
+            }
+            assertEquals(
+                    "artifactId=${artifactId}",
+                    FileUtils.fileRead(new File(projectDirectory, "src/main/resources/App.properties"))
+                            .trim());
+        }
+    }
+
+    @Test
+    public void testGenerationReport() throws Exception {
+        ArchetypeGenerationRequest request = createArchetypeGenerationRequest("generate-18", ARCHETYPE_FILESET);
+        FileUtils.deleteDirectory(projectDirectory);
+
+        ArchetypeGenerationResult result = new ArchetypeGenerationResult();
+        generator.generateArchetype(request, result);
+        assertNull(result.getCause());
+
+        ArchetypeGenerationReport report = result.getReport();
+        List<String> files = FileUtils.getFileNames(projectDirectory, "**", null, false);
+        assertEquals(files.size(), report.getFilesWritten());
+
+        long filesetFiles = 0;
+        long filesetBytes = 0;
+        for (ArchetypeGenerationReport.Fileset fileset : report.getFilesets()) {
+            filesetFiles += fileset.getFilesWritten();
+            filesetBytes += fileset.getBytesWritten();
+        }
+        // the other files are the POMs of the 3 modules
+        assertEquals(files.size() - 3, filesetFiles);
+        assertTrue(filesetBytes > 0 && filesetBytes < report.getBytesWritten());
+
+        assertTrue(report.getTotalTime() >= report.getTime(ArchetypeGenerationReport.Phase.GENERATION));
+    }
+
+    @Test
+    public void testPlanOnly() throws Exception {
+        ArchetypeGenerationRequest request = createArchetypeGenerationRequest("generate-19", ARCHETYPE_FILESET);
+        FileUtils.deleteDirectory(projectDirectory);
+
+        ArchetypeGenerationResult result = new ArchetypeGenerationResult();
+        generator.generateArchetype(request.setPlanOnly(true), result);
+        assertNull(result.getCause());
+        assertFalse(projectDirectory.exists());
+
+        ArchetypeGenerationPlan plan = result.getPlan();
+        assertFalse(plan.hasConflicts());
+        assertEquals(3, plan.getModules().size());
+
+        Set<File> planned = new HashSet<>();
+        for (ArchetypeGenerationPlan.PlannedFile file : plan.getFiles()) {
+            // the root pom.xml is also part of a fileset, and kept
+            assertNotEquals(ArchetypeGenerationPlan.Action.CONFLICT, file.getAction(), file.toString());
+            planned.add(file.getFile().getAbsoluteFile());
+        }
+
+        generateProjectFromArchetype(request.setPlanOnly(false));
+
+        for (String file : FileUtils.getFileNames(projectDirectory, "**", null, true)) {
+            assertTrue(planned.contains(new File(file).getAbsoluteFile()), file + " not planned");
+        }
+
+        // the module POMs now exist
+        FileUtils.forceDelete(new File(projectDirectory, "pom.xml"));
+
+        result = new ArchetypeGenerationResult();
+        generator.generateArchetype(request.setPlanOnly(true), result);
+        assertNull(result.getCause());
+        assertTrue(result.getPlan().hasConflicts());
+        for (String conflict : result.getPlan().getConflicts()) {
+            assertTrue(conflict.endsWith("pom.xml"), conflict);
+        }
+    }
+
+    @Test
+    public void testIncremental() throws Exception {
+        ArchetypeGenerationRequest request = createArchetypeGenerationRequest("generate-19", ARCHETYPE_FILESET);
+        FileUtils.deleteDirectory(projectDirectory);
+
+        generateProjectFromArchetype(request.setIncremental(true));
+        assertTrue(new File(projectDirectory, GenerationManifest.FILE_NAME).isFile());
+
+        List<File> files = FileUtils.getFiles(projectDirectory, "**", GenerationManifest.FILE_NAME);
+        List<byte[]> contents = new ArrayList<>();
+        for (File file : files) {
+            contents.add(Files.readAllBytes(file.toPath()));
+        }
+
+        File modified = new File(projectDirectory, "subproject/src/main/java/file/value/package/App.java");
+        byte[] modifiedContent = "// modified".getBytes(StandardCharsets.UTF_8);
+        Files.write(modified.toPath(), modifiedContent);
+
+        ArchetypeGenerationResult result = new ArchetypeGenerationResult();
+        generator.generateArchetype(request, result);
+        assertNull(result.getCause());
+        assertEquals(0, result.getReport().getFilesWritten());
+
+        for (int i = 0; i < files.size(); i++) {
+            byte[] expected = files.get(i).equals(modified) ? modifiedContent : contents.get(i);
+            assertArrayEquals(
+                    expected,
+                    Files.readAllBytes(files.get(i).toPath()),
+                    files.get(i).toString());
+        }
+    }
+
+    @Test
+    public void testIncrementalWithLinkedContent() throws Exception {
+        File contentCache = new File(getBasedir(), "target/test-classes/content-cache-incremental");
+        FileUtils.deleteDirectory(contentCache);
+
+        ArchetypeGenerationRequest request = createArchetypeGenerationRequest("generate-20", ARCHETYPE_FILESET);
+        request.setIncremental(true);
+        request.setContentCacheDirectory(contentCache);
+        request.setLinkCachedContent(true);
+        FileUtils.deleteDirectory(projectDirectory);
+
+        generateProjectFromArchetype(request);
+
+        // the copied files get another template hash, as if the archetype changed since they were generated
+        File manifest = new File(projectDirectory, GenerationManifest.FILE_NAME);
+        List<String> lines = new ArrayList<>();
+        int outdated = 0;
+        for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) {
+            if (line.contains(".ogg=")) {
+                line = line.substring(0, line.indexOf('=') + 1) + "0-0" + line.substring(line.indexOf(','));
+                outdated++;
+            }
+            lines.add(line);
+        }
+        Files.write(manifest.toPath(), lines, StandardCharsets.UTF_8);
+        assertTrue(outdated > 0);
+
+        ArchetypeGenerationResult result = new ArchetypeGenerationResult();
+        generator.generateArchetype(request, result);
+        assertNull(result.getCause());
+        assertEquals(outdated, result.getReport().getFilesWritten());
+
+        assertTemplateCopiedWithFileSetArchetype("src/main/java/file/value/package/App.ogg");
+    }
+
+    @Test
+    public void testOutputSinks() throws Exception {
+        ArchetypeGenerationRequest request = createArchetypeGenerationRequest("generate-19", ARCHETYPE_FILESET);
+        FileUtils.deleteDirectory(projectDirectory);
+
+        ArchetypeGenerationResult result = new ArchetypeGenerationResult();
+        generator.generateArchetype(request, result);
+        assertNull(result.getCause());
+
+        Map<String, byte[]> expected = new TreeMap<>();
+        for (String file : FileUtils.getFileNames(projectDirectory, "**", null, false)) {
+            expected.put(
+                    "file-value/" + file.replace(File.separatorChar, '/'),
+                    Files.readAllBytes(new File(projectDirectory, file).toPath()));
+        }
+        FileUtils.deleteDirectory(projectDirectory);
+
+        InMemorySink memory = new InMemorySink();
+        ArchetypeGenerationResult memoryResult = new ArchetypeGenerationResult();
+        generator.generateArchetype(request.setOutputSink(memory), memoryResult);
+        assertNull(memoryResult.getCause());
+        assertFalse(projectDirectory.exists());
+        assertFiles(expected, memory.getFiles());
+        assertEquals(
+                result.getReport().getBytesWritten(), memoryResult.getReport().getBytesWritten());
+
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipStreamSink sink = new ZipStreamSink(zip)) {
+            generateProjectFromArchetype(request.setOutputSink(sink).setParallelism(2));
+        }
+        assertFalse(projectDirectory.exists());
+
+        Map<String, byte[]> zipped = new TreeMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip.toByteArray()))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                if (!entry.isDirectory()) {
+                    zipped.put(entry.getName(), IOUtil.toByteArray(in));
+                }
+            }
+        }
+        assertFiles(expected, zipped);
+    }
+
+    private static void assertFiles(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, byte[]> file : expected.entrySet()) {
+            assertArrayEquals(file.getValue(), actual.get(file.getKey()), file.getKey());
+        }
+    }
+
+    @Test
+    public void testGenerateFileSetArchetypes() throws Exception {
+        ArchetypeGenerationRequest request = createArchetypeGenerationRequest("generate-16", ARCHETYPE_FILESET);
+        FileUtils.deleteDirectory(projectDirectory);
+        generateProjectFromArchetype(request);
+        int fileCount =
+                FileUtils.getFileNames(projectDirectory, "**", null, false).size();
+
+        List<ArchetypeGenerationRequest> requests = new ArrayList<>();
+        for (String artifactId : new String[] {"file-value", "second", "third"}) {
+            request = createArchetypeGenerationRequest("generate-17", ARCHETYPE_FILESET);
+            request.setArtifactId(artifactId);
+            FileUtils.deleteDirectory(new File(outputDirectory, artifactId));
+            requests.add(request);
+        }
+        requests.add(1, createArchetypeGenerationRequest("generate-17", new Archetype("archetypes", null, "1.0")));
+
+        List<ArchetypeGenerationResult> results = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            results.add(new ArchetypeGenerationResult());
+        }
+
+        generator.generateArchetypes(requests, 2, results);
+
+        assertEquals(ArchetypeNotDefined.class, results.get(1).getCause().getClass());
+
+        for (int i : new int[] {0, 2, 3}) {
+            assertNull(results.get(i).getCause());
+
+            String artifactId = requests.get(i).getArtifactId();
+            File batchProjectDirectory = new File(outputDirectory, artifactId);
+
+            assertEquals(
+                    fileCount,
+                    FileUtils.getFileNames(batchProjectDirectory, "**", null, false)
+                            .size());
+
+            assertEquals(
+                    artifactId,
+                    readPom(new File(batchProjectDirectory, "pom.xml")).getArtifactId());
+        }
+    }
+
     @Test
     public void testGenerateOldArchetype() throws Exception {
         ArchetypeGenerationRequest request = createArchetypeGenerationRequest("generate-11", ARCHETYPE_OLD);
@@ -393,6 +799,38 @@ public class DefaultArchetypeGeneratorTest {
         assertEquals("file-value", model.getVersion());
     }
 
+    @Test
+    public void testOldArchetypeConverted() throws Exception {
+        ArchetypeGenerationRequest request = createArchetypeGenerationRequest("generate-11", ARCHETYPE_OLD);
+        FileUtils.deleteDirectory(projectDirectory);
+
+        ArchetypeGenerationResult result = new ArchetypeGenerationResult();
+        generator.generateArchetype(request, result);
+        assertNull(result.getCause());
+
+        // generated by the fileset generator
+        assertFalse(result.getReport().getFilesets().isEmpty());
+
+        Map<String, byte[]> converted = readFiles(projectDirectory);
+        List<String> convertedDirectories = FileUtils.getDirectoryNames(projectDirectory, "**", null, false);
+        FileUtils.deleteDirectory(projectDirectory);
+
+        oldArchetype.createArchetype(request, new File(localRepository, "archetypes/old/1.0/old-1.0.jar"));
+
+        assertFiles(readFiles(projectDirectory), converted);
+        assertEquals(
+                new TreeSet<>(FileUtils.getDirectoryNames(projectDirectory, "**", null, false)),
+                new TreeSet<>(convertedDirectories));
+    }
+
+    private static Map<String, byte[]> readFiles(File directory) throws IOException {
+        Map<String, byte[]> files = new TreeMap<>();
+        for (String file : FileUtils.getFileNames(directory, "**", null, false)) {
+            files.put(file, Files.readAllBytes(new File(directory, file).toPath()));
+        }
+        return files;
+    }
+
     @Test
     public void testPropertiesNotDefined() {
         ArchetypeGenerationRequest request = createArchetypeGenerationRequest("generate-3", ARCHETYPE_BASIC);
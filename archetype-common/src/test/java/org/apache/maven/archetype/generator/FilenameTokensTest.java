@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import java.util.regex.Matcher;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.context.Context;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FilenameTokensTest {
+    private static final String[] PARTS = {
+        "",
+        "/",
+        "src/main/java",
+        "__artifactId__",
+        "__artifactId__-__version__.txt",
+        "__undefined__",
+        "a__b",
+        "x__",
+        "_",
+        "__a/b__",
+        "__path__",
+        "___artifactId__",
+        "__artifactId___"
+    };
+
+    @Test
+    public void testSameAsPatternOnWholePath() {
+        Context context = new VelocityContext();
+        context.put("artifactId", "my-app");
+        context.put("version", "1.0");
+        context.put("path", "a$b");
+        context.put("a/b", "slash");
+
+        FilenameTokens filenameTokens = new FilenameTokens();
+
+        for (String first : PARTS) {
+            for (String second : PARTS) {
+                for (String third : PARTS) {
+                    String expected = replaceWithPattern(first + second + third, context);
+
+                    String actual;
+                    try {
+                        actual = filenameTokens.replace(context, first, second, third);
+                    } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                        actual = e.getClass().getName();
+                    }
+
+                    assertEquals(expected, actual, first + " + " + second + " + " + third);
+                }
+            }
+        }
+    }
+
+    private static String replaceWithPattern(String filePath, Context context) {
+        StringBuffer interpolatedResult = new StringBuffer();
+        Matcher matcher = FilenameTokens.TOKEN_PATTERN.matcher(filePath);
+
+        while (matcher.find()) {
+            String value = (String) context.get(matcher.group(1));
+            if (value != null && !value.trim().isEmpty()) {
+                try {
+                    matcher.appendReplacement(interpolatedResult, value);
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    return e.getClass().getName();
+                }
+            }
+        }
+
+        matcher.appendTail(interpolatedResult);
+
+        return interpolatedResult.toString();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import org.codehaus.plexus.util.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LineSeparatorWriterTest {
+    private static final String CONTENT = "a\r\nb\rc\nd\r\r\n\n\re\r";
+
+    @Test
+    public void testSameAsUnifyLineSeparators() throws IOException {
+        for (String lineSeparator : new String[] {"\n", "\r\n"}) {
+            String expected = StringUtils.unifyLineSeparators(CONTENT, lineSeparator);
+
+            // every split of the content, so that \r\n is also written across two writes
+            for (int i = 0; i <= CONTENT.length(); i++) {
+                StringWriter result = new StringWriter();
+                try (Writer writer = new LineSeparatorWriter(result, lineSeparator)) {
+                    writer.write(CONTENT.substring(0, i));
+                    writer.write(CONTENT.substring(i).toCharArray());
+                }
+
+                assertEquals(expected, result.toString(), "split at " + i);
+            }
+        }
+    }
+
+    @Test
+    public void testSingleCharacters() throws IOException {
+        StringWriter result = new StringWriter();
+        try (Writer writer = new LineSeparatorWriter(result, "\n")) {
+            for (char c : CONTENT.toCharArray()) {
+                writer.write(c);
+            }
+        }
+
+        assertEquals(StringUtils.unifyLineSeparators(CONTENT, "\n"), result.toString());
+    }
+}
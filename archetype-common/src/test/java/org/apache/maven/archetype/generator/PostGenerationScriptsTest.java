@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class PostGenerationScriptsTest {
+    private static final String SCRIPT = "names.add(name)";
+
+    @Test
+    public void testCompiledOnce() {
+        PostGenerationScripts scripts = new PostGenerationScripts();
+
+        List<Object> names = new ArrayList<>();
+        for (String name : new String[] {"first", "second"}) {
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("names", names);
+            variables.put("name", name);
+
+            scripts.run(SCRIPT, variables);
+        }
+
+        assertEquals(Arrays.asList("first", "second"), names);
+        assertEquals(1, scripts.size());
+        assertSame(scripts.getScriptClass(SCRIPT), scripts.getScriptClass(SCRIPT));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        PostGenerationScripts scripts = new PostGenerationScripts(2);
+
+        Class<?> first = scripts.getScriptClass("1");
+        Class<?> second = scripts.getScriptClass("2");
+        scripts.getScriptClass("1");
+        scripts.getScriptClass("3");
+
+        assertEquals(2, scripts.size());
+        assertSame(first, scripts.getScriptClass("1"));
+        assertNotSame(second, scripts.getScriptClass("2"));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.context.Context;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SplicedTemplateTest {
+    private static final String[] SPLICED = {
+        "",
+        "no reference\r\n",
+        "# comment\nkey = value\n#\n",
+        "package ${package};\n\npublic class App {}\n",
+        "${groupId}:${artifactId}:${version}${undefined}",
+        "${property-with-hyphens} ${rootArtifactId}-${empty}",
+        "a \\ b {} } {",
+    };
+
+    private static final String[] VELOCITY = {
+        "#set($a = 1)",
+        "## comment",
+        "#if(true)x#end",
+        "#{if}(true)x#{end}",
+        "$groupId",
+        "$!{groupId}",
+        "${project.name}",
+        "${groupId|default}",
+        "${-hyphen}",
+        "${hyphen-}",
+        "${}",
+        "${groupId",
+        "\\${groupId}",
+        "\\#",
+        "\uFEFFbom",
+    };
+
+    @Test
+    public void testSameAsVelocity() throws IOException {
+        VelocityEngine engine = new VelocityEngine();
+        engine.setProperty("parser.allow_hyphen_in_identifiers", true);
+        engine.setProperty("parser.space_gobbling", "bc");
+        engine.setProperty("runtime.log.log_invalid_references", false);
+        engine.init();
+
+        Context context = new VelocityContext();
+        context.put("package", "org.example");
+        context.put("groupId", "org.example");
+        context.put("artifactId", "app");
+        context.put("version", 1);
+        context.put("property-with-hyphens", "hyphens");
+        context.put("rootArtifactId", "root");
+        context.put("empty", "");
+
+        for (String source : SPLICED) {
+            SplicedTemplate template = SplicedTemplate.parse(source);
+            assertNotNull(template, source);
+
+            StringWriter expected = new StringWriter();
+            engine.evaluate(context, expected, "test", source);
+
+            StringWriter actual = new StringWriter();
+            template.merge(new VelocityContext(context), actual);
+
+            assertEquals(expected.toString(), actual.toString(), source);
+        }
+
+        assertTrue(SplicedTemplate.parse(SPLICED[1]).isStatic());
+        assertFalse(SplicedTemplate.parse(SPLICED[3]).isStatic());
+    }
+
+    @Test
+    public void testVelocityNeeded() {
+        for (String source : VELOCITY) {
+            assertNull(SplicedTemplate.parse(source), source);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.generator;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.maven.archetype.common.ArchetypeArchive;
+import org.apache.velocity.VelocityContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class TemplateCacheTest {
+    @TempDir
+    private File directory;
+
+    private ArchetypeTemplateEngine engine;
+
+    @BeforeEach
+    public void setUp() {
+        engine = new ArchetypeTemplateEngine(properties -> {});
+    }
+
+    @Test
+    public void testTemplatesParsedOnce() throws Exception {
+        File jar = createJar(
+                "archetype.jar",
+                "archetype-resources/pom.xml",
+                "#parse(\"header.vm\")#if($artifactId)[${artifactId}]#end",
+                "archetype-resources/header.vm",
+                "<${artifactId}>",
+                "archetype-resources/README.txt",
+                "${artifactId}");
+
+        TemplateCache cache = new TemplateCache();
+
+        try (ArchetypeArchive archive = new ArchetypeArchive(jar);
+                Closeable templates = engine.open(archive)) {
+            ArchetypeTemplate pom = cache.getTemplate(engine, archive, "archetype-resources/pom.xml", "UTF-8");
+            ArchetypeTemplate readme = cache.getTemplate(engine, archive, "archetype-resources/README.txt", "UTF-8");
+
+            assertSame(pom, cache.getTemplate(engine, archive, "archetype-resources/pom.xml", "UTF-8"));
+            assertSame(readme, cache.getTemplate(engine, archive, "archetype-resources/README.txt", "UTF-8"));
+            assertNotSame(pom, cache.getTemplate(engine, archive, "archetype-resources/pom.xml", "ISO-8859-1"));
+            assertEquals(3, cache.size());
+
+            assertEquals("<app>[app]", merge(pom));
+            assertEquals("app", merge(readme));
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvictedByCount() throws Exception {
+        File jar = createJar(
+                "archetype.jar",
+                "archetype-resources/a.txt",
+                "${artifactId}",
+                "archetype-resources/b.txt",
+                "${artifactId}",
+                "archetype-resources/c.txt",
+                "${artifactId}");
+
+        TemplateCache cache = new TemplateCache(2, Long.MAX_VALUE);
+
+        try (ArchetypeArchive archive = new ArchetypeArchive(jar);
+                Closeable templates = engine.open(archive)) {
+            ArchetypeTemplate a = cache.getTemplate(engine, archive, "archetype-resources/a.txt", "UTF-8");
+            ArchetypeTemplate b = cache.getTemplate(engine, archive, "archetype-resources/b.txt", "UTF-8");
+
+            // a is now more recently used than b
+            assertSame(a, cache.getTemplate(engine, archive, "archetype-resources/a.txt", "UTF-8"));
+
+            cache.getTemplate(engine, archive, "archetype-resources/c.txt", "UTF-8");
+            assertEquals(2, cache.size());
+
+            assertSame(a, cache.getTemplate(engine, archive, "archetype-resources/a.txt", "UTF-8"));
+            assertNotSame(b, cache.getTemplate(engine, archive, "archetype-resources/b.txt", "UTF-8"));
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvictedByWeight() throws Exception {
+        File jar = createJar(
+                "archetype.jar",
+                "archetype-resources/a.txt",
+                "0123456789",
+                "archetype-resources/b.txt",
+                "0123456789",
+                "archetype-resources/c.txt",
+                "0123456789");
+
+        // room for two templates of 10 bytes
+        TemplateCache cache = new TemplateCache(100, 25);
+
+        try (ArchetypeArchive archive = new ArchetypeArchive(jar);
+                Closeable templates = engine.open(archive)) {
+            ArchetypeTemplate a = cache.getTemplate(engine, archive, "archetype-resources/a.txt", "UTF-8");
+            ArchetypeTemplate b = cache.getTemplate(engine, archive, "archetype-resources/b.txt", "UTF-8");
+            assertEquals(2, cache.size());
+
+            ArchetypeTemplate c = cache.getTemplate(engine, archive, "archetype-resources/c.txt", "UTF-8");
+            assertEquals(2, cache.size());
+
+            assertSame(b, cache.getTemplate(engine, archive, "archetype-resources/b.txt", "UTF-8"));
+            assertSame(c, cache.getTemplate(engine, archive, "archetype-resources/c.txt", "UTF-8"));
+            assertNotSame(a, cache.getTemplate(engine, archive, "archetype-resources/a.txt", "UTF-8"));
+        }
+    }
+
+    @Test
+    public void testTemplatesKeyedByJarContent() throws Exception {
+        File jar = createJar("archetype.jar", "archetype-resources/pom.xml", "#if(true)<${artifactId}>#end");
+        File copy = new File(directory, "copy.jar");
+        Files.copy(jar.toPath(), copy.toPath());
+
+        TemplateCache cache = new TemplateCache();
+
+        assertEquals(cache.getChecksum(jar), cache.getChecksum(copy));
+
+        ArchetypeTemplate template;
+        try (ArchetypeArchive archive = new ArchetypeArchive(jar);
+                Closeable templates = engine.open(archive)) {
+            template = cache.getTemplate(engine, archive, "archetype-resources/pom.xml", "UTF-8");
+        }
+
+        // the same content at another path
+        try (ArchetypeArchive archive = new ArchetypeArchive(copy);
+                Closeable templates = engine.open(archive)) {
+            assertSame(template, cache.getTemplate(engine, archive, "archetype-resources/pom.xml", "UTF-8"));
+        }
+
+        // another content at the same path, of another size
+        String checksum = cache.getChecksum(jar);
+        createJar("archetype.jar", "archetype-resources/pom.xml", "#if(true)<<${artifactId}>>#end");
+        assertNotEquals(checksum, cache.getChecksum(jar));
+
+        try (ArchetypeArchive archive = new ArchetypeArchive(jar);
+                Closeable templates = engine.open(archive)) {
+            ArchetypeTemplate changed = cache.getTemplate(engine, archive, "archetype-resources/pom.xml", "UTF-8");
+
+            assertNotSame(template, changed);
+            assertEquals("<<app>>", merge(changed));
+        }
+        assertEquals(2, cache.size());
+    }
+
+    private static String merge(ArchetypeTemplate template) throws IOException {
+        VelocityContext context = new VelocityContext();
+        context.put("artifactId", "app");
+
+        StringWriter writer = new StringWriter();
+        template.merge(context, writer);
+        return writer.toString();
+    }
+
+    private File createJar(String fileName, String... entries) throws IOException {
+        File jar = new File(directory, fileName);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar.toPath()))) {
+            for (int i = 0; i < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(entries[i]));
+                zip.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return jar;
+    }
+}
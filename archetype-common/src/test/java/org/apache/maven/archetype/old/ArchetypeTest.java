@@ -118,7 +118,14 @@ public class ArchetypeTest {
                 .setRepositorySession(repositorySession)
                 .setOutputDirectory(getTestFile("target").getAbsolutePath());
 
-        archetype.createArchetype(request);
+        // templates are read from the archetype jar, not through the thread context class loader
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(null);
+        try {
+            archetype.createArchetype(request);
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
 
         // ----------------------------------------------------------------------
         // Set up the Velocity context
@@ -144,6 +144,15 @@ public class CreateArchetypeFromProjectMojo extends AbstractMojo {
     @Parameter(property = "archetype.keepParent")
     private boolean keepParent = true;
 
+    /**
+     * Number of threads turning the project's files into templates. Files and sibling modules are processed
+     * concurrently, yet the archetype is the same as with a single thread.
+     *
+     * @since 3.4.2
+     */
+    @Parameter(property = "archetype.parallelism", defaultValue = "1")
+    private int parallelism;
+
     /**
      * The Maven project to create an archetype from.
      */
@@ -255,7 +264,8 @@ public class CreateArchetypeFromProjectMojo extends AbstractMojo {
                     /* this should be resolved and asked for user to verify */ .setPackageName(packageName)
                     .setPostPhase(archetypePostPhase)
                     .setOutputDirectory(outputDirectory)
-                    .setSettingsFile(session.getRequest().getUserSettingsFile());
+                    .setSettingsFile(session.getRequest().getUserSettingsFile())
+                    .setParallelism(parallelism);
 
             ArchetypeCreationResult result = manager.createArchetypeFromProject(request);
 
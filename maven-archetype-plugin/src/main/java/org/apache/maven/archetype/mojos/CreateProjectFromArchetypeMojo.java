@@ -176,6 +176,52 @@ public class CreateProjectFromArchetypeMojo extends AbstractMojo implements Cont
     @Parameter(property = "filter")
     private String filter;
 
+    /**
+     * Directory where the archetype resources are exploded once, so that files which are not filtered are copied
+     * from there instead of being inflated from the archetype jar on each generation. No cache is used if not set.
+     *
+     * @since 3.4.2
+     */
+    @Parameter(property = "contentCacheDirectory")
+    private File contentCacheDirectory;
+
+    /**
+     * Whether files which are not filtered are hard linked to the content cache instead of copied from it, when the
+     * file system supports it. Linked files share their content with the cache: they must not be modified in place.
+     *
+     * @since 3.4.2
+     */
+    @Parameter(property = "linkCachedContent", defaultValue = "false")
+    private boolean linkCachedContent;
+
+    /**
+     * Number of threads rendering and copying the files of a fileset archetype. Modules and POMs are still processed
+     * in order, so the generated project is the same as with a single thread. Templates must not rely on variables
+     * set with <code>#set</code> by other templates.
+     *
+     * @since 3.4.2
+     */
+    @Parameter(property = "parallelism", defaultValue = "1")
+    private int parallelism;
+
+    /**
+     * File where the timings and counters of the generation are written as JSON. No report is written if not set.
+     *
+     * @since 3.4.2
+     */
+    @Parameter(property = "generationReport")
+    private File generationReport;
+
+    /**
+     * Generates a fileset archetype again over the project it generated: files whose template and properties did not
+     * change are left untouched, and files modified since they were generated are kept. The generated files are
+     * recorded in <code>.archetype-manifest.properties</code> in the project directory.
+     *
+     * @since 3.4.2
+     */
+    @Parameter(property = "incremental", defaultValue = "false")
+    private boolean incremental;
+
     @Override
     public void execute() throws MojoExecutionException {
         Properties executionProperties = session.getUserProperties();
@@ -194,6 +240,10 @@ public class CreateProjectFromArchetypeMojo extends AbstractMojo implements Cont
                 .setLocalRepository(session.getLocalRepository())
                 .setOffline(session.isOffline())
                 .setFilter(filter)
+                .setContentCacheDirectory(contentCacheDirectory)
+                .setLinkCachedContent(linkCachedContent)
+                .setParallelism(parallelism)
+                .setIncremental(incremental)
                 .setAskForDefaultPropertyValues(askForDefaultPropertyValues);
 
         try {
@@ -214,6 +264,12 @@ public class CreateProjectFromArchetypeMojo extends AbstractMojo implements Cont
 
             ArchetypeGenerationResult generationResult = manager.generateProjectFromArchetype(request);
 
+            if (generationReport != null) {
+                GenerationReportWriter.write(generationResult.getReport(), generationReport);
+
+                getLog().info("Generation report written to " + generationReport);
+            }
+
             if (generationResult.getCause() != null) {
                 throw new MojoExecutionException(generationResult.getCause().getMessage(), generationResult.getCause());
             }
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.mojos;
+
+import javax.inject.Inject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.archetype.ArchetypeGenerationRequest;
+import org.apache.maven.archetype.ArchetypeGenerationResult;
+import org.apache.maven.archetype.ArchetypeManager;
+import org.apache.maven.archetype.ui.generation.ArchetypeGenerationConfigurator;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystem;
+
+/**
+ * Generates several projects from the same archetype, in batch mode, with the properties of each project read from
+ * a manifest. The archetype is resolved and read once for all the projects, which are generated in parallel.
+ * <p>
+ * The manifest is a properties file listing the ids of the projects to generate in its <code>projects</code>
+ * property. The properties of a project are prefixed with its id, the other properties being shared by all the
+ * projects. The artifactId of a project defaults to its id:
+ * <pre>
+ * projects=orders,billing
+ * groupId=com.example
+ * version=1.0-SNAPSHOT
+ * orders.package=com.example.orders
+ * billing.artifactId=billing-service
+ * billing.package=com.example.billing
+ * </pre>
+ *
+ * @since 3.4.2
+ */
+@Mojo(name = "generate-batch", requiresProject = false)
+public class CreateProjectsFromArchetypeMojo extends AbstractMojo {
+    private static final String PROJECTS = "projects";
+
+    private ArchetypeManager manager;
+
+    private ArchetypeGenerationConfigurator configurator;
+
+    private RepositorySystem repositorySystem;
+
+    @Inject
+    public CreateProjectsFromArchetypeMojo(
+            ArchetypeManager manager, ArchetypeGenerationConfigurator configurator, RepositorySystem repositorySystem) {
+        this.manager = manager;
+        this.configurator = configurator;
+        this.repositorySystem = repositorySystem;
+    }
+
+    /**
+     * The archetype's artifactId.
+     */
+    @Parameter(property = "archetypeArtifactId", required = true)
+    private String archetypeArtifactId;
+
+    /**
+     * The archetype's groupId.
+     */
+    @Parameter(property = "archetypeGroupId", required = true)
+    private String archetypeGroupId;
+
+    /**
+     * The archetype's version.
+     */
+    @Parameter(property = "archetypeVersion", required = true)
+    private String archetypeVersion;
+
+    /**
+     * The properties file listing the projects to generate and their properties.
+     */
+    @Parameter(property = "manifest", required = true)
+    private File manifest;
+
+    @Parameter(defaultValue = "${basedir}", property = "outputDirectory")
+    private File outputDirectory;
+
+    /**
+     * Maximum number of projects generated at the same time. Defaults to the number of available processors.
+     */
+    @Parameter(property = "concurrency")
+    private Integer concurrency;
+
+    /**
+     * Directory where the archetype resources are exploded once, so that files which are not filtered are copied
+     * from there instead of being inflated from the archetype jar for each project. No cache is used if not set.
+     */
+    @Parameter(property = "contentCacheDirectory")
+    private File contentCacheDirectory;
+
+    /**
+     * Whether files which are not filtered are hard linked to the content cache instead of copied from it, when the
+     * file system supports it. Linked files share their content with the cache: they must not be modified in place.
+     */
+    @Parameter(property = "linkCachedContent", defaultValue = "false")
+    private boolean linkCachedContent;
+
+    @Parameter(defaultValue = "${session}", readonly = true, required = true)
+    private MavenSession session;
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        Properties manifestProperties = readManifest();
+
+        String[] projectIds = StringUtils.split(manifestProperties.getProperty(PROJECTS, ""), ", ");
+        if (projectIds.length == 0) {
+            throw new MojoExecutionException("No projects listed in the '" + PROJECTS + "' property of " + manifest);
+        }
+
+        List<ArchetypeGenerationRequest> requests = new ArrayList<>(projectIds.length);
+
+        for (String projectId : projectIds) {
+            ArchetypeGenerationRequest request = newRequest();
+
+            try {
+                configurator.configureArchetype(
+                        request, Boolean.FALSE, getProjectProperties(manifestProperties, projectIds, projectId));
+            } catch (Exception ex) {
+                throw new MojoExecutionException("Project " + projectId + ": " + ex.getMessage(), ex);
+            }
+
+            requests.add(request);
+        }
+
+        getLog().info("Generating " + requests.size() + " projects from archetype " + archetypeGroupId + ":"
+                + archetypeArtifactId + ":" + archetypeVersion);
+
+        List<ArchetypeGenerationResult> results = concurrency == null
+                ? manager.generateProjectsFromArchetype(requests)
+                : manager.generateProjectsFromArchetype(requests, concurrency);
+
+        int failures = 0;
+        for (int i = 0; i < results.size(); i++) {
+            Exception cause = results.get(i).getCause();
+
+            if (cause != null) {
+                getLog().error("Project " + projectIds[i] + " failed: " + cause.getMessage(), cause);
+                failures++;
+            }
+        }
+
+        if (failures > 0) {
+            throw new MojoFailureException(failures + " of " + results.size() + " projects failed to generate");
+        }
+    }
+
+    private Properties readManifest() throws MojoExecutionException {
+        Properties properties = new Properties();
+
+        try (InputStream in = Files.newInputStream(manifest.toPath())) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot read manifest " + manifest, e);
+        }
+
+        return properties;
+    }
+
+    /**
+     * @return the user properties, overridden by the project id as artifactId, the properties shared by all projects
+     *         in the manifest and the properties of the project
+     */
+    private Properties getProjectProperties(Properties manifestProperties, String[] projectIds, String projectId) {
+        Properties properties = new Properties();
+        properties.putAll(session.getUserProperties());
+        properties.setProperty("artifactId", projectId);
+
+        for (String key : manifestProperties.stringPropertyNames()) {
+            if (!PROJECTS.equals(key) && !isProjectProperty(key, projectIds)) {
+                properties.setProperty(key, manifestProperties.getProperty(key));
+            }
+        }
+
+        String prefix = projectId + '.';
+        for (String key : manifestProperties.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                properties.setProperty(key.substring(prefix.length()), manifestProperties.getProperty(key));
+            }
+        }
+
+        return properties;
+    }
+
+    private static boolean isProjectProperty(String key, String[] projectIds) {
+        for (String projectId : projectIds) {
+            if (key.startsWith(projectId + '.')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ArchetypeGenerationRequest newRequest() {
+        return new ArchetypeGenerationRequest()
+                .setArchetypeGroupId(archetypeGroupId)
+                .setArchetypeArtifactId(archetypeArtifactId)
+                .setArchetypeVersion(archetypeVersion)
+                .setOutputDirectory(outputDirectory.getAbsolutePath())
+                .setRemoteRepositories(project.getRemoteProjectRepositories())
+                .setRemoteArtifactRepositories(project.getRemoteArtifactRepositories())
+                .setMavenSession(session)
+                .setRepositorySession(session.getRepositorySession())
+                .setRepositorySystem(repositorySystem)
+                .setProjectBuildingRequest(session.getProjectBuildingRequest())
+                .setLocalRepository(session.getLocalRepository())
+                .setOffline(session.isOffline())
+                .setContentCacheDirectory(contentCacheDirectory)
+                .setLinkCachedContent(linkCachedContent);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.maven.archetype.mojos;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Locale;
+
+import org.apache.maven.archetype.ArchetypeGenerationReport;
+
+/**
+ * Writes an {@link ArchetypeGenerationReport} as JSON, times being in milliseconds:
+ * <pre>
+ * {
+ *   "totalTime": 42,
+ *   "phases": { "resolve": 3, "descriptor": 1, "generation": 38, ... },
+ *   "filesWritten": 12,
+ *   "bytesWritten": 20480,
+ *   "filesets": [
+ *     { "module": "", "directory": "src/main/java", "filtered": true, "filesWritten": 3, "bytesWritten": 1024,
+ *       "time": 5 }
+ *   ]
+ * }
+ * </pre>
+ */
+class GenerationReportWriter {
+    private GenerationReportWriter() {}
+
+    static void write(ArchetypeGenerationReport report, File file) throws IOException {
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(toJson(report));
+        }
+    }
+
+    static String toJson(ArchetypeGenerationReport report) {
+        StringBuilder json = new StringBuilder();
+
+        json.append("{\n");
+        json.append("  \"totalTime\": ").append(report.getTotalTime()).append(",\n");
+
+        json.append("  \"phases\": {");
+        for (ArchetypeGenerationReport.Phase phase : ArchetypeGenerationReport.Phase.values()) {
+            json.append(phase.ordinal() == 0 ? " " : ", ");
+            json.append(quote(toCamelCase(phase))).append(": ").append(report.getTime(phase));
+        }
+        json.append(" },\n");
+
+        json.append("  \"filesWritten\": ").append(report.getFilesWritten()).append(",\n");
+        json.append("  \"bytesWritten\": ").append(report.getBytesWritten()).append(",\n");
+
+        json.append("  \"filesets\": [");
+        Iterator<ArchetypeGenerationReport.Fileset> filesets =
+                report.getFilesets().iterator();
+        while (filesets.hasNext()) {
+            ArchetypeGenerationReport.Fileset fileset = filesets.next();
+
+            json.append("\n    { \"module\": ").append(quote(fileset.getModule()));
+            json.append(", \"directory\": ").append(quote(fileset.getDirectory()));
+            json.append(", \"filtered\": ").append(fileset.isFiltered());
+            json.append(", \"filesWritten\": ").append(fileset.getFilesWritten());
+            json.append(", \"bytesWritten\": ").append(fileset.getBytesWritten());
+            json.append(", \"time\": ").append(fileset.getTime());
+            json.append(filesets.hasNext() ? " }," : " }\n  ");
+        }
+        json.append("]\n");
+
+        json.append("}\n");
+
+        return json.toString();
+    }
+
+    /**
+     * @return the phase name in camel case, like <code>postGenerationScript</code>
+     */
+    private static String toCamelCase(ArchetypeGenerationReport.Phase phase) {
+        StringBuilder name = new StringBuilder();
+
+        for (String word : phase.name().toLowerCase(Locale.ROOT).split("_")) {
+            name.append(name.length() == 0 ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+        }
+
+        return name.toString();
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+
+        StringBuilder quoted = new StringBuilder("\"");
+
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+
+        return quoted.append('"').toString();
+    }
+}